@@ -1,19 +1,26 @@
 package io.protostuff.compiler.cli;
 
 import com.google.common.collect.ImmutableMap;
+import io.protostuff.compiler.ParserModule;
 import io.protostuff.compiler.model.ImmutableModuleConfiguration;
 import io.protostuff.compiler.model.ModuleConfiguration;
+import io.protostuff.compiler.parser.Importer;
 import io.protostuff.compiler.parser.ParserException;
 import io.protostuff.generator.CompilerModule;
 import io.protostuff.generator.CompilerRegistry;
 import io.protostuff.generator.GeneratorException;
 import io.protostuff.generator.ProtostuffCompiler;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -46,6 +53,10 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
     private static final String VERSION = "version";
     private static final String HELP = "help";
     private static final String PROTO_PATH = "proto_path";
+    private static final String WATCH = "watch";
+    private static final String THREADS = "threads";
+    private static final String STRICT_IMPORTS = "strict_imports";
+    private static final String PARSER_THREADS = "parser_threads";
     private static final ImmutableMap<String, Integer> HELP_ITEMS_ORDER = ImmutableMap.<String, Integer>builder()
             .put(HELP, 1)
             .put(PROTO_PATH, 2)
@@ -53,12 +64,58 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
             .put(OUTPUT, 4)
             .put(TEMPLATE, 5)
             .put(EXTENSIONS, 6)
+            .put(WATCH, 7)
+            .put(THREADS, 8)
+            .put(STRICT_IMPORTS, 9)
+            .put(PARSER_THREADS, 10)
             .put(DEBUG, 100)
             .build();
     private static final Logger LOGGER = LoggerFactory.getLogger(ProtostuffCompilerCli.class);
 
+    public ProtostuffCompilerCli() {
+        this(new ParserModule());
+    }
+
+    public ProtostuffCompilerCli(ParserModule parserModule) {
+        super(parserModule);
+    }
+
+    /**
+     * Run compiler with given command-line arguments.
+     */
     public static void main(String[] args) {
-        new ProtostuffCompilerCli().run(args);
+        ParserModule parserModule = createParserModule(args);
+        if (parserModule != null) {
+            new ProtostuffCompilerCli(parserModule).run(args);
+        }
+    }
+
+    /**
+     * Parser options have to be known before compiler is created. Invalid
+     * command line is reported later, when all options are parsed. Returns
+     * {@code null} if parser options are invalid.
+     */
+    private static ParserModule createParserModule(String[] args) {
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(createOptions(Collections.emptySet()), args);
+        } catch (ParseException e) {
+            return new ParserModule();
+        }
+        int parserThreads = Runtime.getRuntime().availableProcessors();
+        if (cmd.hasOption(PARSER_THREADS)) {
+            String value = cmd.getOptionValue(PARSER_THREADS);
+            try {
+                parserThreads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                parserThreads = 0;
+            }
+            if (parserThreads < 1) {
+                LOGGER.error("Invalid number of parser threads: {}", value);
+                return null;
+            }
+        }
+        return new ParserModule(parserThreads, cmd.hasOption(STRICT_IMPORTS));
     }
 
     private static void changeLogLevel(Level newLevel) {
@@ -69,8 +126,7 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
         ctx.updateLoggers();
     }
 
-    private void run(String[] args) {
-        CompilerRegistry registry = injector.getInstance(CompilerRegistry.class);
+    private static Options createOptions(Collection<String> compilers) {
         Options options = new Options();
         options.addOption(Option.builder("h")
                 .longOpt(HELP)
@@ -83,7 +139,9 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
                 .desc("Specify the directory in which to search for "
                         + "imports.  May be specified multiple times;"
                         + " directories will be searched in order.  If not"
-                        + " given, the current working directory is used.")
+                        + " given, the current working directory is used."
+                        + "  Binary descriptor sets (protoc --descriptor_set_out)"
+                        + " can be given instead of directories.")
                 .build());
         options.addOption(Option.builder("d")
                 .longOpt(DEBUG)
@@ -103,7 +161,7 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
                 .longOpt(GENERATOR)
                 .argName("name")
                 .numberOfArgs(1)
-                .desc("Specify compiler: " + String.join("|", registry.availableCompilers()))
+                .desc("Specify compiler: " + String.join("|", compilers))
                 .build());
         options.addOption(Option.builder("t")
                 .longOpt(TEMPLATE)
@@ -117,9 +175,37 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
                 .numberOfArgs(1)
                 .desc("[st4] Specify full class name of an extensions provider for st4 compiler")
                 .build());
+        options.addOption(Option.builder("w")
+                .longOpt(WATCH)
+                .desc("Watch include directories and recompile changed files "
+                        + "and files that import them.")
+                .build());
+        options.addOption(Option.builder("j")
+                .longOpt(THREADS)
+                .argName("count")
+                .numberOfArgs(1)
+                .desc("Specify number of threads used to generate files (default: 1).")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt(STRICT_IMPORTS)
+                .desc("Validate imported files, not only files given on the command line.")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt(PARSER_THREADS)
+                .argName("count")
+                .numberOfArgs(1)
+                .desc("Specify number of threads used to parse files (default: number of processors).")
+                .build());
+        return options;
+    }
+
+    private void run(String[] args) {
+        CompilerRegistry registry = injector.getInstance(CompilerRegistry.class);
+        Options options = createOptions(registry.availableCompilers());
         CommandLineParser parser = new DefaultParser();
         ImmutableModuleConfiguration.Builder builder = ImmutableModuleConfiguration.builder();
         builder.name("main");
+        boolean watch;
         try {
             CommandLine cmd = parser.parse(options, args);
             if (cmd.hasOption(HELP)) {
@@ -135,6 +221,7 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
             if (cmd.hasOption(DEBUG)) {
                 changeLogLevel(Level.DEBUG);
             }
+            watch = cmd.hasOption(WATCH);
             if (cmd.hasOption(GENERATOR)) {
                 String generator = cmd.getOptionValue(GENERATOR);
                 builder.generator(generator);
@@ -156,6 +243,9 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
             if (cmd.hasOption(EXTENSIONS)) {
                 builder.putOptions(CompilerModule.EXTENSIONS_OPTION, cmd.getOptionValue(EXTENSIONS));
             }
+            if (cmd.hasOption(THREADS)) {
+                builder.putOptions(CompilerModule.THREADS_OPTION, cmd.getOptionValue(THREADS));
+            }
             List<Path> includePaths = new ArrayList<>();
             if (cmd.hasOption(PROTO_PATH)) {
                 String[] paths = cmd.getOptionValues(PROTO_PATH);
@@ -190,14 +280,65 @@ public class ProtostuffCompilerCli extends ProtostuffCompiler {
             LOGGER.error("Missing generator directives.");
             return;
         }
+        boolean compiled = tryCompile(configuration, Collections.emptySet(), true);
+        if (watch) {
+            watch(configuration, compiled);
+        }
+    }
+
+    /**
+     * Compile whole module or only changed files and their dependants.
+     * Changed files are invalidated in both cases, as they might be cached
+     * by a previous compilation.
+     */
+    private boolean tryCompile(ModuleConfiguration configuration, Set<String> changedFiles, boolean fullCompile) {
         try {
-            compile(configuration);
+            if (fullCompile) {
+                injector.getInstance(Importer.class).invalidate(changedFiles);
+                compile(configuration);
+            } else {
+                compile(configuration, changedFiles);
+            }
+            return true;
         } catch (GeneratorException | ParserException e) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.error("Compilation error", e);
             } else {
                 LOGGER.error(e.getMessage());
             }
+            return false;
+        } catch (RuntimeException e) {
+            // keep watching, next change might fix it
+            LOGGER.error("Compilation error", e);
+            return false;
+        }
+    }
+
+    private void watch(ModuleConfiguration configuration, boolean compiled) {
+        // files changed since last successful compilation
+        Set<String> pendingFiles = new HashSet<>();
+        // after a failed compilation some files might be not generated, so whole module is generated
+        boolean fullCompile = !compiled;
+        try (SourceWatcher watcher = new SourceWatcher(configuration.getIncludePaths())) {
+            while (true) {
+                LOGGER.info("Watching for changes...");
+                Set<String> changedFiles = watcher.take();
+                pendingFiles.addAll(changedFiles);
+                LOGGER.info("Changed {}", changedFiles);
+                long start = System.nanoTime();
+                if (tryCompile(configuration, pendingFiles, fullCompile)) {
+                    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    LOGGER.info("Compiled in {} ms", latency);
+                    pendingFiles = new HashSet<>();
+                    fullCompile = false;
+                } else {
+                    fullCompile = true;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not watch include directories", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -0,0 +1,113 @@
+package io.protostuff.compiler.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches include directories for changes of proto files.
+ */
+public class SourceWatcher implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceWatcher.class);
+
+    private static final String PROTO_EXTENSION = ".proto";
+
+    /**
+     * Time to wait for more events after first change, so that
+     * files saved together are compiled together.
+     */
+    private static final long QUIET_PERIOD_MILLIS = 100;
+
+    private final List<Path> includePaths;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Create new watcher for given include directories and their subdirectories.
+     */
+    public SourceWatcher(List<Path> includePaths) throws IOException {
+        this.includePaths = includePaths;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path includePath : includePaths) {
+            registerTree(includePath);
+        }
+    }
+
+    /**
+     * Wait until some proto files are changed.
+     *
+     * @return names of changed files, relative to include directories
+     */
+    public Set<String> take() throws InterruptedException, IOException {
+        Set<String> changedFiles = new LinkedHashSet<>();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            processEvents(key, changedFiles);
+            long timeout = changedFiles.isEmpty() ? Long.MAX_VALUE : QUIET_PERIOD_MILLIS;
+            key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+        }
+        return changedFiles;
+    }
+
+    private void processEvents(WatchKey key, Set<String> changedFiles) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(file)) {
+                registerTree(file);
+            } else if (file.getFileName().toString().endsWith(PROTO_EXTENSION)) {
+                addChangedFile(file, changedFiles);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void addChangedFile(Path file, Set<String> changedFiles) {
+        for (Path includePath : includePaths) {
+            if (file.startsWith(includePath)) {
+                String name = includePath.relativize(file).toString();
+                changedFiles.add(name.replace(file.getFileSystem().getSeparator(), "/"));
+            }
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                directories.put(key, directory);
+                LOGGER.debug("Watching {}", directory);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -17,7 +17,18 @@ public class AbstractExtensionProvider implements ExtensionProvider {
 
     private final Map<Class<?>, PropertyProvider> extenderMap;
 
+    private final boolean memoizeProperties;
+
     public AbstractExtensionProvider() {
+        this(false);
+    }
+
+    /**
+     * Create new extension provider. If {@code memoizeProperties} is set,
+     * every custom property is computed only once per node.
+     */
+    public AbstractExtensionProvider(boolean memoizeProperties) {
+        this.memoizeProperties = memoizeProperties;
         extenderMap = new HashMap<>();
         attributeRenderers = new HashMap<>();
     }
@@ -27,7 +38,7 @@ public class AbstractExtensionProvider implements ExtensionProvider {
      */
     public final <T> void registerProperty(Class<T> object, String property, Function<T, Object> function) {
         PropertyProvider extender = extenderMap.computeIfAbsent(object,
-                aClass -> new PropertyProviderImpl());
+                aClass -> new PropertyProviderImpl(memoizeProperties));
         extender.register(property, function);
     }
 
@@ -13,13 +13,18 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.Collection;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Base class for proto compilers.
  *
+ * <p>Every module, proto, message, enum and service is rendered to its own
+ * file. Files are generated in parallel when module option
+ * {@link CompilerModule#THREADS_OPTION} is greater than one.
+ *
  * @author Kostiantyn Shchepanovskyi
  */
 public abstract class AbstractProtoCompiler implements ProtoCompiler {
@@ -34,89 +39,64 @@ public abstract class AbstractProtoCompiler implements ProtoCompiler {
 
     @Override
     public void compile(Module module) {
-        String moduleOutput = module.getOutput();
-        processModule(module, moduleOutput);
-        for (Proto proto : module.getProtos()) {
-            processProto(moduleOutput, proto);
-            for (Service service : proto.getServices()) {
-                processService(moduleOutput, service);
-            }
-            processUserTypes(module, proto);
-        }
-    }
-
-    private void processService(String moduleOutput, Service service) {
-        if (!canProcessService(service)) {
-            return;
-        }
-        String outputFileName = getServiceOutputFileName(service);
-        try (Writer writer = getWriter(moduleOutput, outputFileName)) {
-            compileService(service, writer);
-        } catch (IOException e) {
-            throw writerException(outputFileName, e);
-        }
+        compile(module, module.getProtos());
     }
 
-    private void processProto(String moduleOutput, Proto proto) {
-        if (!canProcessProto(proto)) {
-            return;
-        }
-        String outputFileName = getProtoOutputFileName(proto);
-        try (Writer writer = getWriter(moduleOutput, outputFileName)) {
-            compileProto(proto, writer);
-        } catch (IOException e) {
-            throw writerException(outputFileName, e);
-        }
+    @Override
+    public void compile(Module module, Collection<Proto> changedProtos) {
+        GenerationTasks tasks = new GenerationTasks();
+        collectTasks(module, changedProtos, tasks);
+        tasks.run(GenerationTasks.getThreads(module));
     }
 
-    private void processModule(Module module, String moduleOutput) {
-        if (!canProcessModule(module)) {
-            return;
+    /**
+     * Add a task for every file that should be generated. Output file names
+     * are computed on the caller thread, only rendering and writing of files
+     * is deferred to the tasks.
+     */
+    void collectTasks(Module module, Collection<Proto> changedProtos, GenerationTasks tasks) {
+        String moduleOutput = module.getOutput();
+        if (canProcessModule(module)) {
+            addTask(tasks, moduleOutput, getModuleOutputFileName(module), writer -> compileModule(module, writer));
         }
-        String outputFileName = getModuleOutputFileName(module);
-        try (Writer writer = getWriter(moduleOutput, outputFileName)) {
-            compileModule(module, writer);
-        } catch (IOException e) {
-            throw writerException(outputFileName, e);
+        for (Proto proto : changedProtos) {
+            if (canProcessProto(proto)) {
+                addTask(tasks, moduleOutput, getProtoOutputFileName(proto), writer -> compileProto(proto, writer));
+            }
+            for (Service service : proto.getServices()) {
+                if (canProcessService(service)) {
+                    addTask(tasks, moduleOutput, getServiceOutputFileName(service),
+                            writer -> compileService(service, writer));
+                }
+            }
+            collectUserTypeTasks(moduleOutput, proto, tasks);
         }
     }
 
-    private void processUserTypes(Module module, UserTypeContainer container) {
-        List<Message> messages = container.getMessages();
-        List<io.protostuff.compiler.model.Enum> enums = container.getEnums();
-        String basedir = module.getOutput();
-        for (Message message : messages) {
-            processMessage(basedir, message);
+    private void collectUserTypeTasks(String basedir, UserTypeContainer container, GenerationTasks tasks) {
+        for (Message message : container.getMessages()) {
+            if (canProcessMessage(message)) {
+                addTask(tasks, basedir, getMessageOutputFileName(message), writer -> compileMessage(message, writer));
+            }
             // process nested messages and enums
-            processUserTypes(module, message);
-        }
-        for (Enum anEnum : enums) {
-            processEnum(basedir, anEnum);
-        }
-    }
-
-    private void processEnum(String basedir, Enum anEnum) {
-        if (!canProcessEnum(anEnum)) {
-            return;
+            collectUserTypeTasks(basedir, message, tasks);
         }
-        String outputFileName = getEnumOutputFileName(anEnum);
-        try (Writer writer = getWriter(basedir, outputFileName)) {
-            compileEnum(anEnum, writer);
-        } catch (IOException e) {
-            throw writerException(outputFileName, e);
+        for (Enum anEnum : container.getEnums()) {
+            if (canProcessEnum(anEnum)) {
+                addTask(tasks, basedir, getEnumOutputFileName(anEnum), writer -> compileEnum(anEnum, writer));
+            }
         }
     }
 
-    private void processMessage(String basedir, Message message) {
-        if (!canProcessMessage(message)) {
-            return;
-        }
-        String outputFileName = getMessageOutputFileName(message);
-        try (Writer writer = getWriter(basedir, outputFileName)) {
-            compileMessage(message, writer);
-        } catch (IOException e) {
-            throw writerException(outputFileName, e);
-        }
+    private void addTask(GenerationTasks tasks, String basedir, String outputFileName, Consumer<Writer> compiler) {
+        String fullFileLocation = appendBasedir(basedir, outputFileName);
+        tasks.add(fullFileLocation, () -> {
+            try (Writer writer = getWriter(outputFileName, fullFileLocation)) {
+                compiler.accept(writer);
+            } catch (IOException e) {
+                throw writerException(outputFileName, e);
+            }
+        });
     }
 
     private GeneratorException writerException(String outputFileName, IOException e) {
@@ -135,9 +115,8 @@ public abstract class AbstractProtoCompiler implements ProtoCompiler {
         return File.separatorChar;
     }
 
-    private Writer getWriter(String basedir, String outputFileName) {
+    private Writer getWriter(String outputFileName, String fullFileLocation) {
         LOGGER.info("Generate {}", outputFileName);
-        String fullFileLocation = appendBasedir(basedir, outputFileName);
         OutputStream outputStream = outputStreamFactory.createStream(fullFileLocation);
         OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
         return new BufferedWriter(outputStreamWriter);
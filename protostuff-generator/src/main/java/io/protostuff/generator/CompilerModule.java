@@ -5,11 +5,11 @@ import static com.google.inject.multibindings.MapBinder.newMapBinder;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provider;
-import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
+import io.protostuff.generator.descriptor.DescriptorSetGenerator;
 import io.protostuff.generator.dummy.DummyGenerator;
 import io.protostuff.generator.html.HtmlCompiler;
 import io.protostuff.generator.html.HtmlGenerator;
@@ -23,11 +23,6 @@ import io.protostuff.generator.html.json.service.JsonServiceGenerator;
 import io.protostuff.generator.html.markdown.MarkdownProcessor;
 import io.protostuff.generator.html.markdown.PegDownMarkdownProcessor;
 import io.protostuff.generator.java.JavaExtensionProvider;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -44,16 +39,22 @@ public class CompilerModule extends AbstractModule {
 
     public static final String TEMPLATES_OPTION = "templates";
     public static final String EXTENSIONS_OPTION = "extensions";
+    /**
+     * Number of threads used to generate files, default is 1.
+     */
+    public static final String THREADS_OPTION = "threads";
 
     public static final String JAVA_COMPILER = "java";
     public static final String ST4_COMPILER = "st4";
     public static final String HTML_COMPILER = "html";
     public static final String DUMMY_COMPILER = "dummy";
+    public static final String DESCRIPTOR_SET_COMPILER = "descriptor_set";
 
     @Override
     protected void configure() {
         bind(CompilerRegistry.class);
         bind(CompilerUtils.class);
+        bind(OutputStreamFactory.class).to(FileOutputStreamFactory.class);
         bind(MarkdownProcessor.class).to(PegDownMarkdownProcessor.class).in(Scopes.SINGLETON);
         install(new FactoryModuleBuilder()
                 .implement(ProtoCompiler.class, StCompiler.class)
@@ -74,20 +75,7 @@ public class CompilerModule extends AbstractModule {
         compilers.addBinding(JAVA_COMPILER).toProvider(JavaCompilerProvider.class);
         compilers.addBinding(ST4_COMPILER).toProvider(St4CompilerProvider.class);
         compilers.addBinding(DUMMY_COMPILER).to(DummyGenerator.class).in(Scopes.SINGLETON);
-    }
-
-    @Provides
-    OutputStreamFactory outputStreamFactory() {
-        return location -> {
-            try {
-                Path path = Paths.get(location);
-                Path dir = path.getParent();
-                Files.createDirectories(dir);
-                return new FileOutputStream(location);
-            } catch (IOException e) {
-                throw new GeneratorException("Could not create file: %s", e, location);
-            }
-        };
+        compilers.addBinding(DESCRIPTOR_SET_COMPILER).to(DescriptorSetGenerator.class);
     }
 
     public static class JavaCompilerProvider implements Provider<ProtoCompiler> {
@@ -2,10 +2,9 @@ package io.protostuff.generator;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.OutputStream;
 import javax.inject.Inject;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +39,9 @@ public class CompilerUtils {
                 String error = "Could not copy file, source file not found: " + name;
                 throw new IllegalStateException(error);
             }
-            Path path = Paths.get(destinationFilename);
-            FileUtils.copyInputStreamToFile(stream, path.toFile());
+            try (OutputStream out = outputStreamFactory.createStream(destinationFilename)) {
+                IOUtils.copy(stream, out);
+            }
         } catch (IOException e) {
             throw new GeneratorException("Could not copy %s", e, name);
         }
@@ -0,0 +1,67 @@
+package io.protostuff.generator;
+
+import org.stringtemplate.v4.AttributeRenderer;
+import org.stringtemplate.v4.ModelAdaptor;
+import org.stringtemplate.v4.STGroupFile;
+
+/**
+ * Template group file that can be rendered from multiple threads without
+ * contention on attribute lookups.
+ *
+ * <p>{@code STGroup} keeps model adaptors and renderers in synchronized maps,
+ * and its default adaptor for objects is synchronized too; both are used for
+ * every attribute that is rendered. Here adaptors and renderers are resolved
+ * once per class and then taken from a {@link ClassValue}, and objects
+ * are handled by a {@link PropertyProviderModelAdaptor}.
+ */
+final class ConcurrentStGroupFile extends STGroupFile {
+
+    private volatile ClassValue<ModelAdaptor> modelAdaptors = newModelAdaptors();
+    private volatile ClassValue<AttributeRenderer> renderers = newRenderers();
+
+    ConcurrentStGroupFile(String fileName) {
+        super(fileName);
+        registerModelAdaptor(Object.class, new PropertyProviderModelAdaptor(new PropertyProviderImpl()));
+    }
+
+    @Override
+    public void registerModelAdaptor(Class<?> attributeType, ModelAdaptor adaptor) {
+        super.registerModelAdaptor(attributeType, adaptor);
+        // resolved adaptors of subclasses might change
+        modelAdaptors = newModelAdaptors();
+    }
+
+    @Override
+    public ModelAdaptor getModelAdaptor(Class<?> attributeType) {
+        return modelAdaptors.get(attributeType);
+    }
+
+    @Override
+    public void registerRenderer(Class<?> attributeType, AttributeRenderer renderer, boolean recursive) {
+        super.registerRenderer(attributeType, renderer, recursive);
+        renderers = newRenderers();
+    }
+
+    @Override
+    public AttributeRenderer getAttributeRenderer(Class<?> attributeType) {
+        return renderers.get(attributeType);
+    }
+
+    private ClassValue<ModelAdaptor> newModelAdaptors() {
+        return new ClassValue<ModelAdaptor>() {
+            @Override
+            protected ModelAdaptor computeValue(Class<?> type) {
+                return ConcurrentStGroupFile.super.getModelAdaptor(type);
+            }
+        };
+    }
+
+    private ClassValue<AttributeRenderer> newRenderers() {
+        return new ClassValue<AttributeRenderer>() {
+            @Override
+            protected AttributeRenderer computeValue(Class<?> type) {
+                return ConcurrentStGroupFile.super.getAttributeRenderer(type);
+            }
+        };
+    }
+}
@@ -3,26 +3,29 @@ package io.protostuff.generator;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import io.protostuff.compiler.model.Module;
+import io.protostuff.compiler.model.Proto;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stringtemplate.v4.AttributeRenderer;
-import org.stringtemplate.v4.Interpreter;
-import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
-import org.stringtemplate.v4.misc.ObjectModelAdaptor;
 
 public class ExtensibleStCompiler implements ProtoCompiler {
 
-    private final List<StCompiler> compilers;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtensibleStCompiler.class);
 
+    private final List<StCompiler> compilers;
+    private final ExtensionProvider extensionProvider;
 
     @Inject
     protected ExtensibleStCompiler(StCompilerFactory compilerFactory,
                                    @Assisted Collection<String> templates,
                                    @Assisted ExtensionProvider extensionProvider) {
         this.compilers = new ArrayList<>();
+        this.extensionProvider = extensionProvider;
         for (String template : templates) {
             StCompiler compiler = (StCompiler) compilerFactory.create(template);
             STGroup group = compiler.getStGroup();
@@ -35,17 +38,7 @@ public class ExtensibleStCompiler implements ProtoCompiler {
     private void addPropertyExtensions(STGroup group, ExtensionProvider extensionProvider) {
         Map<Class<?>, PropertyProvider> extenderMap = extensionProvider.propertyProviders();
         for (Map.Entry<Class<?>, PropertyProvider> entry : extenderMap.entrySet()) {
-            Class<?> objectClass = entry.getKey();
-            PropertyProvider extender = entry.getValue();
-            group.registerModelAdaptor(objectClass, new ObjectModelAdaptor() {
-                @Override
-                public synchronized Object getProperty(Interpreter interp, ST self, Object o, Object property, String propertyName) {
-                    if (extender.hasProperty(propertyName)) {
-                        return extender.getProperty(o, propertyName);
-                    }
-                    return super.getProperty(interp, self, o, property, propertyName);
-                }
-            });
+            group.registerModelAdaptor(entry.getKey(), new PropertyProviderModelAdaptor(entry.getValue()));
         }
     }
 
@@ -58,8 +51,37 @@ public class ExtensibleStCompiler implements ProtoCompiler {
 
     @Override
     public void compile(Module module) {
+        compile(module, module.getProtos());
+    }
+
+    /**
+     * Files of all template groups are generated together, so they share
+     * a single pool of threads.
+     */
+    @Override
+    public void compile(Module module, Collection<Proto> changedProtos) {
+        GenerationTasks tasks = new GenerationTasks();
         for (StCompiler compiler : compilers) {
-            compiler.compile(module);
+            compiler.collectTasks(module, changedProtos, tasks);
+        }
+        tasks.run(GenerationTasks.getThreads(module));
+        logPropertyCacheStats();
+    }
+
+    private void logPropertyCacheStats() {
+        if (!LOGGER.isDebugEnabled()) {
+            return;
+        }
+        long hits = 0;
+        long misses = 0;
+        for (PropertyProvider provider : extensionProvider.propertyProviders().values()) {
+            if (provider instanceof PropertyProviderImpl && ((PropertyProviderImpl) provider).isMemoized()) {
+                hits += ((PropertyProviderImpl) provider).getHitCount();
+                misses += ((PropertyProviderImpl) provider).getMissCount();
+            }
+        }
+        if (hits + misses > 0) {
+            LOGGER.debug("Property cache: {} hits, {} misses", hits, misses);
         }
     }
 
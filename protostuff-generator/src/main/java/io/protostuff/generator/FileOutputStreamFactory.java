@@ -0,0 +1,166 @@
+package io.protostuff.generator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import javax.inject.Singleton;
+
+/**
+ * Output stream factory that writes only changed files.
+ *
+ * <p>While a file is generated, its content is compared with the file on
+ * disk. A file that did not change is not touched at all, so its
+ * modification time is preserved and build tools do not see it as changed.
+ * As soon as the content differs, the rest of it is written to the file,
+ * starting from the first changed block (the part before it is already on
+ * disk). Generated files are never buffered in memory as a whole.
+ */
+@Singleton
+public class FileOutputStreamFactory implements OutputStreamFactory {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+
+    @Override
+    public OutputStream createStream(String location) {
+        try {
+            Path path = Paths.get(location);
+            Path dir = path.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            return new ChangeDetectingOutputStream(path);
+        } catch (IOException e) {
+            throw new GeneratorException("Could not create file: %s", e, location);
+        }
+    }
+
+    /**
+     * Returns number of files that were written because their content changed.
+     */
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * Returns number of files that were not written because their content did not change.
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    private class ChangeDetectingOutputStream extends OutputStream {
+
+        private final Path path;
+        private final byte[] existingContent = new byte[BUFFER_SIZE];
+
+        // stream of existing file, while generated content is same as existing one
+        private InputStream existing;
+        private FileChannel channel;
+        private OutputStream out;
+        private long position;
+        private boolean closed;
+
+        ChangeDetectingOutputStream(Path path) throws IOException {
+            this.path = path;
+            if (Files.isRegularFile(path)) {
+                existing = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+            } else {
+                openForWrite();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (existing != null && isSameAsExisting(b, off, len)) {
+                position += len;
+                return;
+            }
+            if (out == null) {
+                openForWrite();
+            }
+            out.write(b, off, len);
+            position += len;
+        }
+
+        private boolean isSameAsExisting(byte[] b, int off, int len) throws IOException {
+            int compared = 0;
+            while (compared < len) {
+                int n = existing.read(existingContent, 0, Math.min(len - compared, BUFFER_SIZE));
+                if (n < 0) {
+                    return false;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (existingContent[i] != b[off + compared + i]) {
+                        return false;
+                    }
+                }
+                compared += n;
+            }
+            return true;
+        }
+
+        /**
+         * Open file for writing at current position, content before it
+         * is already same as generated one.
+         */
+        private void openForWrite() throws IOException {
+            if (existing != null) {
+                existing.close();
+                existing = null;
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(position);
+            out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (existing != null) {
+                boolean sameLength = existing.read() < 0;
+                existing.close();
+                existing = null;
+                if (sameLength) {
+                    skippedCount.increment();
+                    return;
+                }
+                // existing file is longer, it should be truncated
+                openForWrite();
+            }
+            try {
+                out.flush();
+                channel.truncate(position);
+            } finally {
+                out.close();
+            }
+            writtenCount.increment();
+        }
+    }
+}
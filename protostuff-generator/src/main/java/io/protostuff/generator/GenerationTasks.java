@@ -0,0 +1,107 @@
+package io.protostuff.generator;
+
+import static io.protostuff.generator.CompilerModule.THREADS_OPTION;
+
+import io.protostuff.compiler.model.Module;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Ordered set of tasks that generate output files. Each file is generated by
+ * a single task: when a task for the same file is added again, it replaces
+ * previous one, so the file gets the same content as if all tasks were
+ * executed one after another.
+ *
+ * <p>Tasks are executed on the caller thread, or on a bounded thread pool if
+ * more than one thread is requested. In the latter case all tasks are executed
+ * even if some of them fail; failures are reported in the order in which tasks
+ * were added.
+ */
+final class GenerationTasks {
+
+    private final Map<String, Runnable> tasks = new LinkedHashMap<>();
+
+    /**
+     * Returns number of code generation threads set in module options.
+     */
+    static int getThreads(Module module) {
+        Object value = module.getOptions().get(THREADS_OPTION);
+        if (value == null) {
+            return 1;
+        }
+        int threads;
+        try {
+            threads = value instanceof Number
+                    ? ((Number) value).intValue()
+                    : Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new GeneratorException("Invalid number of threads: %s", e, value);
+        }
+        if (threads < 1) {
+            throw new GeneratorException("Invalid number of threads: %s", value);
+        }
+        return threads;
+    }
+
+    void add(String outputFileName, Runnable task) {
+        tasks.remove(outputFileName);
+        tasks.put(outputFileName, task);
+    }
+
+    void run(int threads) {
+        if (threads <= 1 || tasks.size() <= 1) {
+            for (Runnable task : tasks.values()) {
+                task.run();
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks.values()) {
+                futures.add(executor.submit(task));
+            }
+            await(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(List<Future<?>> futures) {
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeneratorException("Code generation was interrupted", e);
+            } catch (ExecutionException e) {
+                RuntimeException exception = asRuntimeException(e.getCause());
+                if (failure == null) {
+                    failure = exception;
+                } else {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException asRuntimeException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new GeneratorException("Code generation failed", cause);
+    }
+}
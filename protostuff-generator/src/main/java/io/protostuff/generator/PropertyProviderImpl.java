@@ -1,18 +1,63 @@
 package io.protostuff.generator;
 
 import com.google.common.base.Preconditions;
-import java.util.HashMap;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import javax.annotation.Nullable;
 
 /**
  * Custom property provider for proto tree nodes.
+ * Thread-safe: properties can be read while templates are rendered
+ * in parallel.
+ *
+ * <p>Property values can be memoized: each property is computed only once
+ * per node. Nodes are compared by identity and are weakly referenced by the
+ * cache. Memoization is safe only if nodes are not modified while templates
+ * are rendered, which holds for a parsed model.
  *
  * @author Kostiantyn Shchepanovskyi
  */
 public class PropertyProviderImpl implements PropertyProvider {
 
-    private final Map<String, Function<?, Object>> propertyProviders = new HashMap<>();
+    private static final Object NULL = new Object();
+
+    private final Map<String, Function<?, Object>> propertyProviders = new ConcurrentHashMap<>();
+
+    @Nullable
+    private final LoadingCache<Object, ConcurrentMap<String, Object>> cache;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public PropertyProviderImpl() {
+        this(false);
+    }
+
+    /**
+     * Create new property provider.
+     *
+     * @param memoize if set, property values are computed once per node
+     */
+    public PropertyProviderImpl(boolean memoize) {
+        if (memoize) {
+            cache = CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .build(new CacheLoader<Object, ConcurrentMap<String, Object>>() {
+                        @Override
+                        public ConcurrentMap<String, Object> load(Object key) {
+                            return new ConcurrentHashMap<>();
+                        }
+                    });
+        } else {
+            cache = null;
+        }
+    }
 
     @Override
     public boolean hasProperty(String propertyName) {
@@ -26,7 +71,23 @@ public class PropertyProviderImpl implements PropertyProvider {
         Preconditions.checkNotNull(provider,
                 "Cannot find property '%s' for %s",
                 propertyName, object);
-        return provider.apply(object);
+        if (cache == null || object == null) {
+            return provider.apply(object);
+        }
+        ConcurrentMap<String, Object> values = cache.getUnchecked(object);
+        Object value = values.get(propertyName);
+        if (value == null) {
+            missCount.increment();
+            Object computedValue = provider.apply(object);
+            value = computedValue == null ? NULL : computedValue;
+            Object previousValue = values.putIfAbsent(propertyName, value);
+            if (previousValue != null) {
+                value = previousValue;
+            }
+        } else {
+            hitCount.increment();
+        }
+        return value == NULL ? null : value;
     }
 
     @Override
@@ -34,4 +95,16 @@ public class PropertyProviderImpl implements PropertyProvider {
         propertyProviders.put(property, function);
     }
 
+    public boolean isMemoized() {
+        return cache != null;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
 }
@@ -0,0 +1,113 @@
+package io.protostuff.generator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.stringtemplate.v4.Interpreter;
+import org.stringtemplate.v4.ModelAdaptor;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.misc.STNoSuchPropertyException;
+
+/**
+ * Model adaptor that takes properties from a {@link PropertyProvider} and
+ * falls back to getters ({@code getX}, {@code isX}, {@code hasX}) and public
+ * fields, same as {@link org.stringtemplate.v4.misc.ObjectModelAdaptor}.
+ *
+ * <p>Unlike {@code ObjectModelAdaptor}, it does not take any locks: resolved
+ * members are kept in a concurrent per-class cache. Note that a plain
+ * {@code STGroup} still locks its adaptor registry on every lookup, see
+ * {@link ConcurrentStGroupFile}.
+ */
+final class PropertyProviderModelAdaptor implements ModelAdaptor {
+
+    private static final ClassValue<ConcurrentMap<String, Optional<Member>>> MEMBERS =
+            new ClassValue<ConcurrentMap<String, Optional<Member>>>() {
+                @Override
+                protected ConcurrentMap<String, Optional<Member>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final PropertyProvider propertyProvider;
+
+    PropertyProviderModelAdaptor(PropertyProvider propertyProvider) {
+        this.propertyProvider = propertyProvider;
+    }
+
+    @Override
+    public Object getProperty(Interpreter interp, ST self, Object o, Object property, String propertyName) {
+        if (propertyName == null) {
+            throw noSuchProperty(o.getClass(), null, null);
+        }
+        if (propertyProvider.hasProperty(propertyName)) {
+            return propertyProvider.getProperty(o, propertyName);
+        }
+        Class<?> type = o.getClass();
+        Member member = findMember(type, propertyName);
+        if (member == null) {
+            throw noSuchProperty(type, propertyName, null);
+        }
+        try {
+            if (member instanceof Method) {
+                return ((Method) member).invoke(o);
+            }
+            return ((Field) member).get(o);
+        } catch (ReflectiveOperationException e) {
+            throw noSuchProperty(type, propertyName, e);
+        }
+    }
+
+    private static Member findMember(Class<?> type, String propertyName) {
+        ConcurrentMap<String, Optional<Member>> members = MEMBERS.get(type);
+        Optional<Member> member = members.get(propertyName);
+        if (member == null) {
+            member = members.computeIfAbsent(propertyName, name -> Optional.ofNullable(lookupMember(type, name)));
+        }
+        return member.orElse(null);
+    }
+
+    private static Member lookupMember(Class<?> type, String propertyName) {
+        if (propertyName.isEmpty()) {
+            return null;
+        }
+        String suffix = Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+        Member member = getMethod(type, "get" + suffix);
+        if (member == null) {
+            member = getMethod(type, "is" + suffix);
+        }
+        if (member == null) {
+            member = getMethod(type, "has" + suffix);
+        }
+        if (member == null) {
+            member = getField(type, propertyName);
+        }
+        return member;
+    }
+
+    private static Method getMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Field getField(Class<?> type, String name) {
+        try {
+            Field field = type.getField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static STNoSuchPropertyException noSuchProperty(Class<?> type, String propertyName, Exception cause) {
+        return new STNoSuchPropertyException(cause, null, type.getName() + "." + propertyName);
+    }
+}
@@ -1,6 +1,8 @@
 package io.protostuff.generator;
 
 import io.protostuff.compiler.model.Module;
+import io.protostuff.compiler.model.Proto;
+import java.util.Collection;
 
 /**
  * Base interface for all proto generators.
@@ -10,4 +12,13 @@ import io.protostuff.compiler.model.Module;
 public interface ProtoCompiler {
 
     void compile(Module module);
+
+    /**
+     * Compile a module after some of its proto files were changed.
+     * Compilers that can generate code for a subset of proto files
+     * should override this method; by default whole module is compiled.
+     */
+    default void compile(Module module, Collection<Proto> changedProtos) {
+        compile(module);
+    }
 }
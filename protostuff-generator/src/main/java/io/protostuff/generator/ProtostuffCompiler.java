@@ -4,15 +4,22 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.protostuff.compiler.ParserModule;
 import io.protostuff.compiler.model.ImmutableModule;
+import io.protostuff.compiler.model.Module;
 import io.protostuff.compiler.model.ModuleConfiguration;
 import io.protostuff.compiler.model.Proto;
 import io.protostuff.compiler.model.UsageIndex;
+import io.protostuff.compiler.parser.ClasspathIndex;
 import io.protostuff.compiler.parser.FileReader;
 import io.protostuff.compiler.parser.FileReaderFactory;
 import io.protostuff.compiler.parser.Importer;
+import io.protostuff.compiler.parser.ParseCache;
 import io.protostuff.compiler.parser.ProtoContext;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,8 +38,15 @@ public class ProtostuffCompiler {
      * Create new compiler instance.
      */
     public ProtostuffCompiler() {
+        this(new ParserModule());
+    }
+
+    /**
+     * Create new compiler instance that uses given parser configuration.
+     */
+    public ProtostuffCompiler(ParserModule parserModule) {
         injector = Guice.createInjector(
-                new ParserModule(),
+                parserModule,
                 new CompilerModule());
     }
 
@@ -41,34 +55,100 @@ public class ProtostuffCompiler {
      */
     public void compile(ModuleConfiguration configuration) {
         LOGGER.debug("Compiling module {}", configuration);
-        FileReaderFactory fileReaderFactory = injector.getInstance(FileReaderFactory.class);
+        ProtoCompiler compiler = findCompiler(configuration);
+        Module module = parse(configuration);
+        generate(() -> compiler.compile(module));
+    }
+
+    /**
+     * Compile module after some proto files were changed. Changed files and files
+     * that import them (directly or transitively) are parsed again, other files are
+     * taken from the importer's cache. Code is generated only for changed files,
+     * if selected generator supports that.
+     *
+     * @param changedFiles names of changed files, relative to include paths
+     */
+    public void compile(ModuleConfiguration configuration, Collection<String> changedFiles) {
+        LOGGER.debug("Compiling module {}, changed files: {}", configuration, changedFiles);
+        ProtoCompiler compiler = findCompiler(configuration);
         Importer importer = injector.getInstance(Importer.class);
+        Set<String> invalidatedFiles = importer.invalidate(changedFiles);
+        Module module = parse(configuration);
+        List<Proto> changedProtos = new ArrayList<>();
+        for (Proto proto : module.getProtos()) {
+            if (invalidatedFiles.contains(proto.getFilename())) {
+                changedProtos.add(proto);
+            }
+        }
+        generate(() -> compiler.compile(module, changedProtos));
+    }
+
+    /**
+     * Run given generator and report how many files were written
+     * and how many were skipped because they did not change.
+     */
+    private void generate(Runnable generator) {
+        OutputStreamFactory outputStreamFactory = injector.getInstance(OutputStreamFactory.class);
+        if (!(outputStreamFactory instanceof FileOutputStreamFactory)) {
+            generator.run();
+            return;
+        }
+        FileOutputStreamFactory files = (FileOutputStreamFactory) outputStreamFactory;
+        long written = files.getWrittenCount();
+        long skipped = files.getSkippedCount();
+        generator.run();
+        LOGGER.info("Generated files: {} written, {} unchanged",
+                files.getWrittenCount() - written, files.getSkippedCount() - skipped);
+    }
+
+    private ProtoCompiler findCompiler(ModuleConfiguration configuration) {
         CompilerRegistry registry = injector.getInstance(CompilerRegistry.class);
         ProtoCompiler compiler = registry.findCompiler(configuration.getGenerator());
         if (compiler == null) {
             throw new GeneratorException("Unknown template: %s | %s", configuration.getGenerator(), registry.availableCompilers());
         }
+        return compiler;
+    }
+
+    private Module parse(ModuleConfiguration configuration) {
+        FileReaderFactory fileReaderFactory = injector.getInstance(FileReaderFactory.class);
+        Importer importer = injector.getInstance(Importer.class);
         FileReader fileReader = fileReaderFactory.create(configuration.getIncludePaths());
-        Map<String, Proto> importedFiles = new HashMap<>();
-        for (String path : configuration.getProtoFiles()) {
+        List<String> protoFiles = configuration.getProtoFiles();
+        for (String path : protoFiles) {
             LOGGER.info("Parse {}", path);
-            ProtoContext context = importer.importFile(fileReader, path);
-            Proto proto = context.getProto();
-            importedFiles.put(path, proto);
+        }
+        List<ProtoContext> contexts;
+        try {
+            contexts = importer.importFiles(fileReader, null, protoFiles);
+        } finally {
+            // jar files are not locked between compilations
+            ClasspathIndex.closeJars();
+        }
+        ParseCache parseCache = injector.getInstance(ParseCache.class);
+        if (parseCache != ParseCache.DISABLED) {
+            LOGGER.debug("Parse cache: {} hits, {} misses", parseCache.getHitCount(), parseCache.getMissCount());
+        }
+        Map<String, Proto> importedFiles = new HashMap<>();
+        for (int i = 0; i < protoFiles.size(); i++) {
+            Proto proto = contexts.get(i).getProto();
+            importedFiles.put(protoFiles.get(i), proto);
         }
         ImmutableModule.Builder builder = ImmutableModule.builder();
         builder.name(configuration.getName());
         builder.output(configuration.getOutput());
         builder.options(configuration.getOptions());
-        for (Proto proto : importedFiles.values()) {
-            builder.addProtos(proto);
-        }
         UsageIndex index = UsageIndex.build(importedFiles.values());
         builder.usageIndex(index);
-        ImmutableModule module = builder.build();
+        // shared contexts of google/protobuf/* files are used by all modules,
+        // so each module gets its own copy of their proto nodes
         for (Proto proto : importedFiles.values()) {
+            builder.addProtos(proto.getContext().isFrozen() ? proto.copy() : proto);
+        }
+        ImmutableModule module = builder.build();
+        for (Proto proto : module.getProtos()) {
             proto.setModule(module);
         }
-        compiler.compile(module);
+        return module;
     }
 }
@@ -9,9 +9,10 @@ import io.protostuff.compiler.model.Proto;
 import io.protostuff.compiler.model.Service;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collection;
+import org.stringtemplate.v4.AutoIndentWriter;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
-import org.stringtemplate.v4.STGroupFile;
 
 /**
  * Proto compiler based on StringTemplate 4.
@@ -57,7 +58,7 @@ public class StCompiler extends AbstractProtoCompiler {
     public StCompiler(OutputStreamFactory outputStreamFactory,
                       @Assisted String templateFileName) {
         super(outputStreamFactory);
-        STGroup group = new STGroupFile(templateFileName);
+        STGroup group = new ConcurrentStGroupFile(templateFileName);
         group.setListener(new StErrorListener());
         this.stGroup = group;
     }
@@ -66,6 +67,21 @@ public class StCompiler extends AbstractProtoCompiler {
         return stGroup;
     }
 
+    @Override
+    void collectTasks(Module module, Collection<Proto> changedProtos, GenerationTasks tasks) {
+        // templates are loaded lazily, and loading is not thread-safe:
+        // load them before files are rendered in parallel
+        load(stGroup);
+        super.collectTasks(module, changedProtos, tasks);
+    }
+
+    private static void load(STGroup group) {
+        group.load();
+        for (STGroup importedGroup : group.getImportedGroups()) {
+            load(importedGroup);
+        }
+    }
+
     @Override
     protected void compileModule(Module module, Writer writer) {
         compile(MODULE_COMPILER_TEMPLATE, MODULE, module, writer);
@@ -97,9 +113,10 @@ public class StCompiler extends AbstractProtoCompiler {
             throw new GeneratorException("Template %s is not defined", templateName);
         }
         st.add(templateArgName, templateArgValue);
-        String result = st.render();
         try {
-            writer.append(result);
+            // stream rendered template directly to the file writer,
+            // same as st.render() but without building whole file in memory
+            st.write(new AutoIndentWriter(writer));
         } catch (IOException e) {
             throw new GeneratorException("Could not write file: %s", e.getMessage(), e);
         }
@@ -0,0 +1,125 @@
+package io.protostuff.generator.descriptor;
+
+import static io.protostuff.compiler.parser.DefaultDescriptorProtoProvider.DESCRIPTOR_PROTO;
+
+import io.protostuff.compiler.model.Import;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Module;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.parser.ProtoContext;
+import io.protostuff.generator.GeneratorException;
+import io.protostuff.generator.OutputStreamFactory;
+import io.protostuff.generator.ProtoCompiler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes all proto files of a module, together with files they import,
+ * to a single binary {@code FileDescriptorSet} - same output as
+ * {@code protoc --include_imports --include_source_info --descriptor_set_out}.
+ * Files are ordered so that dependencies come first.
+ *
+ * <p>Descriptor set is written to the output stream file by file: only
+ * one encoded file is kept in memory.
+ */
+public class DescriptorSetGenerator implements ProtoCompiler {
+
+    /**
+     * Name of the descriptor set file, relative to module output directory.
+     * Default value is module name with {@code .desc} extension.
+     */
+    public static final String FILE_OPTION = "descriptor_set_file";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DescriptorSetGenerator.class);
+
+    private static final String EXTENSION = ".desc";
+    // FileDescriptorSet
+    private static final int DESCRIPTOR_SET_FILE = 1;
+
+    private final OutputStreamFactory outputStreamFactory;
+    private final Provider<ProtoContext> descriptorProtoProvider;
+
+    @Inject
+    public DescriptorSetGenerator(OutputStreamFactory outputStreamFactory,
+                                  @Named(DESCRIPTOR_PROTO) Provider<ProtoContext> descriptorProtoProvider) {
+        this.outputStreamFactory = outputStreamFactory;
+        this.descriptorProtoProvider = descriptorProtoProvider;
+    }
+
+    @Override
+    public void compile(Module module) {
+        Object fileOption = module.getOptions().get(FILE_OPTION);
+        String file = fileOption == null ? module.getName() + EXTENSION : fileOption.toString();
+        String targetFile = module.getOutput() + "/" + file;
+        LOGGER.info("Generate {}", file);
+        Function<String, Message> optionTypes = createOptionTypeResolver();
+        ProtobufWriter writer = new ProtobufWriter();
+        ProtobufWriter locations = new ProtobufWriter();
+        try (OutputStream out = outputStreamFactory.createStream(targetFile)) {
+            for (Proto proto : getFiles(module)) {
+                writer.reset();
+                int start = writer.startMessage(DESCRIPTOR_SET_FILE);
+                new FileDescriptorEncoder(proto, optionTypes, writer, locations).encode();
+                writer.endMessage(start);
+                writer.writeTo(out);
+            }
+        } catch (IOException e) {
+            throw new GeneratorException("Could not write %s", e, targetFile);
+        }
+    }
+
+    /**
+     * Options message types are taken from {@code google/protobuf/descriptor.proto},
+     * source files do not have to import it.
+     */
+    private Function<String, Message> createOptionTypeResolver() {
+        Map<String, Message> types = new HashMap<>();
+        return name -> types.computeIfAbsent(name, key -> {
+            Message type = descriptorProtoProvider.get().resolve(Message.class, key);
+            if (type == null) {
+                throw new GeneratorException("Could not find options type %s", key);
+            }
+            return type;
+        });
+    }
+
+    /**
+     * Returns module files and all their imports, each file is placed after its dependencies.
+     */
+    static List<Proto> getFiles(Module module) {
+        List<Proto> protos = new ArrayList<>(module.getProtos());
+        protos.sort(Comparator.comparing(Proto::getFilename));
+        Set<Proto> result = new LinkedHashSet<>();
+        for (Proto proto : protos) {
+            addWithDependencies(proto, result, new LinkedHashSet<>());
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static void addWithDependencies(Proto proto, Set<Proto> result, Set<Proto> path) {
+        if (result.contains(proto) || !path.add(proto)) {
+            return;
+        }
+        for (Import anImport : proto.getImports()) {
+            Proto dependency = anImport.getProto();
+            if (dependency != null) {
+                addWithDependencies(dependency, result, path);
+            }
+        }
+        path.remove(proto);
+        result.add(proto);
+    }
+}
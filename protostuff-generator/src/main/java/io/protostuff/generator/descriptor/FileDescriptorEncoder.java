@@ -0,0 +1,856 @@
+package io.protostuff.generator.descriptor;
+
+import io.protostuff.compiler.model.AbstractDescriptor;
+import io.protostuff.compiler.model.DynamicMessage;
+import io.protostuff.compiler.model.DynamicMessage.Key;
+import io.protostuff.compiler.model.DynamicMessage.Value;
+import io.protostuff.compiler.model.Element;
+import io.protostuff.compiler.model.Enum;
+import io.protostuff.compiler.model.EnumConstant;
+import io.protostuff.compiler.model.Extension;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.FieldModifier;
+import io.protostuff.compiler.model.FieldType;
+import io.protostuff.compiler.model.Group;
+import io.protostuff.compiler.model.Import;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Oneof;
+import io.protostuff.compiler.model.Package;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.model.ProtobufConstants;
+import io.protostuff.compiler.model.Range;
+import io.protostuff.compiler.model.ScalarFieldType;
+import io.protostuff.compiler.model.Service;
+import io.protostuff.compiler.model.ServiceMethod;
+import io.protostuff.compiler.model.Syntax;
+import io.protostuff.compiler.model.UserTypeContainer;
+import io.protostuff.compiler.parser.OptionsPostProcessor;
+import io.protostuff.generator.GeneratorException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Encodes proto file model to a binary {@code FileDescriptorProto}, the same
+ * way protoc does it, including options and source code info.
+ *
+ * <p>Source code info contains only line numbers and comments - this is all
+ * that model knows about source file. Synthetic map entry types are named
+ * the way protoc names them.
+ */
+final class FileDescriptorEncoder {
+
+    private static final int[] ROOT = new int[0];
+
+    // FileDescriptorProto
+    private static final int FILE_NAME = 1;
+    private static final int FILE_PACKAGE = 2;
+    private static final int FILE_DEPENDENCY = 3;
+    private static final int FILE_MESSAGE_TYPE = 4;
+    private static final int FILE_ENUM_TYPE = 5;
+    private static final int FILE_SERVICE = 6;
+    private static final int FILE_EXTENSION = 7;
+    private static final int FILE_OPTIONS = 8;
+    private static final int FILE_SOURCE_CODE_INFO = 9;
+    private static final int FILE_PUBLIC_DEPENDENCY = 10;
+    private static final int FILE_SYNTAX = 12;
+    // DescriptorProto
+    private static final int MESSAGE_NAME = 1;
+    private static final int MESSAGE_FIELD = 2;
+    private static final int MESSAGE_NESTED_TYPE = 3;
+    private static final int MESSAGE_ENUM_TYPE = 4;
+    private static final int MESSAGE_EXTENSION_RANGE = 5;
+    private static final int MESSAGE_EXTENSION = 6;
+    private static final int MESSAGE_OPTIONS = 7;
+    private static final int MESSAGE_ONEOF_DECL = 8;
+    private static final int MESSAGE_RESERVED_RANGE = 9;
+    private static final int MESSAGE_RESERVED_NAME = 10;
+    // DescriptorProto.ExtensionRange, DescriptorProto.ReservedRange, EnumDescriptorProto.EnumReservedRange
+    private static final int RANGE_START = 1;
+    private static final int RANGE_END = 2;
+    // FieldDescriptorProto
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_EXTENDEE = 2;
+    private static final int FIELD_NUMBER = 3;
+    private static final int FIELD_LABEL = 4;
+    private static final int FIELD_TYPE = 5;
+    private static final int FIELD_TYPE_NAME = 6;
+    private static final int FIELD_DEFAULT_VALUE = 7;
+    private static final int FIELD_OPTIONS = 8;
+    private static final int FIELD_ONEOF_INDEX = 9;
+    private static final int FIELD_PROTO3_OPTIONAL = 17;
+    private static final int LABEL_OPTIONAL = 1;
+    private static final int LABEL_REQUIRED = 2;
+    private static final int LABEL_REPEATED = 3;
+    // FieldDescriptorProto.Type
+    private static final int TYPE_DOUBLE = 1;
+    private static final int TYPE_FLOAT = 2;
+    private static final int TYPE_INT64 = 3;
+    private static final int TYPE_UINT64 = 4;
+    private static final int TYPE_INT32 = 5;
+    private static final int TYPE_FIXED64 = 6;
+    private static final int TYPE_FIXED32 = 7;
+    private static final int TYPE_BOOL = 8;
+    private static final int TYPE_STRING = 9;
+    private static final int TYPE_GROUP = 10;
+    private static final int TYPE_MESSAGE = 11;
+    private static final int TYPE_BYTES = 12;
+    private static final int TYPE_UINT32 = 13;
+    private static final int TYPE_ENUM = 14;
+    private static final int TYPE_SFIXED32 = 15;
+    private static final int TYPE_SFIXED64 = 16;
+    private static final int TYPE_SINT32 = 17;
+    private static final int TYPE_SINT64 = 18;
+    // OneofDescriptorProto
+    private static final int ONEOF_NAME = 1;
+    private static final int ONEOF_OPTIONS = 2;
+    // EnumDescriptorProto
+    private static final int ENUM_NAME = 1;
+    private static final int ENUM_VALUE = 2;
+    private static final int ENUM_OPTIONS = 3;
+    private static final int ENUM_RESERVED_RANGE = 4;
+    private static final int ENUM_RESERVED_NAME = 5;
+    // EnumValueDescriptorProto
+    private static final int ENUM_VALUE_NAME = 1;
+    private static final int ENUM_VALUE_NUMBER = 2;
+    private static final int ENUM_VALUE_OPTIONS = 3;
+    // ServiceDescriptorProto
+    private static final int SERVICE_NAME = 1;
+    private static final int SERVICE_METHOD = 2;
+    private static final int SERVICE_OPTIONS = 3;
+    // MethodDescriptorProto
+    private static final int METHOD_NAME = 1;
+    private static final int METHOD_INPUT_TYPE = 2;
+    private static final int METHOD_OUTPUT_TYPE = 3;
+    private static final int METHOD_OPTIONS = 4;
+    private static final int METHOD_CLIENT_STREAMING = 5;
+    private static final int METHOD_SERVER_STREAMING = 6;
+    // SourceCodeInfo
+    private static final int SOURCE_CODE_INFO_LOCATION = 1;
+    private static final int LOCATION_PATH = 1;
+    private static final int LOCATION_SPAN = 2;
+    private static final int LOCATION_LEADING_COMMENTS = 3;
+    private static final int LOCATION_LEADING_DETACHED_COMMENTS = 6;
+
+    private static final String PROTO3 = "proto3";
+    private static final String MAP_ENTRY_SUFFIX = "_entry";
+    private static final double MAX_LONG = 0x1p63;
+
+    private final Proto proto;
+    private final Function<String, Message> optionTypes;
+    private final ProtobufWriter out;
+    private final ProtobufWriter locations;
+    private final boolean proto3;
+
+    /**
+     * Create encoder for a given proto file.
+     *
+     * @param optionTypes resolves options message types of {@code google/protobuf/descriptor.proto}
+     *                    by their fully qualified names
+     * @param out         target writer
+     * @param locations   writer for a temporary copy of source code info
+     */
+    FileDescriptorEncoder(Proto proto, Function<String, Message> optionTypes,
+                          ProtobufWriter out, ProtobufWriter locations) {
+        this.proto = proto;
+        this.optionTypes = optionTypes;
+        this.out = out;
+        this.locations = locations;
+        this.proto3 = PROTO3.equals(proto.getSyntax().getValue());
+    }
+
+    /**
+     * Write content of a {@code FileDescriptorProto} message.
+     */
+    void encode() {
+        locations.reset();
+        out.writeString(FILE_NAME, proto.getFilename());
+        // proto file comment is a detached comment of the syntax statement,
+        // or of the package statement if syntax is not declared
+        Syntax syntax = proto.getSyntax();
+        Package pkg = proto.getPackage();
+        List<String> comments = proto.getCommentLines();
+        if (pkg != Package.DEFAULT) {
+            out.writeString(FILE_PACKAGE, pkg.getValue());
+            writeLocation(path(ROOT, FILE_PACKAGE), pkg,
+                    syntax == Syntax.DEFAULT ? comments : Collections.emptyList());
+        }
+        writeImports();
+        writeMessageTypes(proto, ROOT, FILE_MESSAGE_TYPE);
+        writeEnums(proto, ROOT, FILE_ENUM_TYPE);
+        writeServices();
+        writeExtensions(proto, ROOT, FILE_EXTENSION);
+        writeOptions(FILE_OPTIONS, proto, ProtobufConstants.MSG_FILE_OPTIONS);
+        if (syntax != Syntax.DEFAULT) {
+            out.writeString(FILE_SYNTAX, syntax.getValue());
+            writeLocation(path(ROOT, FILE_SYNTAX), syntax, comments);
+        }
+        if (locations.size() > 0) {
+            out.writeBytes(FILE_SOURCE_CODE_INFO, locations);
+        }
+    }
+
+    private void writeImports() {
+        List<Import> imports = proto.getImports();
+        List<Integer> publicDependencies = new ArrayList<>();
+        for (int i = 0; i < imports.size(); i++) {
+            Import anImport = imports.get(i);
+            out.writeString(FILE_DEPENDENCY, anImport.getValue());
+            writeLocation(path(ROOT, FILE_DEPENDENCY, i), anImport, false);
+            if (anImport.isPublic()) {
+                publicDependencies.add(i);
+            }
+        }
+        for (int index : publicDependencies) {
+            out.writeVarint(FILE_PUBLIC_DEPENDENCY, index);
+        }
+    }
+
+    /**
+     * Write nested types of a container. Groups are declared as nested types
+     * of a message (or a file) that contains them, after regular messages.
+     */
+    private void writeMessageTypes(UserTypeContainer container, int[] path, int messageTypeField) {
+        int index = 0;
+        for (Message message : container.getMessages()) {
+            writeMessage(messageTypeField, message, path(path, messageTypeField, index++));
+        }
+        for (Group group : getGroups(container)) {
+            writeMessage(messageTypeField, group, path(path, messageTypeField, index++));
+        }
+    }
+
+    private static List<Group> getGroups(UserTypeContainer container) {
+        List<Group> groups = new ArrayList<>();
+        if (container instanceof Message) {
+            Message message = (Message) container;
+            groups.addAll(message.getGroups());
+            for (Oneof oneof : message.getOneofs()) {
+                groups.addAll(oneof.getGroups());
+            }
+        }
+        for (Extension extension : container.getDeclaredExtensions()) {
+            groups.addAll(extension.getGroups());
+        }
+        return groups;
+    }
+
+    private void writeMessage(int messageTypeField, Message message, int[] path) {
+        final int start = out.startMessage(messageTypeField);
+        boolean mapEntry = message.isMapEntry();
+        if (mapEntry) {
+            out.writeString(MESSAGE_NAME, getMapEntryName(message.getName()));
+        } else {
+            out.writeString(MESSAGE_NAME, message.getName());
+            writeLocation(path, message, true);
+        }
+        List<Oneof> oneofs = message.getOneofs();
+        List<Field> proto3OptionalFields = new ArrayList<>();
+        List<Field> fields = message.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            int oneofIndex = -1;
+            if (field.isOneofPart()) {
+                oneofIndex = oneofs.indexOf(field.getOneof());
+            } else if (isProto3Optional(field)) {
+                oneofIndex = oneofs.size() + proto3OptionalFields.size();
+                proto3OptionalFields.add(field);
+            }
+            writeField(MESSAGE_FIELD, field, mapEntry ? null : path(path, MESSAGE_FIELD, i), null, oneofIndex);
+        }
+        writeMessageTypes(message, path, MESSAGE_NESTED_TYPE);
+        writeEnums(message, path, MESSAGE_ENUM_TYPE);
+        writeRanges(MESSAGE_EXTENSION_RANGE, message.getExtensionRanges(), path, true);
+        writeExtensions(message, path, MESSAGE_EXTENSION);
+        writeOptions(MESSAGE_OPTIONS, message, ProtobufConstants.MSG_MESSAGE_OPTIONS);
+        for (int i = 0; i < oneofs.size(); i++) {
+            Oneof oneof = oneofs.get(i);
+            final int oneofStart = out.startMessage(MESSAGE_ONEOF_DECL);
+            out.writeString(ONEOF_NAME, oneof.getName());
+            writeOptions(ONEOF_OPTIONS, oneof, ProtobufConstants.MSG_ONEOF_OPTIONS);
+            out.endMessage(oneofStart);
+            writeLocation(path(path, MESSAGE_ONEOF_DECL, i), oneof, true);
+        }
+        for (Field field : proto3OptionalFields) {
+            // synthetic oneof of a proto3 optional field
+            final int oneofStart = out.startMessage(MESSAGE_ONEOF_DECL);
+            out.writeString(ONEOF_NAME, "_" + field.getName());
+            out.endMessage(oneofStart);
+        }
+        writeRanges(MESSAGE_RESERVED_RANGE, message.getReservedFieldRanges(), path, true);
+        for (String name : message.getReservedFieldNames()) {
+            out.writeString(MESSAGE_RESERVED_NAME, name);
+        }
+        out.endMessage(start);
+    }
+
+    /**
+     * Fields with an explicit {@code optional} modifier in proto3 files.
+     * Default modifier is same as optional, so it must be checked that
+     * modifier was set. Map entry fields are always optional.
+     */
+    private boolean isProto3Optional(Field field) {
+        return proto3 && field.hasModifier() && field.getModifier() == FieldModifier.OPTIONAL
+                && !field.isOneofPart()
+                && field.getParent() instanceof Message
+                && !((Message) field.getParent()).isMapEntry();
+    }
+
+    /**
+     * Write field or extension field.
+     *
+     * @param path       path of a field for source code info, or null if field is synthetic
+     * @param extendee   fully qualified name of extended message, or null for regular fields
+     * @param oneofIndex index of containing oneof declaration, -1 if field is not a oneof part
+     */
+    private void writeField(int fieldNumber, Field field, int[] path, String extendee, int oneofIndex) {
+        final int start = out.startMessage(fieldNumber);
+        out.writeString(FIELD_NAME, field.getName());
+        if (extendee != null) {
+            out.writeString(FIELD_EXTENDEE, extendee);
+        }
+        out.writeVarint(FIELD_NUMBER, field.getTag());
+        out.writeVarint(FIELD_LABEL, getLabel(field));
+        FieldType type = field.getType();
+        int typeNumber = getTypeNumber(type);
+        out.writeVarint(FIELD_TYPE, typeNumber);
+        if (type instanceof Message) {
+            Message message = (Message) type;
+            String typeName = message.getFullyQualifiedName();
+            if (message.isMapEntry()) {
+                typeName = typeName.substring(0, typeName.lastIndexOf('.') + 1) + getMapEntryName(message.getName());
+            }
+            out.writeString(FIELD_TYPE_NAME, typeName);
+        } else if (type instanceof Enum) {
+            out.writeString(FIELD_TYPE_NAME, ((Enum) type).getFullyQualifiedName());
+        }
+        Value defaultValue = field.getOptions().get(OptionsPostProcessor.DEFAULT);
+        if (defaultValue != null) {
+            out.writeString(FIELD_DEFAULT_VALUE, getDefaultValue(field, typeNumber, defaultValue));
+        }
+        writeOptions(FIELD_OPTIONS, field, ProtobufConstants.MSG_FIELD_OPTIONS);
+        if (oneofIndex >= 0) {
+            out.writeVarint(FIELD_ONEOF_INDEX, oneofIndex);
+        }
+        if (isProto3Optional(field)) {
+            out.writeBoolean(FIELD_PROTO3_OPTIONAL, true);
+        }
+        out.endMessage(start);
+        if (path != null) {
+            writeLocation(path, field, true);
+        }
+    }
+
+    private static int getLabel(Field field) {
+        FieldModifier modifier = field.getModifier();
+        if (modifier == FieldModifier.REQUIRED) {
+            return LABEL_REQUIRED;
+        }
+        if (modifier == FieldModifier.REPEATED) {
+            return LABEL_REPEATED;
+        }
+        return LABEL_OPTIONAL;
+    }
+
+    private static int getTypeNumber(FieldType type) {
+        if (type instanceof Group) {
+            return TYPE_GROUP;
+        }
+        if (type instanceof Message) {
+            return TYPE_MESSAGE;
+        }
+        if (type instanceof Enum) {
+            return TYPE_ENUM;
+        }
+        switch ((ScalarFieldType) type) {
+            case DOUBLE:
+                return TYPE_DOUBLE;
+            case FLOAT:
+                return TYPE_FLOAT;
+            case INT64:
+                return TYPE_INT64;
+            case UINT64:
+                return TYPE_UINT64;
+            case INT32:
+                return TYPE_INT32;
+            case FIXED64:
+                return TYPE_FIXED64;
+            case FIXED32:
+                return TYPE_FIXED32;
+            case BOOL:
+                return TYPE_BOOL;
+            case STRING:
+                return TYPE_STRING;
+            case BYTES:
+                return TYPE_BYTES;
+            case UINT32:
+                return TYPE_UINT32;
+            case SFIXED32:
+                return TYPE_SFIXED32;
+            case SFIXED64:
+                return TYPE_SFIXED64;
+            case SINT32:
+                return TYPE_SINT32;
+            case SINT64:
+                return TYPE_SINT64;
+            default:
+                throw new IllegalStateException(String.valueOf(type));
+        }
+    }
+
+    /**
+     * Name of a map entry type, as protoc generates it: {@code map_field} becomes {@code MapFieldEntry}.
+     */
+    static String getMapEntryName(String entryTypeName) {
+        String fieldName = entryTypeName;
+        if (fieldName.endsWith(MAP_ENTRY_SUFFIX)) {
+            fieldName = fieldName.substring(0, fieldName.length() - MAP_ENTRY_SUFFIX.length());
+        }
+        StringBuilder result = new StringBuilder(fieldName.length() + 5);
+        boolean capitalizeNext = true;
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (c == '_') {
+                capitalizeNext = true;
+            } else if (capitalizeNext) {
+                result.append(c >= 'a' && c <= 'z' ? (char) (c - 'a' + 'A') : c);
+                capitalizeNext = false;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append("Entry").toString();
+    }
+
+    /**
+     * Convert default value to a string, as protoc writes it.
+     */
+    private static String getDefaultValue(Field field, int typeNumber, Value value) {
+        switch (typeNumber) {
+            case TYPE_STRING:
+                return new String(unescape(checkType(field, value, Value.Type.STRING).getString()),
+                        StandardCharsets.UTF_8);
+            case TYPE_BYTES:
+                return escape(unescape(checkType(field, value, Value.Type.STRING).getString()));
+            case TYPE_BOOL:
+                return String.valueOf(checkType(field, value, Value.Type.BOOLEAN).getBoolean());
+            case TYPE_ENUM:
+                return checkType(field, value, Value.Type.ENUM).getEnumName();
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                if (value.getType() == Value.Type.INTEGER) {
+                    return String.valueOf(value.getInt64());
+                }
+                double number = checkType(field, value, Value.Type.FLOAT).getDouble();
+                if (Double.isNaN(number)) {
+                    return "nan";
+                } else if (Double.isInfinite(number)) {
+                    return number > 0 ? "inf" : "-inf";
+                } else if (number == Math.rint(number) && Math.abs(number) < MAX_LONG) {
+                    return String.valueOf((long) number);
+                }
+                return typeNumber == TYPE_FLOAT ? String.valueOf((float) number) : String.valueOf(number);
+            case TYPE_UINT64:
+            case TYPE_FIXED64:
+                return Long.toUnsignedString(checkType(field, value, Value.Type.INTEGER).getInt64());
+            default:
+                return String.valueOf(checkType(field, value, Value.Type.INTEGER).getInt64());
+        }
+    }
+
+    /**
+     * Extension fields are written without their extend blocks.
+     */
+    private void writeExtensions(UserTypeContainer container, int[] path, int extensionField) {
+        int index = 0;
+        for (Extension extension : container.getDeclaredExtensions()) {
+            String extendee = extension.getExtendee().getFullyQualifiedName();
+            for (Field field : extension.getFields()) {
+                writeField(extensionField, field, path(path, extensionField, index++), extendee, -1);
+            }
+        }
+    }
+
+    private void writeEnums(UserTypeContainer container, int[] path, int enumTypeField) {
+        List<Enum> enums = container.getEnums();
+        for (int i = 0; i < enums.size(); i++) {
+            Enum anEnum = enums.get(i);
+            int[] enumPath = path(path, enumTypeField, i);
+            final int start = out.startMessage(enumTypeField);
+            out.writeString(ENUM_NAME, anEnum.getName());
+            List<EnumConstant> constants = anEnum.getConstants();
+            for (int j = 0; j < constants.size(); j++) {
+                EnumConstant constant = constants.get(j);
+                final int valueStart = out.startMessage(ENUM_VALUE);
+                out.writeString(ENUM_VALUE_NAME, constant.getName());
+                out.writeVarint(ENUM_VALUE_NUMBER, constant.getValue());
+                writeOptions(ENUM_VALUE_OPTIONS, constant, ProtobufConstants.MSG_ENUM_VALUE_OPTIONS);
+                out.endMessage(valueStart);
+                writeLocation(path(enumPath, ENUM_VALUE, j), constant, true);
+            }
+            writeOptions(ENUM_OPTIONS, anEnum, ProtobufConstants.MSG_ENUM_OPTIONS);
+            writeRanges(ENUM_RESERVED_RANGE, anEnum.getReservedFieldRanges(), enumPath, false);
+            for (String name : anEnum.getReservedFieldNames()) {
+                out.writeString(ENUM_RESERVED_NAME, name);
+            }
+            out.endMessage(start);
+            writeLocation(enumPath, anEnum, true);
+        }
+    }
+
+    /**
+     * Write field ranges. Message ranges are stored with exclusive end,
+     * enum ranges - with inclusive end, "max" of enum ranges is a max int32 value.
+     */
+    private void writeRanges(int rangeField, List<Range> ranges, int[] path, boolean exclusiveEnd) {
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            int to = range.getTo();
+            if (exclusiveEnd) {
+                to++;
+            } else if (to == Field.MAX_TAG_VALUE) {
+                to = Integer.MAX_VALUE;
+            }
+            final int start = out.startMessage(rangeField);
+            out.writeVarint(RANGE_START, range.getFrom());
+            out.writeVarint(RANGE_END, to);
+            out.endMessage(start);
+            writeLocation(path(path, rangeField, i), range, false);
+        }
+    }
+
+    private void writeServices() {
+        List<Service> services = proto.getServices();
+        for (int i = 0; i < services.size(); i++) {
+            Service service = services.get(i);
+            int[] servicePath = path(ROOT, FILE_SERVICE, i);
+            final int start = out.startMessage(FILE_SERVICE);
+            out.writeString(SERVICE_NAME, service.getName());
+            List<ServiceMethod> methods = service.getMethods();
+            for (int j = 0; j < methods.size(); j++) {
+                ServiceMethod method = methods.get(j);
+                final int methodStart = out.startMessage(SERVICE_METHOD);
+                out.writeString(METHOD_NAME, method.getName());
+                out.writeString(METHOD_INPUT_TYPE, method.getArgType().getFullyQualifiedName());
+                out.writeString(METHOD_OUTPUT_TYPE, method.getReturnType().getFullyQualifiedName());
+                writeOptions(METHOD_OPTIONS, method, ProtobufConstants.MSG_METHOD_OPTIONS);
+                if (method.isArgStream()) {
+                    out.writeBoolean(METHOD_CLIENT_STREAMING, true);
+                }
+                if (method.isReturnStream()) {
+                    out.writeBoolean(METHOD_SERVER_STREAMING, true);
+                }
+                out.endMessage(methodStart);
+                writeLocation(path(servicePath, SERVICE_METHOD, j), method, true);
+            }
+            writeOptions(SERVICE_OPTIONS, service, ProtobufConstants.MSG_SERVICE_OPTIONS);
+            out.endMessage(start);
+            writeLocation(servicePath, service, true);
+        }
+    }
+
+    private void writeOptions(int optionsField, AbstractDescriptor descriptor, String optionsType) {
+        DynamicMessage options = descriptor.getOptions();
+        int size = options.size();
+        if (options.get(OptionsPostProcessor.DEFAULT) != null) {
+            // default value is stored in a field descriptor
+            size--;
+        }
+        if (size == 0) {
+            return;
+        }
+        final int start = out.startMessage(optionsField);
+        writeMessageValue(descriptor, options, optionTypes.apply(optionsType));
+        out.endMessage(start);
+    }
+
+    private void writeMessageValue(AbstractDescriptor descriptor, DynamicMessage message, Message type) {
+        for (Map.Entry<Key, Value> entry : message.getFields()) {
+            Key key = entry.getKey();
+            Field field;
+            if (key.isExtension()) {
+                field = proto.getContext().getExtensionRegistry()
+                        .getExtensionFields(type.getFullyQualifiedName())
+                        .get("." + key.getName());
+            } else {
+                field = type.getField(key.getName());
+            }
+            if (field == null) {
+                if (!key.isExtension() && OptionsPostProcessor.DEFAULT.equals(key.getName())) {
+                    continue;
+                }
+                throw new GeneratorException("%s: could not encode option '%s' of %s: unknown field",
+                        descriptor.getSourceCodeLocation(), key, type.getFullyQualifiedName());
+            }
+            writeValue(descriptor, field, entry.getValue());
+        }
+    }
+
+    private void writeValue(AbstractDescriptor descriptor, Field field, Value value) {
+        FieldType type = field.getType();
+        int number = field.getTag();
+        if (type instanceof Group) {
+            out.startGroup(number);
+            writeMessageValue(descriptor, checkType(field, value, Value.Type.MESSAGE).getMessage(), (Group) type);
+            out.endGroup(number);
+        } else if (type instanceof Message) {
+            final int start = out.startMessage(number);
+            writeMessageValue(descriptor, checkType(field, value, Value.Type.MESSAGE).getMessage(), (Message) type);
+            out.endMessage(start);
+        } else if (type instanceof Enum) {
+            String name = checkType(field, value, Value.Type.ENUM).getEnumName();
+            EnumConstant constant = ((Enum) type).getConstant(name);
+            if (constant == null) {
+                throw new GeneratorException("%s: could not encode option '%s': unknown value %s",
+                        value.getSourceCodeLocation(), field.getName(), name);
+            }
+            out.writeVarint(number, constant.getValue());
+        } else {
+            writeScalarValue(field, (ScalarFieldType) type, value);
+        }
+    }
+
+    private void writeScalarValue(Field field, ScalarFieldType type, Value value) {
+        int number = field.getTag();
+        switch (type) {
+            case BOOL:
+                out.writeBoolean(number, checkType(field, value, Value.Type.BOOLEAN).getBoolean());
+                break;
+            case STRING:
+            case BYTES:
+                out.writeBytes(number, unescape(checkType(field, value, Value.Type.STRING).getString()));
+                break;
+            case FLOAT:
+                out.writeFixed32(number, Float.floatToIntBits((float) getNumber(field, value)));
+                break;
+            case DOUBLE:
+                out.writeFixed64(number, Double.doubleToLongBits(getNumber(field, value)));
+                break;
+            case FIXED32:
+            case SFIXED32:
+                out.writeFixed32(number, (int) getInteger(field, value));
+                break;
+            case FIXED64:
+            case SFIXED64:
+                out.writeFixed64(number, getInteger(field, value));
+                break;
+            case SINT32:
+                out.writeVarint(number, encodeZigZag32((int) getInteger(field, value)));
+                break;
+            case SINT64:
+                out.writeVarint(number, encodeZigZag64(getInteger(field, value)));
+                break;
+            default:
+                // int32 values are sign-extended, as protoc does
+                out.writeVarint(number, getInteger(field, value));
+        }
+    }
+
+    private static long encodeZigZag32(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static long encodeZigZag64(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long getInteger(Field field, Value value) {
+        return checkType(field, value, Value.Type.INTEGER).getInt64();
+    }
+
+    private static double getNumber(Field field, Value value) {
+        if (value.getType() == Value.Type.INTEGER) {
+            return value.getInt64();
+        }
+        return checkType(field, value, Value.Type.FLOAT).getDouble();
+    }
+
+    private static Value checkType(Field field, Value value, Value.Type expectedType) {
+        if (value.getType() != expectedType) {
+            throw new GeneratorException("%s: could not encode option '%s': expected %s value",
+                    value.getSourceCodeLocation(), field.getName(), expectedType);
+        }
+        return value;
+    }
+
+    /**
+     * Decode escape sequences of a string literal, as it was written in a
+     * source file. Result is a byte sequence: other characters are encoded
+     * using UTF-8, octal and hex escapes are bytes.
+     */
+    static byte[] unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream(value.length());
+        int start = 0;
+        while (true) {
+            int next = value.indexOf('\\', start);
+            byte[] text = value.substring(start, next < 0 ? value.length() : next).getBytes(StandardCharsets.UTF_8);
+            result.write(text, 0, text.length);
+            if (next < 0) {
+                return result.toByteArray();
+            }
+            if (next == value.length() - 1) {
+                // dangling backslash is kept as is
+                result.write('\\');
+                return result.toByteArray();
+            }
+            start = unescape(value, next + 1, result);
+        }
+    }
+
+    /**
+     * Decode single escape sequence, starting after the backslash.
+     *
+     * @return position after the escape sequence
+     */
+    private static int unescape(String value, int start, ByteArrayOutputStream result) {
+        char c = value.charAt(start);
+        switch (c) {
+            case 'a':
+                result.write(7);
+                return start + 1;
+            case 'b':
+                result.write('\b');
+                return start + 1;
+            case 'f':
+                result.write('\f');
+                return start + 1;
+            case 'n':
+                result.write('\n');
+                return start + 1;
+            case 'r':
+                result.write('\r');
+                return start + 1;
+            case 't':
+                result.write('\t');
+                return start + 1;
+            case 'v':
+                result.write(11);
+                return start + 1;
+            case 'x':
+            case 'X':
+                return appendDigits(value, start + 1, 2, 16, result);
+            default:
+                if (c >= '0' && c <= '7') {
+                    return appendDigits(value, start, 3, 8, result);
+                }
+                // \\, \', \", \? and unknown escapes
+                byte[] bytes = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                result.write(bytes, 0, bytes.length);
+                return start + 1;
+        }
+    }
+
+    private static int appendDigits(String value, int start, int maxDigits, int radix, ByteArrayOutputStream result) {
+        int code = 0;
+        int i = start;
+        while (i < value.length() && i - start < maxDigits && Character.digit(value.charAt(i), radix) >= 0) {
+            code = code * radix + Character.digit(value.charAt(i), radix);
+            i++;
+        }
+        result.write(code);
+        return i;
+    }
+
+    /**
+     * Escape bytes value the way protoc does it for default values.
+     */
+    static String escape(byte[] value) {
+        StringBuilder result = new StringBuilder(value.length);
+        for (byte b : value) {
+            int c = b & 0xFF;
+            switch (c) {
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\'':
+                    result.append("\\'");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                default:
+                    if (c < ' ' || c >= 0x7F) {
+                        result.append('\\')
+                                .append((char) ('0' + (c >> 6)))
+                                .append((char) ('0' + ((c >> 3) & 7)))
+                                .append((char) ('0' + (c & 7)));
+                    } else {
+                        result.append((char) c);
+                    }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Write source code location of an element. Model does not keep columns,
+     * so span contains only a line number.
+     */
+    private void writeLocation(int[] path, Element element, boolean writeComments) {
+        int line = element.getSourceCodeLocation().getLine();
+        List<String> comments = writeComments ? element.getCommentLines() : null;
+        boolean hasComments = comments != null && !comments.isEmpty();
+        if (line <= 0 && !hasComments) {
+            return;
+        }
+        final int start = locations.startMessage(SOURCE_CODE_INFO_LOCATION);
+        locations.writePacked(LOCATION_PATH, path);
+        locations.writePacked(LOCATION_SPAN, new int[] {Math.max(line - 1, 0), 0, 0});
+        if (hasComments) {
+            locations.writeString(LOCATION_LEADING_COMMENTS, joinLines(comments));
+        }
+        locations.endMessage(start);
+    }
+
+    private void writeLocation(int[] path, Element element, List<String> detachedComments) {
+        int line = element.getSourceCodeLocation().getLine();
+        if (line <= 0 && detachedComments.isEmpty()) {
+            return;
+        }
+        final int start = locations.startMessage(SOURCE_CODE_INFO_LOCATION);
+        locations.writePacked(LOCATION_PATH, path);
+        locations.writePacked(LOCATION_SPAN, new int[] {Math.max(line - 1, 0), 0, 0});
+        if (!detachedComments.isEmpty()) {
+            locations.writeString(LOCATION_LEADING_DETACHED_COMMENTS, joinLines(detachedComments));
+        }
+        locations.endMessage(start);
+    }
+
+    private static String joinLines(List<String> lines) {
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            result.append(line).append('\n');
+        }
+        return result.toString();
+    }
+
+    private static int[] path(int[] parent, int field) {
+        int[] result = Arrays.copyOf(parent, parent.length + 1);
+        result[parent.length] = field;
+        return result;
+    }
+
+    private static int[] path(int[] parent, int field, int index) {
+        int[] result = Arrays.copyOf(parent, parent.length + 2);
+        result[parent.length] = field;
+        result[parent.length + 1] = index;
+        return result;
+    }
+}
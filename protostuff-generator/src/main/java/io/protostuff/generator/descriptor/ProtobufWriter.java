@@ -0,0 +1,161 @@
+package io.protostuff.generator.descriptor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal writer of protobuf binary wire format. Nested messages are written
+ * in place, their length is inserted in front of them when message is ended,
+ * so writer does not allocate a buffer per message.
+ */
+final class ProtobufWriter {
+
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int START_GROUP = 3;
+    static final int END_GROUP = 4;
+    static final int FIXED32 = 5;
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int position;
+
+    int size() {
+        return position;
+    }
+
+    void reset() {
+        position = 0;
+    }
+
+    void writeVarint(int number, long value) {
+        writeTag(number, VARINT);
+        writeRawVarint(value);
+    }
+
+    void writeBoolean(int number, boolean value) {
+        writeVarint(number, value ? 1 : 0);
+    }
+
+    void writeFixed32(int number, int value) {
+        writeTag(number, FIXED32);
+        ensureCapacity(Integer.BYTES);
+        for (int i = 0; i < Integer.BYTES; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    void writeFixed64(int number, long value) {
+        writeTag(number, FIXED64);
+        ensureCapacity(Long.BYTES);
+        for (int i = 0; i < Long.BYTES; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    void writeString(int number, String value) {
+        writeBytes(number, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void writeBytes(int number, byte[] value) {
+        writeTag(number, LENGTH_DELIMITED);
+        writeRawVarint(value.length);
+        writeRaw(value, 0, value.length);
+    }
+
+    /**
+     * Write all content of a given writer as a value of length-delimited field.
+     */
+    void writeBytes(int number, ProtobufWriter value) {
+        writeTag(number, LENGTH_DELIMITED);
+        writeRawVarint(value.position);
+        writeRaw(value.buffer, 0, value.position);
+    }
+
+    /**
+     * Write packed repeated varint field.
+     */
+    void writePacked(int number, int[] values) {
+        int start = startMessage(number);
+        for (int value : values) {
+            writeRawVarint(value);
+        }
+        endMessage(start);
+    }
+
+    /**
+     * Start length-delimited field.
+     *
+     * @return position that should be passed to {@link #endMessage(int)}
+     */
+    int startMessage(int number) {
+        writeTag(number, LENGTH_DELIMITED);
+        return position;
+    }
+
+    /**
+     * End length-delimited field: insert length of its content.
+     */
+    void endMessage(int start) {
+        int length = position - start;
+        int lengthSize = varintSize(length);
+        ensureCapacity(lengthSize);
+        System.arraycopy(buffer, start, buffer, start + lengthSize, length);
+        int end = position + lengthSize;
+        position = start;
+        writeRawVarint(length);
+        position = end;
+    }
+
+    void startGroup(int number) {
+        writeTag(number, START_GROUP);
+    }
+
+    void endGroup(int number) {
+        writeTag(number, END_GROUP);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, position);
+    }
+
+    private void writeTag(int number, int wireType) {
+        writeRawVarint((long) number << 3 | wireType);
+    }
+
+    private void writeRawVarint(long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[position++] = (byte) remaining;
+    }
+
+    private void writeRaw(byte[] value, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(value, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.length - position < bytes) {
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, position + bytes));
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+}
@@ -24,6 +24,17 @@ public class JavaExtensionProvider extends AbstractExtensionProvider {
      * Create new instance of java extension provider.
      */
     public JavaExtensionProvider() {
+        // all properties are computed from the parsed model, that
+        // does not change during code generation
+        this(true);
+    }
+
+    /**
+     * Create new instance of java extension provider. If {@code memoizeProperties}
+     * is set, every property is computed only once per node.
+     */
+    public JavaExtensionProvider(boolean memoizeProperties) {
+        super(memoizeProperties);
         registerProperty(Proto.class, "javaPackage", ProtoUtil::getPackage);
         registerProperty(Proto.class, "javaPackagePath", ProtoUtil::getPackagePath);
 
@@ -14,6 +14,7 @@ import io.protostuff.compiler.model.EnumConstant;
 import io.protostuff.compiler.model.Field;
 import io.protostuff.compiler.model.FieldType;
 import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.OptionPath;
 import io.protostuff.compiler.model.ScalarFieldType;
 import io.protostuff.compiler.model.Type;
 import io.protostuff.compiler.model.UserType;
@@ -39,6 +40,7 @@ public class MessageFieldUtil {
     private static final String MAP_SUFFIX = "Map";
     private static final String PUT_PREFIX = "put";
     private static final String VALUE = "Value";
+    private static final OptionPath DEFAULT_OPTION = OptionPath.of(DEFAULT);
 
     private static final Map<ScalarFieldType, String> PROTOSTUFF_IO_NAME =
             new EnumMap<>(ImmutableMap.<ScalarFieldType, String>builder()
@@ -189,8 +191,8 @@ public class MessageFieldUtil {
             if (constants.isEmpty()) {
                 defaultValue = "UNRECOGNIZED";
             } else {
-                DynamicMessage options = field.getOptions();
-                defaultValue = options.containsKey(DEFAULT) ? options.get(DEFAULT).getEnumName() : constants.get(0).getName();
+                DynamicMessage.Value value = field.getOptions().get(DEFAULT_OPTION);
+                defaultValue = value != null ? value.getEnumName() : constants.get(0).getName();
             }
             return UserTypeUtil.getCanonicalName(anEnum) + "." + defaultValue;
         }
@@ -1,6 +1,7 @@
 package io.protostuff.generator.java;
 
 import io.protostuff.compiler.model.DynamicMessage;
+import io.protostuff.compiler.model.OptionPath;
 import io.protostuff.compiler.model.Proto;
 
 /**
@@ -12,6 +13,8 @@ public class ProtoUtil {
 
     public static final String OPTION_JAVA_PACKAGE = "java_package";
 
+    private static final OptionPath JAVA_PACKAGE = OptionPath.of(OPTION_JAVA_PACKAGE);
+
     private ProtoUtil() {
         throw new IllegalAccessError("Utility class");
     }
@@ -20,7 +23,7 @@ public class ProtoUtil {
      * Returns java package name.
      */
     public static String getPackage(Proto proto) {
-        DynamicMessage.Value javaPackage = proto.getOptions().get(OPTION_JAVA_PACKAGE);
+        DynamicMessage.Value javaPackage = proto.getOptions().get(JAVA_PACKAGE);
         if (javaPackage != null) {
             return javaPackage.getString();
         }
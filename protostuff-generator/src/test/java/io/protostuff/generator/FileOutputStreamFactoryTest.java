@@ -0,0 +1,93 @@
+package io.protostuff.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FileOutputStreamFactoryTest {
+
+    private static final FileTime OLD_TIME = FileTime.fromMillis(1000000000000L);
+
+    private FileOutputStreamFactory factory;
+    private Path dir;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        factory = new FileOutputStreamFactory();
+        dir = Files.createTempDirectory("output");
+        file = dir.resolve("a/b/test.txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.getParent());
+        Files.deleteIfExists(file.getParent().getParent());
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void newFile() throws IOException {
+        write("hello");
+        assertEquals("hello", read());
+        assertEquals(1, factory.getWrittenCount());
+        assertEquals(0, factory.getSkippedCount());
+    }
+
+    @Test
+    void unchangedFileIsNotWritten() throws IOException {
+        write("hello, world");
+        Files.setLastModifiedTime(file, OLD_TIME);
+        write("hello", ", world");
+        assertEquals("hello, world", read());
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(file));
+        assertEquals(1, factory.getWrittenCount());
+        assertEquals(1, factory.getSkippedCount());
+    }
+
+    @Test
+    void changedFile() throws IOException {
+        write("hello, world");
+        write("hello", ", there", "!");
+        assertEquals("hello, there!", read());
+        write("hello", ", there");
+        assertEquals("hello, there", read());
+        write("hello, there", "!!!");
+        assertEquals("hello, there!!!", read());
+        write();
+        assertEquals("", read());
+        assertEquals(5, factory.getWrittenCount());
+        assertEquals(0, factory.getSkippedCount());
+    }
+
+    @Test
+    void closeTwice() throws IOException {
+        OutputStream out = factory.createStream(file.toString());
+        out.write('x');
+        out.close();
+        out.close();
+        assertEquals("x", read());
+        assertEquals(1, factory.getWrittenCount());
+    }
+
+    private void write(String... chunks) throws IOException {
+        try (OutputStream out = factory.createStream(file.toString())) {
+            for (String chunk : chunks) {
+                out.write(chunk.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
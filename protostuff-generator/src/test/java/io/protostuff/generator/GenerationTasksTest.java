@@ -0,0 +1,112 @@
+package io.protostuff.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.protostuff.compiler.model.ImmutableModule;
+import io.protostuff.compiler.model.ImmutableModuleConfiguration;
+import io.protostuff.compiler.model.Module;
+import io.protostuff.compiler.model.UsageIndex;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class GenerationTasksTest {
+
+    @Test
+    void getThreads() {
+        assertEquals(1, GenerationTasks.getThreads(module(null)));
+        assertEquals(4, GenerationTasks.getThreads(module(4)));
+        assertEquals(8, GenerationTasks.getThreads(module("8")));
+        assertThrows(GeneratorException.class, () -> GenerationTasks.getThreads(module("many")));
+        assertThrows(GeneratorException.class, () -> GenerationTasks.getThreads(module(0)));
+    }
+
+    @Test
+    void lastTaskForSameFileWins() {
+        List<String> executed = new ArrayList<>();
+        GenerationTasks tasks = new GenerationTasks();
+        tasks.add("a", () -> executed.add("a1"));
+        tasks.add("b", () -> executed.add("b"));
+        tasks.add("a", () -> executed.add("a2"));
+        tasks.run(1);
+        assertEquals(Arrays.asList("b", "a2"), executed);
+    }
+
+    @Test
+    void failuresAreReportedInOrder() {
+        AtomicInteger executed = new AtomicInteger();
+        GenerationTasks tasks = new GenerationTasks();
+        for (int i = 0; i < 10; i++) {
+            String name = String.valueOf(i);
+            tasks.add(name, () -> {
+                if ("3".equals(name) || "7".equals(name)) {
+                    throw new GeneratorException(name);
+                }
+                executed.incrementAndGet();
+            });
+        }
+        GeneratorException e = assertThrows(GeneratorException.class, () -> tasks.run(4));
+        assertEquals("3", e.getMessage());
+        assertEquals(1, e.getSuppressed().length);
+        assertEquals("7", e.getSuppressed()[0].getMessage());
+        assertEquals(8, executed.get());
+    }
+
+    @Test
+    void parallelGenerationProducesSameFiles() throws IOException {
+        Map<String, String> files = generateJava(1);
+        assertFalse(files.isEmpty());
+        assertEquals(files, generateJava(4));
+    }
+
+    private static Map<String, String> generateJava(int threads) throws IOException {
+        Path output = Files.createTempDirectory("java");
+        try {
+            new ProtostuffCompiler().compile(ImmutableModuleConfiguration.builder()
+                    .name("java")
+                    .addProtoFiles("protostuff_unittest/messages_sample.proto", "protostuff_unittest/map.proto")
+                    .generator(CompilerModule.JAVA_COMPILER)
+                    .putOptions(CompilerModule.THREADS_OPTION, threads)
+                    .output(output.toString())
+                    .build());
+            Map<String, String> files = new TreeMap<>();
+            try (Stream<Path> paths = Files.walk(output)) {
+                for (Path file : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    files.put(output.relativize(file).toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                }
+            }
+            return files;
+        } finally {
+            try (Stream<Path> paths = Files.walk(output)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static Module module(Object threads) {
+        ImmutableModule.Builder builder = ImmutableModule.builder()
+                .name("test")
+                .output("none")
+                .usageIndex(UsageIndex.build(Collections.emptyList()));
+        if (threads != null) {
+            builder.putOptions(CompilerModule.THREADS_OPTION, threads);
+        }
+        return builder.build();
+    }
+}
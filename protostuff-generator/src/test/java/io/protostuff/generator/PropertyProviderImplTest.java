@@ -1,15 +1,44 @@
 package io.protostuff.generator;
 
+import io.protostuff.compiler.model.ImmutableModuleConfiguration;
+import io.protostuff.compiler.model.Module;
+import io.protostuff.generator.dummy.DummyGenerator;
+import io.protostuff.generator.java.JavaExtensionProvider;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * @author Kostiantyn Shchepanovskyi
  */
 class PropertyProviderImplTest {
 
+    /**
+     * Number of proto files in a generated schema for a memoization report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String MEMOIZATION_FILES = "protostuff.memoization.files";
+
+    private static final int MESSAGES_PER_FILE = 50;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyProviderImplTest.class);
+
     private static final String PROPERTY = "property";
     private static final String VALUE = "value";
     private PropertyProviderImpl provider;
@@ -32,4 +61,112 @@ class PropertyProviderImplTest {
         assertEquals(VALUE, provider.getProperty(null, PROPERTY));
     }
 
-}
\ No newline at end of file
+    @Test
+    void getProperty_notMemoized() {
+        AtomicInteger calls = new AtomicInteger();
+        provider.register(PROPERTY, key -> calls.incrementAndGet());
+        Object node = new Object();
+        assertEquals(1, provider.getProperty(node, PROPERTY));
+        assertEquals(2, provider.getProperty(node, PROPERTY));
+        assertFalse(provider.isMemoized());
+    }
+
+    @Test
+    void getProperty_memoized() {
+        PropertyProviderImpl memoized = new PropertyProviderImpl(true);
+        AtomicInteger calls = new AtomicInteger();
+        memoized.register(PROPERTY, key -> calls.incrementAndGet());
+        memoized.register("null", key -> null);
+        Object node1 = new Object();
+        Object node2 = new Object();
+        assertEquals(1, memoized.getProperty(node1, PROPERTY));
+        assertEquals(1, memoized.getProperty(node1, PROPERTY));
+        assertEquals(2, memoized.getProperty(node2, PROPERTY));
+        assertNull(memoized.getProperty(node1, "null"));
+        assertNull(memoized.getProperty(node1, "null"));
+        assertEquals(2, memoized.getHitCount());
+        assertEquals(3, memoized.getMissCount());
+    }
+
+    @Test
+    void memoizationReport() throws IOException {
+        assumeTrue(System.getProperty(MEMOIZATION_FILES) != null);
+        int files = Integer.getInteger(MEMOIZATION_FILES);
+        Path source = Files.createTempDirectory("schema");
+        Path output = Files.createTempDirectory("java");
+        try {
+            List<String> protoFiles = new ArrayList<>();
+            for (int i = 0; i < files; i++) {
+                String name = "large" + i + ".proto";
+                Files.write(source.resolve(name), schemaSource(i).getBytes(StandardCharsets.UTF_8));
+                protoFiles.add(name);
+            }
+            ProtostuffCompiler compiler = new ProtostuffCompiler();
+            compiler.compile(ImmutableModuleConfiguration.builder()
+                    .name("large")
+                    .includePaths(Collections.singletonList(source))
+                    .protoFiles(protoFiles)
+                    .generator(CompilerModule.DUMMY_COMPILER)
+                    .output(output.toString())
+                    .build());
+            CompilerRegistry registry = compiler.injector.getInstance(CompilerRegistry.class);
+            Module module = ((DummyGenerator) registry.findCompiler(CompilerModule.DUMMY_COMPILER))
+                    .getLastCompiledModule();
+            ExtensibleStCompilerFactory factory = compiler.injector.getInstance(ExtensibleStCompilerFactory.class);
+            for (int round = 0; round < 5; round++) {
+                long plain = render(factory, module, new JavaExtensionProvider(false));
+                JavaExtensionProvider memoized = new JavaExtensionProvider(true);
+                long cached = render(factory, module, memoized);
+                long hits = 0;
+                long misses = 0;
+                for (PropertyProvider provider : memoized.propertyProviders().values()) {
+                    hits += ((PropertyProviderImpl) provider).getHitCount();
+                    misses += ((PropertyProviderImpl) provider).getMissCount();
+                }
+                LOGGER.info("Memoization: {} files, {} hits, {} misses, hit rate {}%, plain {} ms, memoized {} ms",
+                        files, hits, misses, 100 * hits / Math.max(1, hits + misses),
+                        TimeUnit.NANOSECONDS.toMillis(plain), TimeUnit.NANOSECONDS.toMillis(cached));
+            }
+        } finally {
+            delete(source);
+            delete(output);
+        }
+    }
+
+    private static long render(ExtensibleStCompilerFactory factory, Module module, ExtensionProvider provider) {
+        ProtoCompiler compiler = factory.create(
+                Collections.singletonList(CompilerModule.JAVA_COMPILER_TEMPLATE), provider);
+        long start = System.nanoTime();
+        compiler.compile(module);
+        return System.nanoTime() - start;
+    }
+
+    private static String schemaSource(int file) {
+        StringBuilder result = new StringBuilder();
+        result.append("syntax = \"proto3\";\n")
+                .append("package large").append(file).append(";\n")
+                .append("enum Kind {\n    NONE = 0;\n    SOME = 1;\n}\n");
+        for (int m = 0; m < MESSAGES_PER_FILE; m++) {
+            String next = "M" + (m + 1) % MESSAGES_PER_FILE;
+            result.append("message M").append(m).append(" {\n")
+                    .append("    string name = 1;\n")
+                    .append("    int64 id = 2;\n")
+                    .append("    Kind kind = 3;\n")
+                    .append("    repeated Kind kinds = 4;\n")
+                    .append("    ").append(next).append(" next = 5;\n")
+                    .append("    repeated ").append(next).append(" children = 6;\n")
+                    .append("    map<string, ").append(next).append("> index = 7;\n")
+                    .append("    repeated string tags = 8;\n")
+                    .append("}\n");
+        }
+        return result.toString();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+}
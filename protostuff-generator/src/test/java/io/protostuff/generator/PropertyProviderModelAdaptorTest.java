@@ -0,0 +1,191 @@
+package io.protostuff.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stringtemplate.v4.ModelAdaptor;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+import org.stringtemplate.v4.STGroupString;
+import org.stringtemplate.v4.StringRenderer;
+import org.stringtemplate.v4.misc.STNoSuchPropertyException;
+
+class PropertyProviderModelAdaptorTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyProviderModelAdaptorTest.class);
+
+    /**
+     * Number of threads for a contention report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String CONTENTION_THREADS = "protostuff.contention.threads";
+
+    private static final String TEMPLATES = "io/protostuff/generator/bean.stg";
+
+    private PropertyProviderModelAdaptor adaptor;
+
+    @BeforeEach
+    void setUp() {
+        PropertyProvider provider = new PropertyProviderImpl();
+        provider.register("custom", bean -> "custom:" + ((Bean) bean).getName());
+        adaptor = new PropertyProviderModelAdaptor(provider);
+    }
+
+    @Test
+    void getProperty() {
+        Bean bean = new Bean("a");
+        assertEquals("custom:a", adaptor.getProperty(null, null, bean, "custom", "custom"));
+        assertEquals("a", adaptor.getProperty(null, null, bean, "name", "name"));
+        assertEquals(true, adaptor.getProperty(null, null, bean, "valid", "valid"));
+        assertEquals(false, adaptor.getProperty(null, null, bean, "children", "children"));
+        assertEquals(42, adaptor.getProperty(null, null, bean, "size", "size"));
+    }
+
+    @Test
+    void getProperty_notFound() {
+        assertThrows(STNoSuchPropertyException.class,
+                () -> adaptor.getProperty(null, null, new Bean("a"), "unknown", "unknown"));
+    }
+
+    @Test
+    void render_concurrently() throws InterruptedException, ExecutionException {
+        STGroup group = new STGroupString("bean(bean) ::= <<<bean.custom> <bean.name> <bean.valid>\n>>");
+        group.registerModelAdaptor(Bean.class, adaptor);
+        // templates are loaded lazily, and loading is not thread-safe
+        assertNotNull(group.getInstanceOf("bean"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String name = String.valueOf(i);
+                results.add(executor.submit(() -> {
+                    ST st = group.getInstanceOf("bean");
+                    st.add("bean", new Bean(name));
+                    return st.render();
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("custom:" + i + " " + i + " true", results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentGroup_adaptors() {
+        STGroup group = new ConcurrentStGroupFile(TEMPLATES);
+        ModelAdaptor objectAdaptor = group.getModelAdaptor(Bean.class);
+        assertTrue(objectAdaptor instanceof PropertyProviderModelAdaptor);
+        assertSame(objectAdaptor, group.getModelAdaptor(Object.class));
+        // adaptors that are already resolved are replaced after registration
+        group.registerModelAdaptor(Bean.class, adaptor);
+        assertSame(adaptor, group.getModelAdaptor(Bean.class));
+        assertSame(objectAdaptor, group.getModelAdaptor(String.class));
+    }
+
+    @Test
+    void concurrentGroup_renderers() {
+        STGroup group = new ConcurrentStGroupFile(TEMPLATES);
+        assertEquals(null, group.getAttributeRenderer(String.class));
+        StringRenderer renderer = new StringRenderer();
+        group.registerRenderer(CharSequence.class, renderer);
+        assertSame(renderer, group.getAttributeRenderer(String.class));
+    }
+
+    @Test
+    void concurrentGroup_render() {
+        STGroup group = new ConcurrentStGroupFile(TEMPLATES);
+        group.registerModelAdaptor(Bean.class, adaptor);
+        ST st = group.getInstanceOf("bean");
+        st.add("bean", new Bean("a"));
+        assertEquals("custom:a a true", st.render());
+        st = group.getInstanceOf("beans");
+        st.add("beans", Arrays.asList(new Bean("a"), new Bean("b")));
+        assertEquals("a=42, b=42", st.render());
+    }
+
+    /**
+     * Compare time to render templates from multiple threads using default
+     * template group and {@link ConcurrentStGroupFile}.
+     */
+    @Test
+    void contention() throws InterruptedException, ExecutionException {
+        assumeTrue(System.getProperty(CONTENTION_THREADS) != null);
+        int threads = Integer.getInteger(CONTENTION_THREADS);
+        List<Bean> beans = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            beans.add(new Bean(String.valueOf(i)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 5; round++) {
+                long stGroupFile = render(executor, threads, beans, () -> new STGroupFile(TEMPLATES));
+                long concurrentStGroupFile = render(executor, threads, beans, () -> new ConcurrentStGroupFile(TEMPLATES));
+                LOGGER.info("Contention: {} threads, STGroupFile {} ms, ConcurrentStGroupFile {} ms",
+                        threads, stGroupFile, concurrentStGroupFile);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long render(ExecutorService executor, int threads, List<Bean> beans, Supplier<STGroup> groupFactory)
+            throws InterruptedException, ExecutionException {
+        STGroup group = groupFactory.get();
+        group.registerModelAdaptor(Bean.class, adaptor);
+        assertNotNull(group.getInstanceOf("beans"));
+        long start = System.nanoTime();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < threads * 100; i++) {
+            results.add(executor.submit(() -> {
+                ST st = group.getInstanceOf("beans");
+                st.add("beans", beans);
+                return st.render();
+            }));
+        }
+        for (Future<String> result : results) {
+            result.get();
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public static class Bean {
+
+        public final int size = 42;
+        private final String name;
+
+        Bean(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isValid() {
+            return true;
+        }
+
+        public boolean hasChildren() {
+            return false;
+        }
+    }
+}
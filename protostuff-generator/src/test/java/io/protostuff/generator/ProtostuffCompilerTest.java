@@ -1,10 +1,12 @@
 package io.protostuff.generator;
 
 import com.google.inject.Injector;
+import io.protostuff.compiler.ParserModule;
 import io.protostuff.compiler.model.ImmutableModuleConfiguration;
 import io.protostuff.compiler.model.Message;
 import io.protostuff.compiler.model.Module;
 import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.parser.ParserException;
 import io.protostuff.generator.dummy.DummyGenerator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -35,4 +37,51 @@ class ProtostuffCompilerTest {
         Assertions.assertFalse(a.isNested());
     }
 
-}
\ No newline at end of file
+    @Test
+    void sharedProtosBelongToEachModule() {
+        ProtostuffCompiler compiler = new ProtostuffCompiler();
+        Module first = compileWithDescriptor(compiler, "first");
+        Module second = compileWithDescriptor(compiler, "second");
+        Proto firstDescriptor = getProto(first, "google/protobuf/descriptor.proto");
+        Proto secondDescriptor = getProto(second, "google/protobuf/descriptor.proto");
+        Assertions.assertTrue(firstDescriptor.getContext().isFrozen());
+        Assertions.assertSame(first, firstDescriptor.getModule());
+        Assertions.assertSame(second, secondDescriptor.getModule());
+        Assertions.assertSame(second, getProto(second, "protostuff_unittest/messages_sample.proto").getModule());
+        Assertions.assertSame(firstDescriptor.getMessage("FileDescriptorProto"),
+                secondDescriptor.getMessage("FileDescriptorProto"));
+    }
+
+    @Test
+    void strictImports() {
+        ProtostuffCompiler compiler = new ProtostuffCompiler(new ParserModule(1, true));
+        Assertions.assertThrows(ParserException.class, () -> {
+            compiler.compile(ImmutableModuleConfiguration.builder()
+                    .name("strict")
+                    .addProtoFiles("protostuff_unittest/header_only_root.proto")
+                    .generator(CompilerModule.DUMMY_COMPILER)
+                    .output("none")
+                    .build());
+        });
+    }
+
+    private Module compileWithDescriptor(ProtostuffCompiler compiler, String name) {
+        compiler.compile(ImmutableModuleConfiguration.builder()
+                .name(name)
+                .addProtoFiles("google/protobuf/descriptor.proto", "protostuff_unittest/messages_sample.proto")
+                .generator(CompilerModule.DUMMY_COMPILER)
+                .output("none")
+                .build());
+        CompilerRegistry registry = compiler.injector.getInstance(CompilerRegistry.class);
+        return ((DummyGenerator) registry.findCompiler(CompilerModule.DUMMY_COMPILER)).getLastCompiledModule();
+    }
+
+    private Proto getProto(Module module, String filename) {
+        for (Proto proto : module.getProtos()) {
+            if (filename.equals(proto.getFilename())) {
+                return proto;
+            }
+        }
+        throw new AssertionError("Not found: " + filename);
+    }
+}
@@ -0,0 +1,129 @@
+package io.protostuff.generator.descriptor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.ImmutableModuleConfiguration;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.parser.ClasspathFileReader;
+import io.protostuff.compiler.parser.DescriptorSet;
+import io.protostuff.compiler.parser.DescriptorSetFileReader;
+import io.protostuff.compiler.parser.EncodedMessage;
+import io.protostuff.compiler.parser.Importer;
+import io.protostuff.compiler.parser.ModelDump;
+import io.protostuff.generator.CompilerModule;
+import io.protostuff.generator.ProtostuffCompiler;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+public class DescriptorSetGeneratorTest {
+
+    private static final String SAMPLE = "protostuff_unittest/descriptor_set/sample.proto";
+    private static final String PROTO3 = "protostuff_unittest/descriptor_set/proto3.proto";
+    private static final String OPTIONS = "protostuff_unittest/descriptor_set/options.proto";
+    private static final String DESCRIPTOR_PROTO = "google/protobuf/descriptor.proto";
+
+    private static final int LABEL_OPTIONAL = 1;
+    private static final int LABEL_REPEATED = 3;
+
+    @Test
+    public void sameModelAfterRoundTrip() throws IOException {
+        DescriptorSet descriptorSet = generate(PROTO3);
+        assertEquals(Arrays.asList(DESCRIPTOR_PROTO, OPTIONS, SAMPLE, PROTO3), new ArrayList<>(descriptorSet.getFileNames()));
+        for (String file : descriptorSet.getFileNames()) {
+            Proto parsed = newImporter().importFile(new ClasspathFileReader(), file).getProto();
+            Proto loaded = newImporter().importFile(new DescriptorSetFileReader(descriptorSet), file).getProto();
+            assertEquals(ModelDump.dump(parsed, true), ModelDump.dump(loaded, true), file);
+        }
+    }
+
+    @Test
+    public void sameModelAfterRoundTripForUnitTestProtos() throws IOException {
+        for (String name : Arrays.asList("comments", "field_modifiers", "index", "map", "messages_sample", "oneof")) {
+            String file = "protostuff_unittest/" + name + ".proto";
+            DescriptorSet descriptorSet = generate(file);
+            Proto parsed = newImporter().importFile(new ClasspathFileReader(), file).getProto();
+            Proto loaded = newImporter().importFile(new DescriptorSetFileReader(descriptorSet), file).getProto();
+            assertEquals(ModelDump.dump(parsed, true), ModelDump.dump(loaded, true), file);
+        }
+    }
+
+    @Test
+    public void proto3FieldsEncoding() throws IOException {
+        EncodedMessage value = EncodedMessage.file(generate(PROTO3), PROTO3).getMessage(4, "Value");
+        assertEquals(Arrays.asList("kind", "_name", "_count"), value.getNames(8));
+        assertProto3Field(value.getMessage(2, "name"), LABEL_OPTIONAL, true, 1);
+        assertProto3Field(value.getMessage(2, "samples"), LABEL_REPEATED, false, -1);
+        assertProto3Field(value.getMessage(2, "level"), LABEL_OPTIONAL, false, -1);
+        assertProto3Field(value.getMessage(2, "flag"), LABEL_OPTIONAL, false, 0);
+        assertProto3Field(value.getMessage(2, "child"), LABEL_OPTIONAL, false, 0);
+        assertProto3Field(value.getMessage(2, "count"), LABEL_OPTIONAL, true, 2);
+        EncodedMessage kinds = value.getMessage(2, "kinds");
+        assertProto3Field(kinds, LABEL_REPEATED, false, -1);
+        assertEquals(".descriptor_set.v3.Value.KindsEntry", kinds.getString(6));
+        assertEquals(Collections.singletonList("KindsEntry"), value.getNames(3));
+        EncodedMessage entry = value.getMessage(3, "KindsEntry");
+        assertTrue(entry.getMessages(7).get(0).getBoolean(7));
+        assertEquals(Collections.emptyList(), entry.getNames(8));
+        assertProto3Field(entry.getMessage(2, "key"), LABEL_OPTIONAL, false, -1);
+        assertProto3Field(entry.getMessage(2, "value"), LABEL_OPTIONAL, false, -1);
+    }
+
+    @Test
+    public void mapEntryName() {
+        assertEquals("ItemsByNameEntry", FileDescriptorEncoder.getMapEntryName("items_by_name_entry"));
+        assertEquals("MapEntry", FileDescriptorEncoder.getMapEntryName("map_entry"));
+    }
+
+    @Test
+    public void unescape() {
+        assertEquals("x\"y\n", new String(FileDescriptorEncoder.unescape("x\\\"y\\n"), StandardCharsets.UTF_8));
+        assertEquals("café", new String(FileDescriptorEncoder.unescape("caf\\303\\251"), StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[] {1, (byte) 0xFF, 'a'}, FileDescriptorEncoder.unescape("\\001\\xffa"));
+        assertArrayEquals(new byte[] {'\\'}, FileDescriptorEncoder.unescape("\\"));
+        assertEquals("\\001\\377", FileDescriptorEncoder.escape(new byte[] {1, (byte) 0xFF}));
+    }
+
+    private static void assertProto3Field(EncodedMessage field, int label, boolean proto3Optional, int oneofIndex) {
+        String name = field.getString(1);
+        assertEquals(label, field.getInt(4), name);
+        assertEquals(proto3Optional, field.has(17), name);
+        assertEquals(proto3Optional, field.getBoolean(17), name);
+        assertEquals(oneofIndex >= 0, field.has(9), name);
+        if (oneofIndex >= 0) {
+            assertEquals(oneofIndex, field.getInt(9), name);
+        }
+    }
+
+    private static DescriptorSet generate(String file) throws IOException {
+        Path output = Files.createTempDirectory("descriptor_set");
+        try {
+            new ProtostuffCompiler().compile(ImmutableModuleConfiguration.builder()
+                    .name("test")
+                    .addProtoFiles(file)
+                    .generator(CompilerModule.DESCRIPTOR_SET_COMPILER)
+                    .output(output.toString())
+                    .build());
+            Path descriptorSetFile = output.resolve("test.desc");
+            assertTrue(Files.exists(descriptorSetFile));
+            DescriptorSet descriptorSet = DescriptorSet.read(descriptorSetFile);
+            Files.delete(descriptorSetFile);
+            return descriptorSet;
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    private static Importer newImporter() {
+        return Guice.createInjector(new ParserModule()).getInstance(Importer.class);
+    }
+}
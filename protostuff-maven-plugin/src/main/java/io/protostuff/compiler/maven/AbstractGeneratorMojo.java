@@ -2,7 +2,9 @@ package io.protostuff.compiler.maven;
 
 import static org.apache.maven.plugins.annotations.LifecyclePhase.GENERATE_TEST_SOURCES;
 
+import io.protostuff.compiler.ParserModule;
 import io.protostuff.generator.GeneratorException;
+import io.protostuff.generator.ProtostuffCompiler;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
@@ -49,6 +51,35 @@ public abstract class AbstractGeneratorMojo extends AbstractMojo {
     private MojoExecution execution;
     @Parameter
     private File source;
+    /**
+     * Binary descriptor sets ({@code protoc --descriptor_set_out}) to import
+     * proto files from, in addition to the source directory.
+     */
+    @Parameter
+    protected List<File> descriptorSets;
+    /**
+     * Number of threads used to generate files.
+     */
+    @Parameter(property = "protostuff.threads", defaultValue = "1")
+    protected int threads;
+    /**
+     * Validate imported files, not only files from the source directory.
+     */
+    @Parameter(property = "protostuff.strictImports", defaultValue = "false")
+    protected boolean strictImports;
+    /**
+     * Number of threads used to parse files, defaults to number of processors.
+     */
+    @Parameter(property = "protostuff.parserThreads")
+    protected Integer parserThreads;
+
+    ProtostuffCompiler createCompiler() {
+        int threadCount = parserThreads != null ? parserThreads : Runtime.getRuntime().availableProcessors();
+        if (threadCount < 1) {
+            throw new GeneratorException("Invalid number of parser threads: %s", parserThreads);
+        }
+        return new ProtostuffCompiler(new ParserModule(threadCount, strictImports));
+    }
 
     Path getSourcePath() {
         if (source != null) {
@@ -66,6 +97,20 @@ public abstract class AbstractGeneratorMojo extends AbstractMojo {
         return Paths.get(sourcePath);
     }
 
+    /**
+     * Returns include paths: given source directory, followed by descriptor sets.
+     */
+    List<Path> getIncludePaths(Path sourcePath) {
+        List<Path> includePaths = new ArrayList<>();
+        includePaths.add(sourcePath);
+        if (descriptorSets != null) {
+            for (File descriptorSet : descriptorSets) {
+                includePaths.add(descriptorSet.toPath());
+            }
+        }
+        return includePaths;
+    }
+
     private String getCanonicalPath(File file) {
         try {
             return file.getCanonicalPath();
@@ -1,6 +1,5 @@
 package io.protostuff.compiler.maven;
 
-import static java.util.Collections.singletonList;
 import static org.apache.maven.plugins.annotations.ResolutionScope.COMPILE_PLUS_RUNTIME;
 
 import io.protostuff.compiler.model.ImmutableModuleConfiguration;
@@ -38,12 +37,12 @@ public class HtmlGeneratorMojo extends AbstractGeneratorMojo {
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         super.execute();
-        ProtostuffCompiler compiler = new ProtostuffCompiler();
+        ProtostuffCompiler compiler = createCompiler();
         final Path sourcePath = getSourcePath();
         List<String> protoFiles = findProtoFiles(sourcePath);
         ModuleConfiguration moduleConfiguration = ImmutableModuleConfiguration.builder()
                 .name("html")
-                .includePaths(singletonList(sourcePath))
+                .includePaths(getIncludePaths(sourcePath))
                 .generator(CompilerModule.HTML_COMPILER)
                 .output(target.getAbsolutePath())
                 .putOptions(HtmlGenerator.PAGES, pages)
@@ -1,10 +1,10 @@
 package io.protostuff.compiler.maven;
 
-import static java.util.Collections.singletonList;
 import static org.apache.maven.plugins.annotations.ResolutionScope.COMPILE_PLUS_RUNTIME;
 
 import io.protostuff.compiler.model.ImmutableModuleConfiguration;
 import io.protostuff.compiler.model.ModuleConfiguration;
+import io.protostuff.generator.CompilerModule;
 import io.protostuff.generator.ProtostuffCompiler;
 import java.io.File;
 import java.nio.file.Path;
@@ -32,14 +32,15 @@ public class JavaGeneratorMojo extends AbstractGeneratorMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         super.execute();
 
-        ProtostuffCompiler compiler = new ProtostuffCompiler();
+        ProtostuffCompiler compiler = createCompiler();
         final Path sourcePath = getSourcePath();
         String output = computeSourceOutputDir(target);
         List<String> protoFiles = findProtoFiles(sourcePath);
         ModuleConfiguration moduleConfiguration = ImmutableModuleConfiguration.builder()
                 .name("java")
-                .includePaths(singletonList(sourcePath))
+                .includePaths(getIncludePaths(sourcePath))
                 .generator("java")
+                .putOptions(CompilerModule.THREADS_OPTION, threads)
                 .output(output)
                 .protoFiles(protoFiles)
                 .build();
@@ -1,6 +1,5 @@
 package io.protostuff.compiler.maven;
 
-import static java.util.Collections.singletonList;
 import static org.apache.maven.plugins.annotations.ResolutionScope.COMPILE_PLUS_RUNTIME;
 
 import io.protostuff.compiler.model.ImmutableModuleConfiguration;
@@ -44,7 +43,7 @@ public class St4GeneratorMojo extends AbstractGeneratorMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         super.execute();
 
-        ProtostuffCompiler compiler = new ProtostuffCompiler();
+        ProtostuffCompiler compiler = createCompiler();
         final Path sourcePath = getSourcePath();
         String output = computeSourceOutputDir(target);
         Set<String> allTemplates = new LinkedHashSet<>();
@@ -57,10 +56,11 @@ public class St4GeneratorMojo extends AbstractGeneratorMojo {
         List<String> protoFiles = findProtoFiles(sourcePath);
         ModuleConfiguration moduleConfiguration = ImmutableModuleConfiguration.builder()
                 .name("java")
-                .includePaths(singletonList(sourcePath))
+                .includePaths(getIncludePaths(sourcePath))
                 .generator(CompilerModule.ST4_COMPILER)
                 .putOptions(CompilerModule.TEMPLATES_OPTION, allTemplates)
                 .putOptions(CompilerModule.EXTENSIONS_OPTION, extensions)
+                .putOptions(CompilerModule.THREADS_OPTION, threads)
                 .output(output)
                 .addAllProtoFiles(protoFiles)
                 .build();
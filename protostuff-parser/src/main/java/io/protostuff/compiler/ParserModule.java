@@ -1,11 +1,14 @@
 package io.protostuff.compiler;
 
 import static io.protostuff.compiler.parser.DefaultDescriptorProtoProvider.DESCRIPTOR_PROTO;
+import static io.protostuff.compiler.parser.ImporterImpl.PARSER_THREADS;
+import static io.protostuff.compiler.parser.ImporterImpl.STRICT_IMPORTS;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
+import io.protostuff.compiler.parser.CompactionPostProcessor;
 import io.protostuff.compiler.parser.DefaultDescriptorProtoProvider;
 import io.protostuff.compiler.parser.ExtensionRegistratorPostProcessor;
 import io.protostuff.compiler.parser.FileDescriptorLoader;
@@ -17,6 +20,8 @@ import io.protostuff.compiler.parser.ImporterImpl;
 import io.protostuff.compiler.parser.ImportsPostProcessor;
 import io.protostuff.compiler.parser.MultiPathFileReader;
 import io.protostuff.compiler.parser.OptionsPostProcessor;
+import io.protostuff.compiler.parser.ParseCache;
+import io.protostuff.compiler.parser.ParseCacheProvider;
 import io.protostuff.compiler.parser.ParseErrorLogger;
 import io.protostuff.compiler.parser.ProtoContext;
 import io.protostuff.compiler.parser.ProtoContextPostProcessor;
@@ -34,10 +39,38 @@ import org.antlr.v4.runtime.BailErrorStrategy;
  */
 public class ParserModule extends AbstractModule {
 
+    private final int parserThreads;
+    private final boolean strictImports;
+
+    public ParserModule() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create parser module that loads proto files using given number of threads.
+     */
+    public ParserModule(int parserThreads) {
+        this(parserThreads, false);
+    }
+
+    /**
+     * Create parser module that loads proto files using given number of threads.
+     * By default, files that are only imported by other files are loaded as
+     * header-only: their types are resolved, but validation is skipped.
+     * Strict mode validates all loaded files.
+     */
+    public ParserModule(int parserThreads, boolean strictImports) {
+        this.parserThreads = parserThreads;
+        this.strictImports = strictImports;
+    }
+
     @Override
     protected void configure() {
+        bindConstant().annotatedWith(Names.named(PARSER_THREADS)).to(parserThreads);
+        bindConstant().annotatedWith(Names.named(STRICT_IMPORTS)).to(strictImports);
         bind(Importer.class).to(ImporterImpl.class);
         bind(FileDescriptorLoader.class).to(FileDescriptorLoaderImpl.class);
+        bind(ParseCache.class).toProvider(ParseCacheProvider.class);
         bind(ANTLRErrorListener.class).to(ParseErrorLogger.class);
         bind(ANTLRErrorStrategy.class).to(BailErrorStrategy.class);
         bind(ProtoContext.class)
@@ -52,6 +85,7 @@ public class ParserModule extends AbstractModule {
         postProcessors.addBinding().to(ExtensionRegistratorPostProcessor.class);
         postProcessors.addBinding().to(OptionsPostProcessor.class);
         postProcessors.addBinding().to(UserTypeValidationPostProcessor.class);
+        postProcessors.addBinding().to(CompactionPostProcessor.class);
 
         install(new FactoryModuleBuilder()
                 .implement(FileReader.class, MultiPathFileReader.class)
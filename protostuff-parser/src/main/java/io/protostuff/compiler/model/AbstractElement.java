@@ -1,8 +1,8 @@
 package io.protostuff.compiler.model;
 
 import com.google.common.base.Joiner;
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -10,9 +10,15 @@ import java.util.List;
  *
  * @author Kostiantyn Shchepanovskyi
  */
-public abstract class AbstractElement implements Element {
+public abstract class AbstractElement implements Element, Serializable {
     protected SourceCodeLocation sourceCodeLocation = SourceCodeLocation.UNKNOWN;
-    protected List<String> comments = new ArrayList<>();
+    /**
+     * Comment lines, {@code null} while comments are kept as ranges of
+     * a comment buffer - use {@link #getCommentLines()} to read them.
+     */
+    protected volatile List<String> comments;
+    private CommentBuffer commentBuffer;
+    private int[] commentRanges;
 
     @Override
     public SourceCodeLocation getSourceCodeLocation() {
@@ -23,9 +29,22 @@ public abstract class AbstractElement implements Element {
         this.sourceCodeLocation = sourceCodeLocation;
     }
 
+    /**
+     * Get comment lines. Lines that were attached as ranges of a
+     * comment buffer are created on a first access.
+     */
     @Override
     public List<String> getCommentLines() {
-        return comments;
+        List<String> lines = comments;
+        if (lines == null) {
+            if (commentRanges == null) {
+                lines = new ArrayList<>();
+            } else {
+                lines = commentBuffer.getLines(commentRanges);
+            }
+            comments = lines;
+        }
+        return lines;
     }
 
     @Override
@@ -33,11 +52,26 @@ public abstract class AbstractElement implements Element {
         return Joiner.on('\n').join(getCommentLines());
     }
 
+    /**
+     * Set comment lines.
+     */
     public void setComments(List<String> comments) {
         this.comments = comments;
+        this.commentBuffer = null;
+        this.commentRanges = null;
+    }
+
+    /**
+     * Set comment lines as ranges (pairs of start and end offsets) of a
+     * given comment buffer. Strings are not created until comments are requested.
+     */
+    public void setComments(CommentBuffer commentBuffer, int[] commentRanges) {
+        this.comments = null;
+        this.commentBuffer = commentBuffer;
+        this.commentRanges = commentRanges;
     }
 
     public void addComment(String line) {
-        comments.add(line);
+        getCommentLines().add(line);
     }
 }
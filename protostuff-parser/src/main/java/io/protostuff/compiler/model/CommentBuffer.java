@@ -0,0 +1,69 @@
+package io.protostuff.compiler.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text of all comments of a single proto file. Elements keep ranges of
+ * their comment lines in this buffer; strings are created on demand.
+ */
+public final class CommentBuffer implements Serializable {
+
+    private static final long serialVersionUID = 0L;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Append a part of given comment line to the buffer.
+     *
+     * @return start offset of appended text in the buffer
+     */
+    public int append(CharSequence line, int start, int end) {
+        int offset = text.length();
+        text.append(line, start, end);
+        return offset;
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    /**
+     * Release unused capacity. Should be called when file is parsed.
+     */
+    public void trimToSize() {
+        text.trimToSize();
+    }
+
+    /**
+     * Create comment lines for given ranges - pairs of start and end offsets.
+     * Common leading whitespaces are removed from all lines.
+     */
+    public List<String> getLines(int[] ranges) {
+        int count = ranges.length / 2;
+        int indent = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int start = ranges[2 * i];
+            int end = ranges[2 * i + 1];
+            int n = 0;
+            while (start + n < end && text.charAt(start + n) == ' ') {
+                n++;
+            }
+            if (start + n < end) {
+                indent = Math.min(indent, n);
+            }
+        }
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int start = ranges[2 * i];
+            int end = ranges[2 * i + 1];
+            if (end - start > indent) {
+                lines.add(text.substring(start + indent, end));
+            } else {
+                lines.add("");
+            }
+        }
+        return lines;
+    }
+}
@@ -3,13 +3,20 @@ package io.protostuff.compiler.model;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import io.protostuff.compiler.parser.ParserException;
-import io.protostuff.compiler.parser.Util;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 
 /**
@@ -17,17 +24,34 @@ import javax.annotation.Nonnull;
  *
  * @author Kostiantyn Shchepanovskyi
  */
-public class DynamicMessage implements Map<String, DynamicMessage.Value> {
+public class DynamicMessage implements Map<String, DynamicMessage.Value>, Serializable {
 
     public static final char LPAREN = '(';
     public static final char RPAREN = ')';
     public static final char DOT = '.';
 
-    private final Map<Key, Value> fields;
+    private static final Key[] NO_KEYS = new Key[0];
+    private static final Value[] NO_VALUES = new Value[0];
 
-    public DynamicMessage() {
-        this.fields = new HashMap<>();
-    }
+    /**
+     * Max number of fields that are looked up by a linear search.
+     */
+    private static final int COMPACT_SIZE = 8;
+
+    /**
+     * Fields are stored in two parallel arrays, in the order they were set.
+     * Options usually have only a few fields, so linear search is faster
+     * and takes less memory than a hash map; larger messages also get
+     * an index of field positions, built on first lookup.
+     *
+     * <p>Index is built into a local map and then published, so messages
+     * that are only read can be shared between threads. Writers update
+     * published index in place, messages are not modified concurrently.
+     */
+    private Key[] keys = NO_KEYS;
+    private Value[] values = NO_VALUES;
+    private int size;
+    private transient volatile Map<Key, Integer> positions;
 
     /**
      * Get option value for a given key (field name or field key - for accessing custom options).
@@ -38,39 +62,36 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
             String name = (String) key;
             return get(name);
         }
-        return fields.get(key);
+        if (key instanceof Key) {
+            return getValue((Key) key);
+        }
+        return null;
     }
 
     /**
      * Get option value by given option name.
      */
     public Value get(String name) {
-        if (name.length() > 1) {
-            int dot;
-            if (name.charAt(0) == LPAREN) {
-                int start = name.indexOf(RPAREN);
-                dot = name.indexOf(DOT, start);
-            } else {
-                dot = name.indexOf(DOT);
+        return get(OptionPath.of(name));
+    }
+
+    /**
+     * Get option value by given option path.
+     */
+    public Value get(OptionPath path) {
+        DynamicMessage message = this;
+        int last = path.length() - 1;
+        for (int i = 0; i < last; i++) {
+            Value value = message.getValue(path.getKey(i));
+            if (value == null) {
+                return null;
             }
-            if (dot > 0) {
-                String fieldName = name.substring(0, dot);
-                String rest = name.substring(dot + 1);
-                Key key = createKey(fieldName);
-                Value value = fields.get(key);
-                if (!value.isMessageType()) {
-                    throw new ParserException("Invalid option name: %s", name);
-                }
-                DynamicMessage msg = value.getMessage();
-                return msg.get(rest);
-            } else {
-                Key key = createKey(name);
-                return fields.get(key);
+            if (!value.isMessageType()) {
+                throw new ParserException("Invalid option name: %s", path);
             }
-        } else {
-            Key key = Key.field(name);
-            return fields.get(key);
+            message = value.getMessage();
         }
+        return message.getValue(path.getKey(last));
     }
 
     public void set(String name, Value value) {
@@ -81,40 +102,36 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
      * Set field of an option to a given value.
      */
     public void set(SourceCodeLocation sourceCodeLocation, String name, Value value) {
-        if (name.length() > 1) {
-            int dot;
-            if (name.charAt(0) == LPAREN) {
-                int start = name.indexOf(RPAREN);
-                dot = name.indexOf(DOT, start);
+        set(sourceCodeLocation, OptionPath.of(name), value);
+    }
+
+    /**
+     * Set field of an option to a given value.
+     */
+    public void set(SourceCodeLocation sourceCodeLocation, OptionPath path, Value value) {
+        DynamicMessage message = this;
+        int last = path.length() - 1;
+        for (int i = 0; i < last; i++) {
+            Key key = path.getKey(i);
+            Value child = message.getValue(key);
+            if (child == null) {
+                DynamicMessage childMessage = new DynamicMessage();
+                message.putValue(key, Value.createMessage(sourceCodeLocation, childMessage));
+                message = childMessage;
             } else {
-                dot = name.indexOf(DOT);
-            }
-            if (dot > 0) {
-                String fieldName = name.substring(0, dot);
-                String rest = name.substring(dot + 1);
-                Key key = createKey(fieldName);
-                DynamicMessage msg;
-                if (fields.containsKey(key)) {
-                    msg = getChildMessage(value, key);
-                } else {
-                    msg = new DynamicMessage();
-                    fields.put(key, Value.createMessage(sourceCodeLocation, msg));
+                if (!child.isMessageType()) {
+                    throw new ParserException(value, "Can not assign option value: type error");
                 }
-                msg.set(sourceCodeLocation, rest, value);
-            } else {
-                Key key = createKey(name);
-                set(key, value);
+                message = child.getMessage();
             }
-        } else {
-            Key key = Key.field(name);
-            set(key, value);
         }
+        message.set(path.getKey(last), value);
     }
 
     private void set(Key key, Value value) {
-        if (fields.containsKey(key) && value.isMessageType()) {
+        Value prevValue = getValue(key);
+        if (prevValue != null && value.isMessageType()) {
             // merge
-            Value prevValue = fields.get(key);
             if (!prevValue.isMessageType()) {
                 throw new ParserException(value, "Can not set '%s': incompatible type", key);
             }
@@ -123,44 +140,79 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
             prevMessage.merge(message);
         } else {
             // create new or override previous value
-            fields.put(key, value);
+            putValue(key, value);
         }
     }
 
-    private DynamicMessage getChildMessage(Value value, Key key) {
-        DynamicMessage msg;
-        Value val = fields.get(key);
-        if (!val.isMessageType()) {
-            throw new ParserException(value, "Can not assign option value: type error");
+    private void merge(DynamicMessage message) {
+        for (int i = 0; i < message.size; i++) {
+            set(message.keys[i], message.values[i]);
         }
-        msg = val.getMessage();
-        return msg;
     }
 
-    private void merge(DynamicMessage message) {
-        for (Map.Entry<Key, Value> entry : message.fields.entrySet()) {
-            Key key = entry.getKey();
-            Value value = entry.getValue();
-            set(key, value);
+    private int indexOf(Key key) {
+        if (size > COMPACT_SIZE) {
+            Map<Key, Integer> map = positions;
+            if (map == null) {
+                map = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    map.put(keys[i], i);
+                }
+                positions = map;
+            }
+            Integer position = map.get(key);
+            return position == null ? -1 : position;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
         }
+        return -1;
     }
 
-    private Key createKey(String fieldName) {
-        Key key;
-        if (fieldName.startsWith("(")) {
-            String name = Util.removeFirstAndLastChar(fieldName);
-            if (name.startsWith(".")) {
-                name = name.substring(1);
-            }
-            key = Key.extension(name);
-        } else {
-            key = Key.field(fieldName);
+    private Value getValue(Key key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    private void putValue(Key key, Value value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        if (size == keys.length) {
+            int capacity = size == 0 ? 2 : size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        Map<Key, Integer> map = positions;
+        if (map != null) {
+            map.put(key, size);
         }
-        return key;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        int tail = size - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, tail);
+        System.arraycopy(values, index + 1, values, index, tail);
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        // positions of all following fields are changed
+        positions = null;
     }
 
     @Override
     public String toString() {
+        Map<Key, Value> fields = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            fields.put(keys[i], values[i]);
+        }
         return MoreObjects.toStringHelper(this)
                 .add("fields", fields)
                 .toString();
@@ -168,26 +220,27 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
 
     @Override
     public int size() {
-        return fields.size();
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return fields.isEmpty();
+        return size == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        if (key instanceof String) {
-            String name = (String) key;
-            return get(name) != null;
-        }
-        return fields.containsKey(key);
+        return get(key) != null;
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return fields.containsValue(value);
+        for (int i = 0; i < size; i++) {
+            if (values[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -213,38 +266,70 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
     @Override
     @Nonnull
     public Set<String> keySet() {
-        Set<Key> keys = fields.keySet();
-        return keys.stream()
-                .map(Key::toString)
-                .collect(Collectors.toSet());
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            result.add(keys[i].toString());
+        }
+        return result;
     }
 
     @Override
     @Nonnull
     public Collection<Value> values() {
-        return fields.values();
+        return Collections.unmodifiableList(Arrays.asList(values).subList(0, size));
     }
 
     @Override
     @Nonnull
     public Set<Entry<String, Value>> entrySet() {
         Map<String, Value> map = new HashMap<>();
-        for (Entry<Key, Value> entry : fields.entrySet()) {
-            map.put(entry.getKey().toString(), entry.getValue());
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i].toString(), values[i]);
         }
         return map.entrySet();
     }
 
+    /**
+     * Returns all fields of this option, in the order they were set.
+     */
     public Set<Entry<Key, Value>> getFields() {
-        return fields.entrySet();
+        return new AbstractSet<Entry<Key, Value>>() {
+            @Override
+            @Nonnull
+            public Iterator<Entry<Key, Value>> iterator() {
+                return new Iterator<Entry<Key, Value>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<Key, Value> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<Key, Value> entry = new AbstractMap.SimpleImmutableEntry<>(keys[next], values[next]);
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
      * Change option name to its fully qualified name.
      */
     public void normalizeName(Key key, String fullyQualifiedName) {
-        Value value = fields.remove(key);
-        if (value == null) {
+        int position = indexOf(key);
+        if (position < 0) {
             throw new IllegalStateException("Could not find option for key=" + key);
         }
         Key newKey;
@@ -254,7 +339,18 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
         } else {
             newKey = Key.extension(fullyQualifiedName);
         }
-        fields.put(newKey, value);
+        int existing = indexOf(newKey);
+        if (existing >= 0 && existing != position) {
+            values[existing] = values[position];
+            removeAt(position);
+        } else {
+            Map<Key, Integer> map = positions;
+            if (map != null) {
+                map.remove(key);
+                map.put(newKey, position);
+            }
+            keys[position] = newKey;
+        }
     }
 
     /**
@@ -262,9 +358,9 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
      */
     public Map<String, Object> toMap() {
         Map<String, Object> result = new HashMap<>();
-        for (Entry<Key, Value> keyValueEntry : fields.entrySet()) {
-            Key key = keyValueEntry.getKey();
-            Value value = keyValueEntry.getValue();
+        for (int i = 0; i < size; i++) {
+            Key key = keys[i];
+            Value value = values[i];
             if (!key.isExtension()) {
                 result.put(key.getName(), transformValueToObject(value));
             } else {
@@ -293,7 +389,7 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
         }
     }
 
-    public static class Key {
+    public static class Key implements Serializable {
         private final String name;
         private final boolean extension;
 
@@ -333,7 +429,7 @@ public class DynamicMessage implements Map<String, DynamicMessage.Value> {
 
         @Override
         public int hashCode() {
-            return Objects.hash(name, extension);
+            return 31 * Objects.hashCode(name) + (extension ? 1 : 0);
         }
 
         @Override
@@ -0,0 +1,112 @@
+package io.protostuff.compiler.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * Name and tag index over a list of model elements.
+ *
+ * <p>Index is a snapshot of a list; it is considered stale when the list
+ * is replaced or its size changes, so owners can rebuild it on a next lookup.
+ * When the same name or tag is used more than once, first element wins -
+ * the same as a linear search would return.
+ */
+final class ElementIndex<T> {
+
+    private final List<T> source;
+    private final int size;
+    private final Map<String, T> byName;
+
+    /**
+     * Elements by {@code tag - minTag} when tags are dense enough, otherwise {@code null}.
+     */
+    @Nullable
+    private final Object[] byTag;
+    private final int minTag;
+
+    /**
+     * Elements by tag when tags are too sparse for an array, otherwise {@code null}.
+     */
+    @Nullable
+    private final Map<Integer, T> byTagSparse;
+
+    private ElementIndex(List<T> source, Function<T, String> nameFunction, @Nullable ToIntFunction<T> tagFunction) {
+        this.source = source;
+        this.size = source.size();
+        this.byName = new HashMap<>(size * 2);
+        for (T element : source) {
+            String name = nameFunction.apply(element);
+            if (name != null) {
+                byName.putIfAbsent(name, element);
+            }
+        }
+        if (tagFunction == null || size == 0) {
+            byTag = null;
+            minTag = 0;
+            byTagSparse = null;
+            return;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (T element : source) {
+            int tag = tagFunction.applyAsInt(element);
+            min = Math.min(min, tag);
+            max = Math.max(max, tag);
+        }
+        long span = (long) max - min + 1;
+        if (span <= 2L * size + 16) {
+            minTag = min;
+            byTag = new Object[(int) span];
+            for (T element : source) {
+                int offset = tagFunction.applyAsInt(element) - min;
+                if (byTag[offset] == null) {
+                    byTag[offset] = element;
+                }
+            }
+            byTagSparse = null;
+        } else {
+            minTag = 0;
+            byTag = null;
+            byTagSparse = new HashMap<>(size * 2);
+            for (T element : source) {
+                byTagSparse.putIfAbsent(tagFunction.applyAsInt(element), element);
+            }
+        }
+    }
+
+    /**
+     * Returns an index for a given list, reusing existing index if it is still valid.
+     */
+    static <T> ElementIndex<T> of(@Nullable ElementIndex<T> index, List<T> source,
+                                  Function<T, String> nameFunction, @Nullable ToIntFunction<T> tagFunction) {
+        if (index != null && index.source == source && index.size == source.size()) {
+            return index;
+        }
+        return new ElementIndex<>(source, nameFunction, tagFunction);
+    }
+
+    @Nullable
+    T get(String name) {
+        return byName.get(name);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    T get(int tag) {
+        if (byTag != null) {
+            long offset = (long) tag - minTag;
+            if (offset < 0 || offset >= byTag.length) {
+                return null;
+            }
+            return (T) byTag[(int) offset];
+        }
+        if (byTagSparse != null) {
+            return byTagSparse.get(tag);
+        }
+        return null;
+    }
+}
@@ -20,6 +20,8 @@ public class Enum extends AbstractDescriptor implements UserType {
     protected List<Range> reservedFieldRanges = new ArrayList<>();
     protected List<String> reservedFieldNames = new ArrayList<>();
 
+    private transient volatile ElementIndex<EnumConstant> constantIndex;
+
     public Enum(UserTypeContainer parent) {
         this.parent = parent;
     }
@@ -30,6 +32,7 @@ public class Enum extends AbstractDescriptor implements UserType {
 
     public void setConstants(List<EnumConstant> constants) {
         this.constants = constants;
+        constantIndex = null;
     }
 
     /**
@@ -45,16 +48,26 @@ public class Enum extends AbstractDescriptor implements UserType {
      * Get enum constant by it's name.
      */
     public EnumConstant getConstant(String name) {
-        for (EnumConstant enumConstant : getConstants()) {
-            if (enumConstant.getName().equals(name)) {
-                return enumConstant;
-            }
-        }
-        return null;
+        return getConstantIndex().get(name);
+    }
+
+    /**
+     * Get enum constant by it's value. For aliases, first declared constant is returned.
+     */
+    public EnumConstant getConstant(int value) {
+        return getConstantIndex().get(value);
+    }
+
+    private ElementIndex<EnumConstant> getConstantIndex() {
+        ElementIndex<EnumConstant> index = ElementIndex.of(constantIndex, getConstants(),
+                EnumConstant::getName, EnumConstant::getValue);
+        constantIndex = index;
+        return index;
     }
 
     public void addConstant(EnumConstant value) {
         constants.add(value);
+        constantIndex = null;
     }
 
     @Override
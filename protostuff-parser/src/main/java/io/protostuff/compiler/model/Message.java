@@ -14,6 +14,8 @@ import java.util.List;
 public class Message extends AbstractUserTypeContainer
         implements UserType, UserTypeContainer, FieldContainer, GroupContainer {
 
+    private static final OptionPath MAP_ENTRY = OptionPath.of(MessageParseListener.OPTION_MAP_ENTRY);
+
     protected List<Field> fields = new ArrayList<>();
     protected List<Group> groups = new ArrayList<>();
     protected List<Oneof> oneofs = new ArrayList<>();
@@ -24,6 +26,9 @@ public class Message extends AbstractUserTypeContainer
     protected List<Range> reservedFieldRanges = new ArrayList<>();
     protected List<String> reservedFieldNames = new ArrayList<>();
 
+    private transient volatile ElementIndex<Field> fieldIndex;
+    private transient volatile ElementIndex<Oneof> oneofIndex;
+
     public Message(UserTypeContainer parent) {
         super(parent);
     }
@@ -44,31 +49,29 @@ public class Message extends AbstractUserTypeContainer
     @Override
     public void setFields(List<Field> fields) {
         this.fields = fields;
+        fieldIndex = null;
     }
 
     @Override
     public void addField(Field field) {
         fields.add(field);
+        fieldIndex = null;
     }
 
     @Override
     public Field getField(String name) {
-        for (Field field : getFields()) {
-            if (name.equals(field.getName())) {
-                return field;
-            }
-        }
-        return null;
+        return getFieldIndex().get(name);
     }
 
     @Override
     public Field getField(int tag) {
-        for (Field field : getFields()) {
-            if (tag == field.getTag()) {
-                return field;
-            }
-        }
-        return null;
+        return getFieldIndex().get(tag);
+    }
+
+    private ElementIndex<Field> getFieldIndex() {
+        ElementIndex<Field> index = ElementIndex.of(fieldIndex, getFields(), Field::getName, Field::getTag);
+        fieldIndex = index;
+        return index;
     }
 
     public List<Oneof> getOneofs() {
@@ -77,22 +80,21 @@ public class Message extends AbstractUserTypeContainer
 
     public void setOneofs(List<Oneof> oneofs) {
         this.oneofs = oneofs;
+        oneofIndex = null;
     }
 
     public void addOneof(Oneof oneof) {
         oneofs.add(oneof);
+        oneofIndex = null;
     }
 
     /**
      * Get oneof node by it's name.
      */
     public Oneof getOneof(String name) {
-        for (Oneof oneof : getOneofs()) {
-            if (name.equals(oneof.getName())) {
-                return oneof;
-            }
-        }
-        return null;
+        ElementIndex<Oneof> index = ElementIndex.of(oneofIndex, getOneofs(), Oneof::getName, null);
+        oneofIndex = index;
+        return index.get(name);
     }
 
     @Override
@@ -229,7 +231,7 @@ public class Message extends AbstractUserTypeContainer
     }
 
     public boolean isMapEntry() {
-        DynamicMessage.Value value = this.getOptions().get(MessageParseListener.OPTION_MAP_ENTRY);
+        DynamicMessage.Value value = this.getOptions().get(MAP_ENTRY);
         return value != null && value.isBooleanType() && value.getBoolean();
     }
 }
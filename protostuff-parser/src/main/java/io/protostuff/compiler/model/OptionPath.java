@@ -0,0 +1,101 @@
+package io.protostuff.compiler.model;
+
+import static io.protostuff.compiler.model.DynamicMessage.DOT;
+import static io.protostuff.compiler.model.DynamicMessage.LPAREN;
+import static io.protostuff.compiler.model.DynamicMessage.RPAREN;
+
+import io.protostuff.compiler.parser.Util;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pre-parsed option name, like {@code java_package} or {@code (foo.bar).baz} -
+ * a sequence of keys for each nesting level of an option value.
+ * Option paths are immutable and should be reused for repeated lookups.
+ */
+public final class OptionPath {
+
+    private static final int MAX_CACHED_PATHS = 4096;
+    private static final ConcurrentMap<String, OptionPath> CACHE = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final DynamicMessage.Key[] keys;
+
+    private OptionPath(String name, DynamicMessage.Key[] keys) {
+        this.name = name;
+        this.keys = keys;
+    }
+
+    /**
+     * Parse given option name. Names of extensions can be written in
+     * parentheses, with or without leading dot.
+     */
+    public static OptionPath of(String name) {
+        OptionPath path = CACHE.get(name);
+        if (path == null) {
+            path = parse(name);
+            if (CACHE.size() < MAX_CACHED_PATHS) {
+                CACHE.putIfAbsent(name, path);
+            }
+        }
+        return path;
+    }
+
+    private static OptionPath parse(String name) {
+        List<DynamicMessage.Key> keys = new ArrayList<>(1);
+        int start = 0;
+        while (true) {
+            if (name.length() - start <= 1) {
+                keys.add(DynamicMessage.Key.field(name.substring(start)));
+                break;
+            }
+            int dot;
+            if (name.charAt(start) == LPAREN) {
+                int end = name.indexOf(RPAREN, start);
+                dot = name.indexOf(DOT, end < 0 ? start : end);
+            } else {
+                dot = name.indexOf(DOT, start);
+            }
+            if (dot > start) {
+                keys.add(createKey(name.substring(start, dot)));
+                start = dot + 1;
+            } else {
+                keys.add(createKey(name.substring(start)));
+                break;
+            }
+        }
+        return new OptionPath(name, keys.toArray(new DynamicMessage.Key[0]));
+    }
+
+    private static DynamicMessage.Key createKey(String fieldName) {
+        if (fieldName.charAt(0) == LPAREN) {
+            String name = Util.removeFirstAndLastChar(fieldName);
+            if (name.startsWith(".")) {
+                name = name.substring(1);
+            }
+            return DynamicMessage.Key.extension(name);
+        }
+        return DynamicMessage.Key.field(fieldName);
+    }
+
+    /**
+     * Returns number of nesting levels in this path.
+     */
+    public int length() {
+        return keys.length;
+    }
+
+    /**
+     * Returns key for a given nesting level.
+     */
+    public DynamicMessage.Key getKey(int level) {
+        return keys[level];
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -13,8 +13,8 @@ import java.util.stream.Collectors;
  */
 public class Proto extends AbstractUserTypeContainer implements UserTypeContainer {
 
-    protected Module module;
-    protected ProtoContext context;
+    protected transient Module module;
+    protected transient ProtoContext context;
     protected String filename;
     protected Syntax syntax = Syntax.DEFAULT;
     protected Package pkg = Package.DEFAULT;
@@ -135,4 +135,27 @@ public class Proto extends AbstractUserTypeContainer implements UserTypeContaine
     public void setModule(Module module) {
         this.module = module;
     }
+
+    /**
+     * Returns a shallow copy of this proto node, without a module. Used for
+     * shared nodes that can not be assigned to a single module; all child
+     * nodes are shared with this node.
+     */
+    public Proto copy() {
+        Proto copy = new Proto();
+        copy.context = context;
+        copy.filename = filename;
+        copy.syntax = syntax;
+        copy.pkg = pkg;
+        copy.imports = imports;
+        copy.services = services;
+        copy.name = name;
+        copy.options = options;
+        copy.messages = messages;
+        copy.enums = enums;
+        copy.declaredExtensions = declaredExtensions;
+        copy.sourceCodeLocation = sourceCodeLocation;
+        copy.setComments(getCommentLines());
+        return copy;
+    }
 }
@@ -16,6 +16,7 @@ public class Service extends AbstractDescriptor implements Type {
     private Proto proto;
     private String fullyQualifiedName;
     private List<ServiceMethod> methods = new ArrayList<>();
+    private transient volatile ElementIndex<ServiceMethod> methodIndex;
 
     public Service(Proto parent) {
         this.parent = parent;
@@ -54,22 +55,21 @@ public class Service extends AbstractDescriptor implements Type {
 
     public void setMethods(List<ServiceMethod> methods) {
         this.methods = methods;
+        methodIndex = null;
     }
 
     /**
      * Get a service method by it's name.
      */
     public ServiceMethod getMethod(String name) {
-        for (ServiceMethod serviceMethod : getMethods()) {
-            if (serviceMethod.getName().equals(name)) {
-                return serviceMethod;
-            }
-        }
-        return null;
+        ElementIndex<ServiceMethod> index = ElementIndex.of(methodIndex, getMethods(), ServiceMethod::getName, null);
+        methodIndex = index;
+        return index.get(name);
     }
 
     public void addMethod(ServiceMethod method) {
         methods.add(method);
+        methodIndex = null;
     }
 
     @Override
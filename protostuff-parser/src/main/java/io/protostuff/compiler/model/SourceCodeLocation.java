@@ -15,6 +15,10 @@ public class SourceCodeLocation implements Serializable {
         public String toString() {
             return "unknown";
         }
+
+        private Object readResolve() {
+            return UNKNOWN;
+        }
     };
     private static final long serialVersionUID = 0L;
     private final String file;
@@ -4,8 +4,6 @@ import io.protostuff.compiler.model.Extension;
 import io.protostuff.compiler.model.Field;
 import io.protostuff.compiler.model.Message;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -16,7 +14,7 @@ import java.util.concurrent.ConcurrentMap;
  */
 public abstract class AbstractExtensionRegistry implements ExtensionRegistry {
 
-    private final ConcurrentMap<String, Map<String, Field>> fieldCache;
+    private final ConcurrentMap<String, NameTable<Field>> fieldCache;
 
     protected AbstractExtensionRegistry() {
         fieldCache = new ConcurrentHashMap<>();
@@ -28,6 +26,13 @@ public abstract class AbstractExtensionRegistry implements ExtensionRegistry {
         fieldCache.remove(fullyQualifiedName);
     }
 
+    /**
+     * Drop cached extension fields of all messages.
+     */
+    protected void clearFieldCache() {
+        fieldCache.clear();
+    }
+
     @Override
     public Collection<Extension> getExtensions(Message message) {
         String fullyQualifiedName = message.getFullyQualifiedName();
@@ -35,9 +40,9 @@ public abstract class AbstractExtensionRegistry implements ExtensionRegistry {
     }
 
     @Override
-    public Map<String, Field> getExtensionFields(String fullMessageName) {
+    public NameTable<Field> getExtensionFields(String fullMessageName) {
         return fieldCache.computeIfAbsent(fullMessageName, messageName -> {
-            Map<String, Field> map = new HashMap<>();
+            NameTable<Field> map = new NameTable<>();
             Collection<Extension> extensions = getExtensions(messageName);
             for (Extension extension : extensions) {
                 for (Field field : extension.getFields()) {
@@ -50,7 +55,7 @@ public abstract class AbstractExtensionRegistry implements ExtensionRegistry {
     }
 
     @Override
-    public Map<String, Field> getExtensionFields(Message message) {
+    public NameTable<Field> getExtensionFields(Message message) {
         String fullyQualifiedName = message.getFullyQualifiedName();
         return getExtensionFields(fullyQualifiedName);
     }
@@ -6,7 +6,7 @@ import static org.antlr.v4.runtime.Lexer.HIDDEN;
 
 import io.protostuff.compiler.model.AbstractElement;
 import io.protostuff.compiler.model.SourceCodeLocation;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
@@ -27,6 +27,8 @@ public abstract class AbstractProtoParserListener extends ProtoParserBaseListene
 
     private BitSet usedComments;
 
+    private int[] commentRanges = new int[8];
+
     protected AbstractProtoParserListener(BufferedTokenStream tokens, ProtoContext context) {
         this.context = context;
         this.tokens = tokens;
@@ -40,7 +42,7 @@ public abstract class AbstractProtoParserListener extends ProtoParserBaseListene
     }
 
     protected void attachComments(ParserRuleContext ctx, AbstractElement element, boolean addTrailingComment) {
-        List<String> comments = new ArrayList<>();
+        int count = 0;
         Token stop = ctx.getStop();
         Token start = ctx.getStart();
         List<Token> tokensBefore = tokens.getHiddenTokensToLeft(start.getTokenIndex(), HIDDEN);
@@ -50,25 +52,30 @@ public abstract class AbstractProtoParserListener extends ProtoParserBaseListene
                     continue;
                 }
                 if (token.getType() == LINE_COMMENT) {
-                    addCommentToList(token, comments);
+                    count = addCommentRange(token, count);
                 }
             }
         }
         if (addTrailingComment) {
             List<Token> tokensAfter = tokens.getHiddenTokensToRight(stop.getTokenIndex(), HIDDEN);
-            findTrailingComment(tokensAfter)
-                    .ifPresent(token -> addCommentToList(token, comments));
+            Optional<Token> trailingComment = findTrailingComment(tokensAfter);
+            if (trailingComment.isPresent()) {
+                count = addCommentRange(trailingComment.get(), count);
+            }
         }
-        List<String> trimComments = trim(comments);
-        for (String comment : trimComments) {
-            element.addComment(comment);
+        if (count > 0) {
+            element.setComments(context.getCommentBuffer(), Arrays.copyOf(commentRanges, 2 * count));
         }
     }
 
-    private void addCommentToList(Token token, List<String> comments) {
-        String text = getTextFromLineCommentToken(token);
-        comments.add(text);
+    private int addCommentRange(Token token, int count) {
+        if (commentRanges.length < 2 * (count + 1)) {
+            commentRanges = Arrays.copyOf(commentRanges, 2 * commentRanges.length);
+        }
+        commentRanges[2 * count] = appendLineComment(token);
+        commentRanges[2 * count + 1] = context.getCommentBuffer().length();
         usedComments.set(token.getLine());
+        return count + 1;
     }
 
     private Optional<Token> findTrailingComment(@Nullable List<Token> tokensAfter) {
@@ -90,45 +97,18 @@ public abstract class AbstractProtoParserListener extends ProtoParserBaseListene
     }
 
     /**
-     * Remove common leading whitespaces from all strings in the list.
-     * Returns new list instance.
+     * Append text of a line comment (without leading slashes and trailing
+     * whitespaces) to the comment buffer of this file.
+     *
+     * @return start offset of comment text in the buffer
      */
-    protected List<String> trim(List<String> comments) {
-        List<String> trimComments = new ArrayList<>();
-        int n = 0;
-        boolean tryRemoveWhitespace = true;
-        while (tryRemoveWhitespace) {
-            boolean allLinesAreShorter = true;
-            for (String comment : comments) {
-                if (comment.length() <= n) {
-                    continue;
-                }
-                if (comment.charAt(n) != ' ') {
-                    tryRemoveWhitespace = false;
-                }
-                allLinesAreShorter = false;
-            }
-            if (allLinesAreShorter) {
-                break;
-            }
-            if (tryRemoveWhitespace) {
-                n++;
-            }
+    protected int appendLineComment(Token token) {
+        String comment = token.getText();
+        int end = comment.length();
+        while (end > 2 && comment.charAt(end - 1) <= ' ') {
+            end--;
         }
-        for (String comment : comments) {
-            if (comment.length() > n) {
-                String substring = comment.substring(n);
-                trimComments.add(substring);
-            } else {
-                trimComments.add("");
-            }
-        }
-        return trimComments;
-    }
-
-    protected String getTextFromLineCommentToken(Token token) {
-        String comment = token.getText().trim();
-        return comment.substring(2);
+        return context.getCommentBuffer().append(comment, 2, end);
     }
 
 
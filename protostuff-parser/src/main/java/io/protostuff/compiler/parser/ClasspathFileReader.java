@@ -1,6 +1,8 @@
 package io.protostuff.compiler.parser;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
@@ -17,15 +19,28 @@ public class ClasspathFileReader implements FileReader {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathFileReader.class);
 
     /**
-     * Load resource from classpath.
+     * Load resource from classpath. Proto files are looked up in a {@link ClasspathIndex}
+     * of the current thread's context class loader.
      */
     public static InputStream readResource(String name) {
-        String classpath = System.getProperty("java.class.path");
-        LOGGER.trace("Reading {} from classpath={}", name, classpath);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Reading {} from classpath={}", name, System.getProperty("java.class.path"));
+        }
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
         if (classLoader == null) {
             throw new IllegalStateException("Can not obtain classloader instance from current thread");
         }
+        if (name.endsWith(".proto")) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(classLoader);
+            try {
+                InputStream resource = index.open(name);
+                if (resource != null || index.isComplete()) {
+                    return resource;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Could not read {} from classpath index", name, e);
+            }
+        }
         return classLoader.getResourceAsStream(name);
     }
 
@@ -35,7 +50,9 @@ public class ClasspathFileReader implements FileReader {
         try {
             InputStream resource = readResource(name);
             if (resource != null) {
-                return CharStreams.fromStream(resource);
+                try (InputStream in = resource) {
+                    return CharStreams.fromStream(in, StandardCharsets.UTF_8);
+                }
             }
         } catch (Exception e) {
             LOGGER.error("Could not read {}", name, e);
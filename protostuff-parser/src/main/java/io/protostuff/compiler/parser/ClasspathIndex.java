@@ -0,0 +1,489 @@
+package io.protostuff.compiler.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of proto files on a classpath of a class loader.
+ *
+ * <p>Jar files are scanned once per JVM (and again after they are changed),
+ * their indexes are shared by all class loaders. A limited number of recently
+ * used jar files are kept open and shared by all lookups; they are closed by
+ * {@link #closeJars()} at the end of a compilation, so they are not locked
+ * between compilations. Directories are not indexed - they are checked on each
+ * lookup, as their content can change between compilations.
+ * If some class loader in a chain is not a {@link URLClassLoader}, or it is
+ * a subclass that changes resource lookup, index is incomplete: resources
+ * that are not found in the index should be looked up using class loader.
+ */
+public final class ClasspathIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathIndex.class);
+
+    private static final String PROTO_EXTENSION = ".proto";
+
+    /**
+     * Guarded by itself.
+     */
+    private static final Map<ClassLoader, ClasspathIndex> INDEXES = new WeakHashMap<>();
+
+    private static final ConcurrentMap<Path, JarIndex> JARS = new ConcurrentHashMap<>();
+
+    private static final int MAX_OPEN_JARS = 16;
+
+    /**
+     * Open jar files, in access order. Guarded by itself.
+     */
+    private static final Map<JarIndex, Boolean> OPEN_JARS = new LinkedHashMap<>(MAX_OPEN_JARS, 0.75f, true);
+
+    /**
+     * {@link URLClassLoader} subclasses that change resource lookup order or
+     * delegate to other class loaders, but do not add resources that are not
+     * in their URLs (or in URLs of their parents).
+     */
+    private static final Set<String> INDEXABLE_CLASS_LOADERS = Collections.singleton(
+            "org.codehaus.plexus.classworlds.realm.ClassRealm");
+
+    private static final Set<String> RESOURCE_METHODS = new HashSet<>(Arrays.asList(
+            "getResource", "getResources", "getResourceAsStream", "findResource", "findResources"));
+
+    private static final ClassValue<Boolean> STANDARD_CLASS_LOADERS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return isStandardClassLoader(type);
+        }
+    };
+
+    private final Fingerprint fingerprint;
+    private final List<String> urls;
+    private final boolean complete;
+    private final List<ClasspathDirectory> directories;
+    private final Map<String, ClasspathJar> entries;
+
+    private ClasspathIndex(Fingerprint fingerprint, List<String> urls, boolean complete,
+                           List<ClasspathDirectory> directories, Map<String, ClasspathJar> entries) {
+        this.fingerprint = fingerprint;
+        this.urls = urls;
+        this.complete = complete;
+        this.directories = directories;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns index for a classpath of given class loader. Index is cached
+     * until the list of class loader's URLs is changed.
+     */
+    public static ClasspathIndex forClassLoader(ClassLoader classLoader) {
+        Fingerprint fingerprint = new Fingerprint(classLoader);
+        ClasspathIndex cachedIndex;
+        synchronized (INDEXES) {
+            cachedIndex = INDEXES.get(classLoader);
+        }
+        if (cachedIndex != null && cachedIndex.fingerprint.equals(fingerprint)) {
+            return cachedIndex;
+        }
+        List<URL> classpath = new ArrayList<>();
+        boolean complete = collectUrls(classLoader, classpath);
+        List<String> urls = new ArrayList<>(classpath.size());
+        for (URL url : classpath) {
+            urls.add(url.toExternalForm());
+        }
+        if (cachedIndex != null && cachedIndex.urls.equals(urls)) {
+            cachedIndex = new ClasspathIndex(fingerprint, urls, cachedIndex.complete,
+                    cachedIndex.directories, cachedIndex.entries);
+            synchronized (INDEXES) {
+                INDEXES.put(classLoader, cachedIndex);
+            }
+            return cachedIndex;
+        }
+        ClasspathIndex index = build(fingerprint, urls, classpath, complete);
+        synchronized (INDEXES) {
+            INDEXES.put(classLoader, index);
+        }
+        return index;
+    }
+
+    /**
+     * Close jar files that were opened to read proto files. Jar files are
+     * opened again if they are needed later.
+     */
+    public static void closeJars() {
+        for (JarIndex jar : JARS.values()) {
+            jar.close();
+        }
+        synchronized (OPEN_JARS) {
+            OPEN_JARS.clear();
+        }
+    }
+
+    /**
+     * Returns {@code true} if all resources of a class loader are in the index.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Open a proto file with given resource name, or return {@code null}
+     * if there is no such resource in the index.
+     */
+    @Nullable
+    public InputStream open(String name) throws IOException {
+        ClasspathJar jar = entries.get(name);
+        int limit = jar == null ? Integer.MAX_VALUE : jar.position;
+        for (ClasspathDirectory directory : directories) {
+            if (directory.position >= limit) {
+                break;
+            }
+            Path file = directory.path.resolve(name);
+            if (Files.isRegularFile(file)) {
+                return Files.newInputStream(file);
+            }
+        }
+        if (jar != null) {
+            return jar.index.open(name);
+        }
+        return null;
+    }
+
+    /**
+     * Collect URLs of all class loaders in a chain, in the same order as
+     * they are used for resource lookup (parent first).
+     *
+     * @return {@code true} if all class loaders in a chain are enumerable
+     */
+    private static boolean collectUrls(ClassLoader classLoader, List<URL> result) {
+        ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+        Deque<ClassLoader> chain = new ArrayDeque<>();
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            chain.push(loader);
+        }
+        boolean complete = true;
+        for (ClassLoader loader : chain) {
+            if (loader instanceof URLClassLoader) {
+                Collections.addAll(result, ((URLClassLoader) loader).getURLs());
+                complete &= STANDARD_CLASS_LOADERS.get(loader.getClass());
+            } else if (loader == systemClassLoader) {
+                complete &= addClassPath(System.getProperty("java.class.path"), result);
+            } else if (loader != systemClassLoader.getParent()) {
+                // platform class loader does not have any proto files,
+                // for other class loaders we do not know how they find resources
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Check if a class loader finds resources only in its URLs: it is either
+     * a known class loader or a subclass that does not override resource lookup.
+     */
+    private static boolean isStandardClassLoader(Class<?> loaderClass) {
+        if (loaderClass.getName().startsWith("sun.misc.Launcher$")
+                || INDEXABLE_CLASS_LOADERS.contains(loaderClass.getName())) {
+            return true;
+        }
+        for (Class<?> type = loaderClass; type != URLClassLoader.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (RESOURCE_METHODS.contains(method.getName())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean addClassPath(String classpath, List<URL> result) {
+        if (classpath == null) {
+            return true;
+        }
+        for (String element : classpath.split(File.pathSeparator)) {
+            if (element.isEmpty()) {
+                continue;
+            }
+            try {
+                result.add(Paths.get(element).toUri().toURL());
+            } catch (MalformedURLException | RuntimeException e) {
+                LOGGER.debug("Invalid classpath element: {}", element, e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ClasspathIndex build(Fingerprint fingerprint, List<String> urls, List<URL> classpath,
+                                        boolean complete) {
+        List<ClasspathDirectory> directories = new ArrayList<>();
+        Map<String, ClasspathJar> entries = new HashMap<>();
+        Set<Path> visited = new HashSet<>();
+        Deque<URL> queue = new ArrayDeque<>(classpath);
+        boolean indexComplete = complete;
+        int position = 0;
+        while (!queue.isEmpty()) {
+            URL url = queue.poll();
+            Path path = toPath(url);
+            if (path == null) {
+                indexComplete = false;
+                continue;
+            }
+            if (!visited.add(path)) {
+                continue;
+            }
+            if (Files.isDirectory(path)) {
+                directories.add(new ClasspathDirectory(path, position++));
+            } else if (Files.isRegularFile(path)) {
+                JarIndex jar = getJarIndex(path);
+                if (jar == null) {
+                    continue;
+                }
+                ClasspathJar classpathJar = new ClasspathJar(jar, position++);
+                for (String name : jar.protoFiles) {
+                    entries.putIfAbsent(name, classpathJar);
+                }
+                // manifest class path entries are searched right after the jar
+                List<URL> manifestClasspath = jar.manifestClasspath;
+                for (int i = manifestClasspath.size() - 1; i >= 0; i--) {
+                    queue.push(manifestClasspath.get(i));
+                }
+            }
+        }
+        LOGGER.debug("Indexed classpath: {} proto files, {} directories, complete={}",
+                entries.size(), directories.size(), indexComplete);
+        return new ClasspathIndex(fingerprint, urls, indexComplete, directories, entries);
+    }
+
+    @Nullable
+    private static Path toPath(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI()).toAbsolutePath().normalize();
+        } catch (URISyntaxException | RuntimeException e) {
+            LOGGER.debug("Invalid classpath element: {}", url, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static JarIndex getJarIndex(Path path) {
+        try {
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            long size = Files.size(path);
+            JarIndex jar = JARS.get(path);
+            if (jar != null && jar.lastModified == lastModified && jar.size == size) {
+                return jar;
+            }
+            JarIndex newJar = new JarIndex(path, lastModified, size);
+            JarIndex staleJar = JARS.put(path, newJar);
+            if (staleJar != null) {
+                staleJar.close();
+            }
+            return newJar;
+        } catch (IOException e) {
+            LOGGER.debug("Could not read {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Cheap check that a classpath of a class loader was not changed: URLs
+     * can only be added to a {@link URLClassLoader}, so it is enough to compare
+     * their number; for the system class loader the class path property is
+     * compared. Parents of a class loader never change.
+     */
+    private static final class Fingerprint {
+        private final int[] urlCounts;
+        private final String classPath;
+
+        Fingerprint(ClassLoader classLoader) {
+            int depth = 0;
+            for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+                depth++;
+            }
+            urlCounts = new int[depth];
+            int i = 0;
+            for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+                urlCounts[i++] = loader instanceof URLClassLoader ? ((URLClassLoader) loader).getURLs().length : -1;
+            }
+            classPath = System.getProperty("java.class.path");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return Arrays.equals(urlCounts, that.urlCounts)
+                    && Objects.equals(classPath, that.classPath);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(urlCounts) + Objects.hashCode(classPath);
+        }
+    }
+
+    /**
+     * Mark jar file as recently used, and close least recently used
+     * jar files if there are too many of them open.
+     */
+    private static void touch(JarIndex jar) {
+        List<JarIndex> evicted = new ArrayList<>();
+        synchronized (OPEN_JARS) {
+            OPEN_JARS.put(jar, Boolean.TRUE);
+            Iterator<JarIndex> iterator = OPEN_JARS.keySet().iterator();
+            while (OPEN_JARS.size() - evicted.size() > MAX_OPEN_JARS) {
+                evicted.add(iterator.next());
+            }
+            OPEN_JARS.keySet().removeAll(evicted);
+        }
+        // jars are closed without holding a lock on open jars
+        for (JarIndex evictedJar : evicted) {
+            evictedJar.close();
+        }
+    }
+
+    private static final class ClasspathDirectory {
+        private final Path path;
+        private final int position;
+
+        ClasspathDirectory(Path path, int position) {
+            this.path = path;
+            this.position = position;
+        }
+    }
+
+    private static final class ClasspathJar {
+        private final JarIndex index;
+        private final int position;
+
+        ClasspathJar(JarIndex index, int position) {
+            this.index = index;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Proto files of a single jar file.
+     */
+    private static final class JarIndex {
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+        private final Set<String> protoFiles = new HashSet<>();
+        private final List<URL> manifestClasspath = new ArrayList<>();
+
+        /**
+         * Open jar file, or {@code null}. Guarded by this.
+         */
+        private ZipFile zipFile;
+
+        JarIndex(Path path, long lastModified, long size) throws IOException {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                Collections.list(zipFile.entries()).forEach(entry -> {
+                    if (!entry.isDirectory() && entry.getName().endsWith(PROTO_EXTENSION)) {
+                        protoFiles.add(entry.getName());
+                    }
+                });
+                readManifestClasspath(zipFile, path.toUri().toURL());
+            }
+        }
+
+        /**
+         * Read a proto file into memory, so that jar file can be closed
+         * while the stream is in use.
+         */
+        @Nullable
+        InputStream open(String name) throws IOException {
+            InputStream result;
+            synchronized (this) {
+                if (zipFile == null) {
+                    zipFile = new ZipFile(path.toFile());
+                }
+                ZipEntry entry = zipFile.getEntry(name);
+                if (entry == null) {
+                    // jar was changed after it was indexed
+                    result = null;
+                } else {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        result = new ByteArrayInputStream(IOUtils.toByteArray(in));
+                    }
+                }
+            }
+            touch(this);
+            return result;
+        }
+
+        synchronized void close() {
+            if (zipFile != null) {
+                try {
+                    zipFile.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Could not close {}", path, e);
+                }
+                zipFile = null;
+            }
+        }
+
+        private void readManifestClasspath(ZipFile zipFile, URL jarUrl) throws IOException {
+            ZipEntry manifestEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+            if (manifestEntry == null) {
+                return;
+            }
+            try (InputStream in = zipFile.getInputStream(manifestEntry)) {
+                String classpath = new Manifest(in).getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+                if (classpath == null) {
+                    return;
+                }
+                for (String element : classpath.trim().split("\\s+")) {
+                    if (!element.isEmpty()) {
+                        manifestClasspath.add(new URL(jarUrl, element));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.protostuff.compiler.parser;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import io.protostuff.compiler.model.AbstractDescriptor;
+import io.protostuff.compiler.model.Enum;
+import io.protostuff.compiler.model.EnumConstant;
+import io.protostuff.compiler.model.Extension;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Oneof;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.model.Service;
+import io.protostuff.compiler.model.ServiceMethod;
+import io.protostuff.compiler.model.UserTypeContainer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces memory retained by a parsed proto file: trims spare capacity of
+ * model collections, interns identifiers and type names, and drops state
+ * of a context that is used only by parser.
+ *
+ * <p>Must be the last post-processor, model should not be modified after it.
+ */
+public class CompactionPostProcessor implements WalkingPostProcessor {
+
+    /**
+     * Identifiers are repeated across files and compilations, so they are interned JVM-wide.
+     */
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    @Override
+    public void register(ProtoWalker walker) {
+        walker.onProto(this::compactProto)
+                .onMessage(this::compactMessage)
+                .onField(this::compactField)
+                .onEnum(this::compactEnum)
+                .onEnumConstant(this::compactEnumConstant)
+                .onService(this::compactService)
+                .onServiceMethod(this::compactServiceMethod)
+                .onOneof(this::compactOneof);
+    }
+
+    private void compactProto(ProtoContext context, Proto proto) {
+        context.compact();
+        trim(proto.getImports());
+        trim(proto.getServices());
+        compactContainer(proto);
+    }
+
+    private void compactMessage(Message message) {
+        internName(message);
+        trim(message.getFields());
+        trim(message.getGroups());
+        trim(message.getOneofs());
+        trim(message.getExtensionRanges());
+        trim(message.getReservedFieldRanges());
+        internAll(message.getReservedFieldNames());
+        compactContainer(message);
+    }
+
+    private void compactContainer(UserTypeContainer container) {
+        trim(container.getMessages());
+        trim(container.getEnums());
+        List<Extension> extensions = container.getDeclaredExtensions();
+        trim(extensions);
+        for (Extension extension : extensions) {
+            extension.setExtendeeName(intern(extension.getExtendeeName()));
+            trim(extension.getFields());
+            trim(extension.getGroups());
+            // extension fields are not visited by a walker
+            for (Field field : extension.getFields()) {
+                compactField(field);
+            }
+        }
+    }
+
+    private void compactField(Field field) {
+        internName(field);
+        field.setTypeName(intern(field.getTypeName()));
+    }
+
+    private void compactEnum(Enum anEnum) {
+        internName(anEnum);
+        trim(anEnum.getConstants());
+        trim(anEnum.getReservedFieldRanges());
+        internAll(anEnum.getReservedFieldNames());
+    }
+
+    private void compactEnumConstant(EnumConstant constant) {
+        internName(constant);
+    }
+
+    private void compactService(Service service) {
+        internName(service);
+        trim(service.getMethods());
+    }
+
+    private void compactServiceMethod(ServiceMethod method) {
+        internName(method);
+        method.setArgTypeName(intern(method.getArgTypeName()));
+        method.setReturnTypeName(intern(method.getReturnTypeName()));
+    }
+
+    private void compactOneof(Oneof oneof) {
+        internName(oneof);
+        trim(oneof.getFields());
+        trim(oneof.getGroups());
+    }
+
+    private void internName(AbstractDescriptor descriptor) {
+        descriptor.setName(intern(descriptor.getName()));
+    }
+
+    private void internAll(List<String> strings) {
+        for (int i = 0; i < strings.size(); i++) {
+            strings.set(i, intern(strings.get(i)));
+        }
+    }
+
+    private static String intern(String string) {
+        if (string == null) {
+            return null;
+        }
+        return INTERNER.intern(string);
+    }
+
+    private static void trim(List<?> list) {
+        if (list instanceof ArrayList) {
+            ((ArrayList<?>) list).trimToSize();
+        }
+    }
+}
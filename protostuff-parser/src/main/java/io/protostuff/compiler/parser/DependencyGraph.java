@@ -0,0 +1,224 @@
+package io.protostuff.compiler.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.antlr.v4.runtime.CharStream;
+
+/**
+ * Import graph of proto files, built from given root files using
+ * {@link ImportScanner} - without parsing files.
+ *
+ * <p>Can be used to schedule work: files in {@link #getTopologicalOrder()}
+ * come after all files they import, {@link #getDependents(Collection)} returns
+ * files that have to be processed again when given files are changed.
+ */
+public final class DependencyGraph {
+
+    private static final String DESCRIPTOR_PROTO = "google/protobuf/descriptor.proto";
+    private static final String DESCRIPTOR_PROTO_FALLBACK = "google/protobuf/__descriptor.proto";
+
+    private final Map<String, ImportScanner.ProtoImports> files;
+    private final Map<String, Set<String>> importedBy;
+    private final List<Set<String>> components;
+
+    private DependencyGraph(Map<String, ImportScanner.ProtoImports> files) {
+        this.files = files;
+        this.importedBy = new HashMap<>();
+        for (Map.Entry<String, ImportScanner.ProtoImports> entry : files.entrySet()) {
+            for (String importedFile : entry.getValue().getImports()) {
+                importedBy.computeIfAbsent(importedFile, file -> new LinkedHashSet<>())
+                        .add(entry.getKey());
+            }
+        }
+        this.components = findStronglyConnectedComponents();
+    }
+
+    /**
+     * Build import graph for given root files and all files that they
+     * import, directly or transitively.
+     *
+     * @throws ParserException if some of files can not be found
+     */
+    public static DependencyGraph build(FileReader reader, Collection<String> roots) {
+        Map<String, ImportScanner.ProtoImports> files = new LinkedHashMap<>();
+        Deque<String> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            String file = queue.poll();
+            if (files.containsKey(file)) {
+                continue;
+            }
+            ImportScanner.ProtoImports imports = ImportScanner.scan(read(reader, file));
+            files.put(file, imports);
+            queue.addAll(imports.getImports());
+        }
+        return new DependencyGraph(files);
+    }
+
+    private static CharStream read(FileReader reader, String file) {
+        CharStream stream = reader.read(file);
+        if (stream == null && DESCRIPTOR_PROTO.equals(file)) {
+            stream = reader.read(DESCRIPTOR_PROTO_FALLBACK);
+        }
+        if (stream == null) {
+            throw new ParserException("Can not load proto: %s not found", file);
+        }
+        return stream;
+    }
+
+    /**
+     * Returns all files in this graph.
+     */
+    public Set<String> getFiles() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    /**
+     * Returns package name and imports of a given file.
+     */
+    public ImportScanner.ProtoImports getImports(String file) {
+        ImportScanner.ProtoImports imports = files.get(file);
+        if (imports == null) {
+            throw new IllegalArgumentException("Unknown file: " + file);
+        }
+        return imports;
+    }
+
+    /**
+     * Returns files that directly import given file.
+     */
+    public Set<String> getImportedBy(String file) {
+        return Collections.unmodifiableSet(importedBy.getOrDefault(file, Collections.emptySet()));
+    }
+
+    /**
+     * Returns given files and all files that import them, directly or transitively.
+     */
+    public Set<String> getDependents(Collection<String> changedFiles) {
+        Set<String> result = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(changedFiles);
+        while (!queue.isEmpty()) {
+            String file = queue.poll();
+            if (result.add(file)) {
+                queue.addAll(importedBy.getOrDefault(file, Collections.emptySet()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all files ordered so that every file comes after files that
+     * it imports. Files of an import cycle are placed next to each other.
+     */
+    public List<String> getTopologicalOrder() {
+        List<String> result = new ArrayList<>(files.size());
+        for (Set<String> component : components) {
+            result.addAll(component);
+        }
+        return result;
+    }
+
+    /**
+     * Returns strongly connected components of the import graph, in
+     * topological order - imported files first.
+     */
+    public List<Set<String>> getStronglyConnectedComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    /**
+     * Returns import cycles - components that have more than one file,
+     * or a file that imports itself.
+     */
+    public List<Set<String>> getCycles() {
+        List<Set<String>> result = new ArrayList<>();
+        for (Set<String> component : components) {
+            if (component.size() > 1) {
+                result.add(component);
+            } else {
+                String file = component.iterator().next();
+                if (files.get(file).getImports().contains(file)) {
+                    result.add(component);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Iterative Tarjan's algorithm. Components are emitted after all components
+     * reachable from them, so for import edges this is a topological order.
+     */
+    private List<Set<String>> findStronglyConnectedComponents() {
+        List<Set<String>> result = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        Map<String, Integer> lowLink = new HashMap<>();
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> onStack = new LinkedHashSet<>();
+        Deque<Frame> callStack = new ArrayDeque<>();
+        for (String root : files.keySet()) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            callStack.push(visit(root, index, lowLink, stack, onStack));
+            while (!callStack.isEmpty()) {
+                Frame frame = callStack.peek();
+                if (frame.next < frame.imports.size()) {
+                    String importedFile = frame.imports.get(frame.next++);
+                    if (!index.containsKey(importedFile)) {
+                        callStack.push(visit(importedFile, index, lowLink, stack, onStack));
+                    } else if (onStack.contains(importedFile)) {
+                        lowLink.put(frame.file, Math.min(lowLink.get(frame.file), index.get(importedFile)));
+                    }
+                    continue;
+                }
+                callStack.pop();
+                Frame parent = callStack.peek();
+                if (parent != null) {
+                    lowLink.put(parent.file, Math.min(lowLink.get(parent.file), lowLink.get(frame.file)));
+                }
+                if (lowLink.get(frame.file).equals(index.get(frame.file))) {
+                    Set<String> component = new LinkedHashSet<>();
+                    String file;
+                    do {
+                        file = stack.pop();
+                        onStack.remove(file);
+                        component.add(file);
+                    } while (!file.equals(frame.file));
+                    result.add(component);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Frame visit(String file, Map<String, Integer> index, Map<String, Integer> lowLink,
+                        Deque<String> stack, Set<String> onStack) {
+        int position = index.size();
+        index.put(file, position);
+        lowLink.put(file, position);
+        stack.push(file);
+        onStack.add(file);
+        return new Frame(file, files.get(file).getImports());
+    }
+
+    private static final class Frame {
+
+        private final String file;
+        private final List<String> imports;
+        private int next;
+
+        Frame(String file, List<String> imports) {
+            this.file = file;
+            this.imports = imports;
+        }
+    }
+}
@@ -0,0 +1,875 @@
+package io.protostuff.compiler.parser;
+
+import static io.protostuff.compiler.model.FieldModifier.OPTIONAL;
+import static io.protostuff.compiler.model.FieldModifier.REPEATED;
+import static io.protostuff.compiler.model.FieldModifier.REQUIRED;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_BOOL;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_BYTES;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_DOUBLE;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_ENUM;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_FIXED32;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_FIXED64;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_FLOAT;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_GROUP;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_INT32;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_MESSAGE;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_SFIXED32;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_SFIXED64;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_SINT32;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_SINT64;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_STRING;
+import static io.protostuff.compiler.parser.DescriptorSchema.TYPE_UINT32;
+
+import io.protostuff.compiler.model.AbstractDescriptor;
+import io.protostuff.compiler.model.AbstractElement;
+import io.protostuff.compiler.model.CommentBuffer;
+import io.protostuff.compiler.model.DynamicMessage;
+import io.protostuff.compiler.model.DynamicMessage.Value;
+import io.protostuff.compiler.model.Enum;
+import io.protostuff.compiler.model.EnumConstant;
+import io.protostuff.compiler.model.Extension;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.FieldContainer;
+import io.protostuff.compiler.model.FieldModifier;
+import io.protostuff.compiler.model.Group;
+import io.protostuff.compiler.model.GroupContainer;
+import io.protostuff.compiler.model.Import;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Oneof;
+import io.protostuff.compiler.model.Package;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.model.ProtobufConstants;
+import io.protostuff.compiler.model.Range;
+import io.protostuff.compiler.model.Service;
+import io.protostuff.compiler.model.ServiceMethod;
+import io.protostuff.compiler.model.SourceCodeLocation;
+import io.protostuff.compiler.model.Syntax;
+import io.protostuff.compiler.model.UserType;
+import io.protostuff.compiler.model.UserTypeContainer;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Builds proto file model from a binary {@code FileDescriptorProto}.
+ * Result is the same as parse listeners create from source text of
+ * that file: type references are not resolved, options are not checked,
+ * all of that is done by post-processors.
+ *
+ * <p>Things that are not stored in a descriptor - extend blocks, names of
+ * synthetic map entry types, original spelling of literals - are restored
+ * the way parser would see them in a typical source file.
+ */
+final class DescriptorProtoBuilder {
+
+    private static final int[] ROOT = new int[0];
+
+    // FileDescriptorProto
+    private static final int FILE_PACKAGE = 2;
+    private static final int FILE_DEPENDENCY = 3;
+    private static final int FILE_MESSAGE_TYPE = 4;
+    private static final int FILE_ENUM_TYPE = 5;
+    private static final int FILE_SERVICE = 6;
+    private static final int FILE_EXTENSION = 7;
+    private static final int FILE_OPTIONS = 8;
+    private static final int FILE_SOURCE_CODE_INFO = 9;
+    private static final int FILE_PUBLIC_DEPENDENCY = 10;
+    private static final int FILE_SYNTAX = 12;
+    // DescriptorProto
+    private static final int MESSAGE_NAME = 1;
+    private static final int MESSAGE_FIELD = 2;
+    private static final int MESSAGE_NESTED_TYPE = 3;
+    private static final int MESSAGE_ENUM_TYPE = 4;
+    private static final int MESSAGE_EXTENSION_RANGE = 5;
+    private static final int MESSAGE_EXTENSION = 6;
+    private static final int MESSAGE_OPTIONS = 7;
+    private static final int MESSAGE_ONEOF_DECL = 8;
+    private static final int MESSAGE_RESERVED_RANGE = 9;
+    private static final int MESSAGE_RESERVED_NAME = 10;
+    private static final int MESSAGE_OPTIONS_MAP_ENTRY = 7;
+    // DescriptorProto.ExtensionRange, DescriptorProto.ReservedRange, EnumDescriptorProto.EnumReservedRange
+    private static final int RANGE_START = 1;
+    private static final int RANGE_END = 2;
+    // FieldDescriptorProto
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_EXTENDEE = 2;
+    private static final int FIELD_NUMBER = 3;
+    private static final int FIELD_LABEL = 4;
+    private static final int FIELD_TYPE = 5;
+    private static final int FIELD_TYPE_NAME = 6;
+    private static final int FIELD_DEFAULT_VALUE = 7;
+    private static final int FIELD_OPTIONS = 8;
+    private static final int FIELD_ONEOF_INDEX = 9;
+    private static final int FIELD_PROTO3_OPTIONAL = 17;
+    private static final int LABEL_REQUIRED = 2;
+    private static final int LABEL_REPEATED = 3;
+    // OneofDescriptorProto
+    private static final int ONEOF_NAME = 1;
+    private static final int ONEOF_OPTIONS = 2;
+    // EnumDescriptorProto
+    private static final int ENUM_NAME = 1;
+    private static final int ENUM_VALUE = 2;
+    private static final int ENUM_OPTIONS = 3;
+    private static final int ENUM_RESERVED_RANGE = 4;
+    private static final int ENUM_RESERVED_NAME = 5;
+    // EnumValueDescriptorProto
+    private static final int ENUM_VALUE_NAME = 1;
+    private static final int ENUM_VALUE_NUMBER = 2;
+    private static final int ENUM_VALUE_OPTIONS = 3;
+    // ServiceDescriptorProto
+    private static final int SERVICE_NAME = 1;
+    private static final int SERVICE_METHOD = 2;
+    private static final int SERVICE_OPTIONS = 3;
+    // MethodDescriptorProto
+    private static final int METHOD_NAME = 1;
+    private static final int METHOD_INPUT_TYPE = 2;
+    private static final int METHOD_OUTPUT_TYPE = 3;
+    private static final int METHOD_OPTIONS = 4;
+    private static final int METHOD_CLIENT_STREAMING = 5;
+    private static final int METHOD_SERVER_STREAMING = 6;
+    // SourceCodeInfo
+    private static final int SOURCE_CODE_INFO_LOCATION = 1;
+    private static final int LOCATION_PATH = 1;
+    private static final int LOCATION_SPAN = 2;
+    private static final int LOCATION_LEADING_COMMENTS = 3;
+    private static final int LOCATION_TRAILING_COMMENTS = 4;
+    private static final int LOCATION_LEADING_DETACHED_COMMENTS = 6;
+
+    private static final String PROTO3 = "proto3";
+    private static final double MAX_LONG = 0x1p63;
+
+    private final DescriptorSchema schema;
+    private final String filename;
+    private final WireMessage file;
+    private final ProtoContext context;
+    private final Map<PathKey, WireMessage> locations = new HashMap<>();
+
+    private int[] commentRanges = new int[8];
+    private boolean proto3;
+
+    DescriptorProtoBuilder(DescriptorSchema schema, String filename, WireMessage file) {
+        this.schema = schema;
+        this.filename = filename;
+        this.file = file;
+        this.context = new ProtoContext(filename);
+    }
+
+    /**
+     * Build proto context. Builder can not be reused.
+     */
+    ProtoContext build() {
+        Proto proto = context.getProto();
+        indexLocations();
+        String syntaxName = file.getString(FILE_SYNTAX);
+        if (syntaxName != null) {
+            Syntax syntax = new Syntax(proto, syntaxName);
+            syntax.setSourceCodeLocation(getSourceCodeLocation(getLocation(path(ROOT, FILE_SYNTAX))));
+            proto.setSyntax(syntax);
+            proto3 = PROTO3.equals(syntaxName);
+        }
+        String packageName = file.getString(FILE_PACKAGE);
+        String scope = "";
+        if (packageName != null) {
+            Package pkg = new Package(proto, packageName);
+            pkg.setSourceCodeLocation(getSourceCodeLocation(getLocation(path(ROOT, FILE_PACKAGE))));
+            proto.setPackage(pkg);
+            scope = "." + packageName;
+        }
+        buildImports(proto);
+        decodeOptions(proto, file.getMessage(FILE_OPTIONS), ProtobufConstants.MSG_FILE_OPTIONS);
+        List<WireMessage> extensions = file.getMessages(FILE_EXTENSION);
+        Map<String, Message> nestedTypes = buildMessages(proto, scope, ROOT, FILE_MESSAGE_TYPE,
+                file.getMessages(FILE_MESSAGE_TYPE), getGroupTypes(extensions), Collections.emptyList());
+        buildEnums(proto, ROOT, FILE_ENUM_TYPE, file.getMessages(FILE_ENUM_TYPE));
+        buildExtensions(proto, ROOT, FILE_EXTENSION, extensions, nestedTypes);
+        buildServices(proto);
+        attachProtoComments(proto);
+        context.getCommentBuffer().trimToSize();
+        return context;
+    }
+
+    private void buildImports(Proto proto) {
+        List<String> dependencies = file.getStrings(FILE_DEPENDENCY);
+        Set<Integer> publicDependencies = new HashSet<>();
+        for (int index : file.getInts(FILE_PUBLIC_DEPENDENCY)) {
+            publicDependencies.add(index);
+        }
+        for (int i = 0; i < dependencies.size(); i++) {
+            Import anImport = new Import(proto, dependencies.get(i), publicDependencies.contains(i));
+            anImport.setSourceCodeLocation(getSourceCodeLocation(getLocation(path(ROOT, FILE_DEPENDENCY, i))));
+            proto.addImport(anImport);
+        }
+    }
+
+    /**
+     * Build messages of a given container. Messages that are used as groups
+     * and map entries are returned by their fully qualified names; groups are
+     * not added to the container, they are attached to their fields.
+     */
+    private Map<String, Message> buildMessages(UserTypeContainer container, String scope, int[] path,
+                                               int messageTypeField, List<WireMessage> messageTypes,
+                                               Set<String> groupTypes, List<WireMessage> fields) {
+        Map<String, Integer> mapFields = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            WireMessage field = fields.get(i);
+            if (field.getInt(FIELD_TYPE, 0) == TYPE_MESSAGE && field.getInt(FIELD_LABEL, 0) == LABEL_REPEATED) {
+                mapFields.put(field.getString(FIELD_TYPE_NAME), i);
+            }
+        }
+        Map<String, Message> nestedTypes = new HashMap<>();
+        for (int i = 0; i < messageTypes.size(); i++) {
+            WireMessage messageType = messageTypes.get(i);
+            String fullyQualifiedName = scope + "." + messageType.getString(MESSAGE_NAME);
+            int[] messagePath = path(path, messageTypeField, i);
+            Integer mapField = mapFields.get(fullyQualifiedName);
+            if (groupTypes.contains(fullyQualifiedName)) {
+                Group group = new Group(container);
+                buildMessage(group, fullyQualifiedName, messagePath, messageType);
+                nestedTypes.put(fullyQualifiedName, group);
+            } else if (mapField != null && isMapEntry(messageType)) {
+                Message entry = buildMapEntry((Message) container, messageType, fields.get(mapField),
+                        getLocation(path(path, MESSAGE_FIELD, mapField)));
+                container.addMessage(entry);
+                nestedTypes.put(fullyQualifiedName, entry);
+            } else {
+                Message message = new Message(container);
+                buildMessage(message, fullyQualifiedName, messagePath, messageType);
+                container.addMessage(message);
+                attachComments(message, getLocation(messagePath), false);
+            }
+        }
+        return nestedTypes;
+    }
+
+    private void buildMessage(Message message, String fullyQualifiedName, int[] path, WireMessage descriptor) {
+        message.setName(descriptor.getString(MESSAGE_NAME));
+        message.setSourceCodeLocation(getSourceCodeLocation(getLocation(path)));
+        decodeOptions(message, descriptor.getMessage(MESSAGE_OPTIONS), ProtobufConstants.MSG_MESSAGE_OPTIONS);
+        List<WireMessage> fields = descriptor.getMessages(MESSAGE_FIELD);
+        List<WireMessage> extensions = descriptor.getMessages(MESSAGE_EXTENSION);
+        Set<String> groupTypes = getGroupTypes(fields);
+        groupTypes.addAll(getGroupTypes(extensions));
+        Map<String, Message> nestedTypes = buildMessages(message, fullyQualifiedName, path, MESSAGE_NESTED_TYPE,
+                descriptor.getMessages(MESSAGE_NESTED_TYPE), groupTypes, fields);
+        buildEnums(message, path, MESSAGE_ENUM_TYPE, descriptor.getMessages(MESSAGE_ENUM_TYPE));
+        List<Oneof> oneofs = buildOneofs(message, path, descriptor.getMessages(MESSAGE_ONEOF_DECL), fields);
+        for (int i = 0; i < fields.size(); i++) {
+            WireMessage field = fields.get(i);
+            FieldContainer container = message;
+            if (field.has(FIELD_ONEOF_INDEX) && !field.getBoolean(FIELD_PROTO3_OPTIONAL)) {
+                container = oneofs.get(field.getInt(FIELD_ONEOF_INDEX, 0));
+            }
+            buildField(container, path(path, MESSAGE_FIELD, i), field, nestedTypes);
+        }
+        for (Oneof oneof : oneofs) {
+            if (oneof != null) {
+                message.addOneof(oneof);
+            }
+        }
+        for (Range range : buildRanges(message, path, MESSAGE_EXTENSION_RANGE,
+                descriptor.getMessages(MESSAGE_EXTENSION_RANGE), true)) {
+            message.addExtensionRange(range);
+        }
+        for (Range range : buildRanges(message, path, MESSAGE_RESERVED_RANGE,
+                descriptor.getMessages(MESSAGE_RESERVED_RANGE), true)) {
+            message.addReservedFieldRange(range);
+        }
+        for (String name : descriptor.getStrings(MESSAGE_RESERVED_NAME)) {
+            message.addReservedFieldName(name);
+        }
+        buildExtensions(message, path, MESSAGE_EXTENSION, extensions, nestedTypes);
+    }
+
+    /**
+     * Build synthetic map entry type, named the same way as parser names it.
+     */
+    private Message buildMapEntry(Message parent, WireMessage descriptor, WireMessage mapField,
+                                  @Nullable WireMessage location) {
+        SourceCodeLocation sourceCodeLocation = getSourceCodeLocation(location);
+        Message entry = new Message(parent);
+        entry.setName(mapField.getString(FIELD_NAME) + "_entry");
+        entry.setSourceCodeLocation(sourceCodeLocation);
+        decodeOptions(entry, descriptor.getMessage(MESSAGE_OPTIONS), ProtobufConstants.MSG_MESSAGE_OPTIONS);
+        for (WireMessage fieldDescriptor : descriptor.getMessages(MESSAGE_FIELD)) {
+            Field field = new Field(entry);
+            field.setName(fieldDescriptor.getString(FIELD_NAME));
+            field.setTag(fieldDescriptor.getInt(FIELD_NUMBER, 0));
+            field.setIndex(entry.getFieldCount() + 1);
+            field.setModifier(OPTIONAL);
+            field.setTypeName(getTypeName(fieldDescriptor));
+            field.setSourceCodeLocation(sourceCodeLocation);
+            entry.addField(field);
+        }
+        return entry;
+    }
+
+    private List<Oneof> buildOneofs(Message message, int[] path, List<WireMessage> descriptors,
+                                    List<WireMessage> fields) {
+        boolean[] synthetic = new boolean[descriptors.size()];
+        for (WireMessage field : fields) {
+            if (field.getBoolean(FIELD_PROTO3_OPTIONAL)) {
+                int index = field.getInt(FIELD_ONEOF_INDEX, -1);
+                if (index >= 0 && index < synthetic.length) {
+                    synthetic[index] = true;
+                }
+            }
+        }
+        List<Oneof> oneofs = new ArrayList<>(descriptors.size());
+        for (int i = 0; i < descriptors.size(); i++) {
+            if (synthetic[i]) {
+                // proto3 optional field, there is no oneof in a source file
+                oneofs.add(null);
+                continue;
+            }
+            WireMessage descriptor = descriptors.get(i);
+            WireMessage location = getLocation(path(path, MESSAGE_ONEOF_DECL, i));
+            Oneof oneof = new Oneof(message);
+            oneof.setName(descriptor.getString(ONEOF_NAME));
+            oneof.setSourceCodeLocation(getSourceCodeLocation(location));
+            decodeOptions(oneof, descriptor.getMessage(ONEOF_OPTIONS), ProtobufConstants.MSG_ONEOF_OPTIONS);
+            attachComments(oneof, location, false);
+            oneofs.add(oneof);
+        }
+        return oneofs;
+    }
+
+    private void buildField(FieldContainer container, int[] path, WireMessage descriptor,
+                            Map<String, Message> nestedTypes) {
+        WireMessage location = getLocation(path);
+        Field field = new Field(container);
+        field.setName(descriptor.getString(FIELD_NAME));
+        field.setTag(descriptor.getInt(FIELD_NUMBER, 0));
+        field.setIndex(container.getFieldCount() + 1);
+        field.setSourceCodeLocation(getSourceCodeLocation(location));
+        int type = descriptor.getInt(FIELD_TYPE, 0);
+        String typeName = descriptor.getString(FIELD_TYPE_NAME);
+        Message nestedType = typeName == null ? null : nestedTypes.get(typeName);
+        if (nestedType instanceof Group) {
+            // group field does not have a modifier in parsed model
+            field.setTypeName(nestedType.getName());
+            field.setType(nestedType);
+            ((GroupContainer) container).addGroup((Group) nestedType);
+        } else if (nestedType != null) {
+            field.setModifier(REPEATED);
+            field.setTypeName(nestedType.getName());
+            field.setType(nestedType);
+        } else {
+            field.setModifier(getModifier(container, descriptor));
+            field.setTypeName(getTypeName(descriptor));
+            String defaultValue = descriptor.getString(FIELD_DEFAULT_VALUE);
+            if (defaultValue != null) {
+                field.getOptions().set(field.getSourceCodeLocation(), OptionsPostProcessor.DEFAULT,
+                        getDefaultValue(type, defaultValue, field.getSourceCodeLocation()));
+            }
+        }
+        decodeOptions(field, descriptor.getMessage(FIELD_OPTIONS), ProtobufConstants.MSG_FIELD_OPTIONS);
+        container.addField(field);
+        attachComments(field, location, true);
+    }
+
+    @Nullable
+    private FieldModifier getModifier(FieldContainer container, WireMessage descriptor) {
+        int label = descriptor.getInt(FIELD_LABEL, 0);
+        if (label == LABEL_REQUIRED) {
+            return REQUIRED;
+        }
+        if (label == LABEL_REPEATED) {
+            return REPEATED;
+        }
+        if (descriptor.getBoolean(FIELD_PROTO3_OPTIONAL)) {
+            return OPTIONAL;
+        }
+        if (container instanceof Oneof || proto3) {
+            return null;
+        }
+        return OPTIONAL;
+    }
+
+    private String getTypeName(WireMessage descriptor) {
+        String scalarTypeName = DescriptorSchema.getScalarTypeName(descriptor.getInt(FIELD_TYPE, 0));
+        if (scalarTypeName != null) {
+            return scalarTypeName;
+        }
+        return descriptor.getString(FIELD_TYPE_NAME);
+    }
+
+    /**
+     * Extension fields are stored in a descriptor without their extend blocks,
+     * consecutive fields of the same extendee are put into a single block.
+     */
+    private void buildExtensions(UserTypeContainer container, int[] path, int extensionField,
+                                 List<WireMessage> descriptors, Map<String, Message> nestedTypes) {
+        Extension extension = null;
+        for (int i = 0; i < descriptors.size(); i++) {
+            WireMessage descriptor = descriptors.get(i);
+            String extendee = descriptor.getString(FIELD_EXTENDEE);
+            int[] fieldPath = path(path, extensionField, i);
+            if (extension == null || !extension.getExtendeeName().equals(extendee)) {
+                extension = new Extension(container);
+                extension.setExtendeeName(extendee);
+                extension.setSourceCodeLocation(getSourceCodeLocation(getLocation(fieldPath)));
+                container.addDeclaredExtension(extension);
+            }
+            buildField(extension, fieldPath, descriptor, nestedTypes);
+        }
+    }
+
+    private void buildEnums(UserTypeContainer container, int[] path, int enumTypeField, List<WireMessage> descriptors) {
+        for (int i = 0; i < descriptors.size(); i++) {
+            WireMessage descriptor = descriptors.get(i);
+            int[] enumPath = path(path, enumTypeField, i);
+            WireMessage location = getLocation(enumPath);
+            Enum anEnum = new Enum(container);
+            anEnum.setName(descriptor.getString(ENUM_NAME));
+            anEnum.setSourceCodeLocation(getSourceCodeLocation(location));
+            decodeOptions(anEnum, descriptor.getMessage(ENUM_OPTIONS), ProtobufConstants.MSG_ENUM_OPTIONS);
+            List<WireMessage> values = descriptor.getMessages(ENUM_VALUE);
+            for (int j = 0; j < values.size(); j++) {
+                WireMessage value = values.get(j);
+                WireMessage valueLocation = getLocation(path(enumPath, ENUM_VALUE, j));
+                EnumConstant constant = new EnumConstant(anEnum);
+                constant.setName(value.getString(ENUM_VALUE_NAME));
+                constant.setValue(value.getInt(ENUM_VALUE_NUMBER, 0));
+                constant.setSourceCodeLocation(getSourceCodeLocation(valueLocation));
+                decodeOptions(constant, value.getMessage(ENUM_VALUE_OPTIONS),
+                        ProtobufConstants.MSG_ENUM_VALUE_OPTIONS);
+                anEnum.addConstant(constant);
+                attachComments(constant, valueLocation, true);
+            }
+            for (Range range : buildRanges(anEnum, enumPath, ENUM_RESERVED_RANGE,
+                    descriptor.getMessages(ENUM_RESERVED_RANGE), false)) {
+                anEnum.addReservedFieldRange(range);
+            }
+            for (String name : descriptor.getStrings(ENUM_RESERVED_NAME)) {
+                anEnum.addReservedFieldName(name);
+            }
+            container.addEnum(anEnum);
+            attachComments(anEnum, location, false);
+        }
+    }
+
+    /**
+     * Build field ranges. Message ranges are stored with exclusive end,
+     * enum ranges - with inclusive end.
+     */
+    private List<Range> buildRanges(UserType parent, int[] path, int rangeField, List<WireMessage> descriptors,
+                                    boolean exclusiveEnd) {
+        List<Range> ranges = new ArrayList<>(descriptors.size());
+        for (int i = 0; i < descriptors.size(); i++) {
+            WireMessage descriptor = descriptors.get(i);
+            int from = descriptor.getInt(RANGE_START, 0);
+            int to = descriptor.getInt(RANGE_END, 0);
+            if (exclusiveEnd) {
+                to--;
+            }
+            if (to > Field.MAX_TAG_VALUE) {
+                // "max" of enum ranges
+                to = Field.MAX_TAG_VALUE;
+            }
+            Range range = new Range(parent, from, to);
+            range.setSourceCodeLocation(getSourceCodeLocation(getLocation(path(path, rangeField, i))));
+            ranges.add(range);
+        }
+        return ranges;
+    }
+
+    private void buildServices(Proto proto) {
+        List<WireMessage> descriptors = file.getMessages(FILE_SERVICE);
+        for (int i = 0; i < descriptors.size(); i++) {
+            WireMessage descriptor = descriptors.get(i);
+            int[] servicePath = path(ROOT, FILE_SERVICE, i);
+            WireMessage location = getLocation(servicePath);
+            Service service = new Service(proto);
+            service.setName(descriptor.getString(SERVICE_NAME));
+            service.setSourceCodeLocation(getSourceCodeLocation(location));
+            decodeOptions(service, descriptor.getMessage(SERVICE_OPTIONS), ProtobufConstants.MSG_SERVICE_OPTIONS);
+            List<WireMessage> methods = descriptor.getMessages(SERVICE_METHOD);
+            for (int j = 0; j < methods.size(); j++) {
+                WireMessage methodDescriptor = methods.get(j);
+                WireMessage methodLocation = getLocation(path(servicePath, SERVICE_METHOD, j));
+                ServiceMethod method = new ServiceMethod(service);
+                method.setName(methodDescriptor.getString(METHOD_NAME));
+                method.setArgTypeName(methodDescriptor.getString(METHOD_INPUT_TYPE));
+                method.setArgStream(methodDescriptor.getBoolean(METHOD_CLIENT_STREAMING));
+                method.setReturnTypeName(methodDescriptor.getString(METHOD_OUTPUT_TYPE));
+                method.setReturnStream(methodDescriptor.getBoolean(METHOD_SERVER_STREAMING));
+                method.setSourceCodeLocation(getSourceCodeLocation(methodLocation));
+                decodeOptions(method, methodDescriptor.getMessage(METHOD_OPTIONS),
+                        ProtobufConstants.MSG_METHOD_OPTIONS);
+                service.addMethod(method);
+                attachComments(method, methodLocation, true);
+            }
+            proto.addService(service);
+            attachComments(service, location, false);
+        }
+    }
+
+    private static Set<String> getGroupTypes(List<WireMessage> fields) {
+        Set<String> result = new HashSet<>();
+        for (WireMessage field : fields) {
+            if (field.getInt(FIELD_TYPE, 0) == TYPE_GROUP) {
+                result.add(field.getString(FIELD_TYPE_NAME));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isMapEntry(WireMessage messageType) {
+        WireMessage options = messageType.getMessage(MESSAGE_OPTIONS);
+        return options != null && options.getBoolean(MESSAGE_OPTIONS_MAP_ENTRY);
+    }
+
+    /**
+     * Convert default value, as protoc writes it, to an option value.
+     */
+    private static Value getDefaultValue(int type, String value, SourceCodeLocation location) {
+        switch (type) {
+            case TYPE_STRING:
+                return Value.createString(location, escape(value));
+            case TYPE_BYTES:
+                // bytes default value is already escaped
+                return Value.createString(location, value);
+            case TYPE_BOOL:
+                return Value.createBoolean(location, Boolean.parseBoolean(value));
+            case TYPE_ENUM:
+                return Value.createEnum(location, value);
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                if ("inf".equals(value)) {
+                    return Value.createFloat(location, Double.POSITIVE_INFINITY);
+                } else if ("-inf".equals(value)) {
+                    return Value.createFloat(location, Double.NEGATIVE_INFINITY);
+                } else if ("nan".equals(value)) {
+                    return Value.createFloat(location, Double.NaN);
+                }
+                return createNumber(location, Double.parseDouble(value));
+            default:
+                return Value.createInteger(location, new BigInteger(value).longValue());
+        }
+    }
+
+    private void decodeOptions(AbstractDescriptor descriptor, @Nullable WireMessage options, String optionsType) {
+        if (options != null) {
+            decodeMessage(descriptor.getOptions(), options, optionsType, descriptor.getSourceCodeLocation());
+        }
+    }
+
+    private void decodeMessage(DynamicMessage target, WireMessage message, String messageType,
+                               SourceCodeLocation location) {
+        for (int i = 0; i < message.size(); i++) {
+            int number = message.numberAt(i);
+            DescriptorSchema.FieldInfo field = schema.getField(messageType, number);
+            if (field == null) {
+                // option is declared in a file that is not in the descriptor set
+                throw new ParserException("Unknown field %d of %s, descriptor set should include "
+                        + "all imports (protoc --include_imports) [%s]", number, messageType, location);
+            }
+            int type = field.getType();
+            if (message.wireTypeAt(i) == WireMessage.LENGTH_DELIMITED && isPackable(type)) {
+                for (long item : getPackedValues(message, i, type)) {
+                    setValue(target, field, decodeScalar(field, item, location), location);
+                }
+            } else if (type == TYPE_STRING) {
+                setValue(target, field, Value.createString(location, escape(message.stringAt(i))), location);
+            } else if (type == TYPE_BYTES) {
+                setValue(target, field, Value.createString(location, escape(message.bytesAt(i))), location);
+            } else if (type == TYPE_MESSAGE) {
+                DynamicMessage value = new DynamicMessage();
+                decodeMessage(value, message.messageAt(i), field.getTypeName(), location);
+                setValue(target, field, Value.createMessage(location, value), location);
+            } else {
+                setValue(target, field, decodeScalar(field, message.longAt(i), location), location);
+            }
+        }
+    }
+
+    private void setValue(DynamicMessage target, DescriptorSchema.FieldInfo field, Value value,
+                          SourceCodeLocation location) {
+        target.set(location, field.getPath(), value);
+    }
+
+    private Value decodeScalar(DescriptorSchema.FieldInfo field, long value, SourceCodeLocation location) {
+        switch (field.getType()) {
+            case TYPE_DOUBLE:
+                return createNumber(location, Double.longBitsToDouble(value));
+            case TYPE_FLOAT:
+                // shortest decimal representation of a float, as it was written in a source file
+                float floatValue = Float.intBitsToFloat((int) value);
+                return createNumber(location, Double.parseDouble(Float.toString(floatValue)));
+            case TYPE_INT32:
+            case TYPE_SFIXED32:
+                return Value.createInteger(location, (int) value);
+            case TYPE_UINT32:
+            case TYPE_FIXED32:
+                return Value.createInteger(location, value & 0xFFFFFFFFL);
+            case TYPE_SINT32:
+                return Value.createInteger(location, ((int) value >>> 1) ^ -((int) value & 1));
+            case TYPE_SINT64:
+                return Value.createInteger(location, (value >>> 1) ^ -(value & 1));
+            case TYPE_BOOL:
+                return Value.createBoolean(location, value != 0);
+            case TYPE_ENUM:
+                String name = schema.getEnumConstant(field.getTypeName(), (int) value);
+                if (name == null) {
+                    throw new ParserException("Unknown value %d of %s [%s]", value, field.getTypeName(), location);
+                }
+                return Value.createEnum(location, name);
+            case TYPE_GROUP:
+                throw new ParserException("Group option values are not supported: %s [%s]",
+                        field.getPath(), location);
+            default:
+                return Value.createInteger(location, value);
+        }
+    }
+
+    /**
+     * Integral numbers are parsed as integer values, other numbers - as float values.
+     */
+    private static Value createNumber(SourceCodeLocation location, double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_LONG) {
+            return Value.createInteger(location, (long) value);
+        }
+        return Value.createFloat(location, value);
+    }
+
+    private static boolean isPackable(int type) {
+        return type != TYPE_STRING && type != TYPE_BYTES && type != TYPE_MESSAGE && type != TYPE_GROUP;
+    }
+
+    private static long[] getPackedValues(WireMessage message, int index, int type) {
+        switch (type) {
+            case TYPE_DOUBLE:
+            case TYPE_FIXED64:
+            case TYPE_SFIXED64:
+                return message.packedFixedAt(index, Long.BYTES);
+            case TYPE_FLOAT:
+            case TYPE_FIXED32:
+            case TYPE_SFIXED32:
+                return message.packedFixedAt(index, Integer.BYTES);
+            default:
+                return message.packedVarintsAt(index);
+        }
+    }
+
+    /**
+     * Escape string the way it is usually written in a proto file.
+     */
+    static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length() + 8);
+        result.append(value, 0, i);
+        for (; i < value.length(); i++) {
+            appendEscaped(result, value.charAt(i));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Escape bytes value, non-ASCII bytes are written as octal escape sequences.
+     */
+    static String escape(byte[] value) {
+        StringBuilder result = new StringBuilder(value.length);
+        for (byte b : value) {
+            int c = b & 0xFF;
+            if (c >= 0x80) {
+                appendOctal(result, c);
+            } else {
+                appendEscaped(result, (char) c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c < ' ' || c == '"' || c == '\\' || c == 0x7F;
+    }
+
+    private static void appendEscaped(StringBuilder result, char c) {
+        switch (c) {
+            case '\n':
+                result.append("\\n");
+                break;
+            case '\r':
+                result.append("\\r");
+                break;
+            case '\t':
+                result.append("\\t");
+                break;
+            case '"':
+                result.append("\\\"");
+                break;
+            case '\\':
+                result.append("\\\\");
+                break;
+            default:
+                if (needsEscape(c)) {
+                    appendOctal(result, c);
+                } else {
+                    result.append(c);
+                }
+        }
+    }
+
+    private static void appendOctal(StringBuilder result, int c) {
+        result.append('\\')
+                .append((char) ('0' + (c >> 6)))
+                .append((char) ('0' + ((c >> 3) & 7)))
+                .append((char) ('0' + (c & 7)));
+    }
+
+    private void indexLocations() {
+        WireMessage sourceCodeInfo = file.getMessage(FILE_SOURCE_CODE_INFO);
+        if (sourceCodeInfo == null) {
+            return;
+        }
+        for (WireMessage location : sourceCodeInfo.getMessages(SOURCE_CODE_INFO_LOCATION)) {
+            // first location wins, following ones (if any) are for parts of an element
+            locations.putIfAbsent(new PathKey(location.getInts(LOCATION_PATH)), location);
+        }
+    }
+
+    @Nullable
+    private WireMessage getLocation(int[] path) {
+        if (locations.isEmpty()) {
+            return null;
+        }
+        return locations.get(new PathKey(path));
+    }
+
+    private SourceCodeLocation getSourceCodeLocation(@Nullable WireMessage location) {
+        int line = 0;
+        if (location != null) {
+            int[] span = location.getInts(LOCATION_SPAN);
+            if (span.length > 0) {
+                line = span[0] + 1;
+            }
+        }
+        return new SourceCodeLocation(filename, line);
+    }
+
+    /**
+     * Proto file comment is a first comment block of a file, that is not
+     * attached to a message, enum or service.
+     */
+    private void attachProtoComments(Proto proto) {
+        WireMessage location = getLocation(path(ROOT, FILE_SYNTAX));
+        if (location == null) {
+            location = getLocation(path(ROOT, FILE_PACKAGE));
+        }
+        if (location == null) {
+            return;
+        }
+        List<String> detached = location.getStrings(LOCATION_LEADING_DETACHED_COMMENTS);
+        String comment = detached.isEmpty() ? location.getString(LOCATION_LEADING_COMMENTS) : detached.get(0);
+        if (comment != null) {
+            int count = appendComment(comment, 0);
+            proto.setComments(context.getCommentBuffer(), Arrays.copyOf(commentRanges, 2 * count));
+        }
+    }
+
+    /**
+     * Attach detached and leading comments of an element, as well as trailing
+     * comment if requested, same way parser does for line comments.
+     */
+    private void attachComments(AbstractElement element, @Nullable WireMessage location, boolean addTrailingComment) {
+        if (location == null) {
+            return;
+        }
+        int count = 0;
+        for (String comment : location.getStrings(LOCATION_LEADING_DETACHED_COMMENTS)) {
+            count = appendComment(comment, count);
+        }
+        String leading = location.getString(LOCATION_LEADING_COMMENTS);
+        if (leading != null) {
+            count = appendComment(leading, count);
+        }
+        if (addTrailingComment) {
+            String trailing = location.getString(LOCATION_TRAILING_COMMENTS);
+            if (trailing != null) {
+                count = appendComment(trailing, count);
+            }
+        }
+        if (count > 0) {
+            element.setComments(context.getCommentBuffer(), Arrays.copyOf(commentRanges, 2 * count));
+        }
+    }
+
+    /**
+     * Append lines of a comment to the comment buffer, without trailing whitespaces.
+     *
+     * @return number of comment ranges
+     */
+    private int appendComment(String comment, int count) {
+        CommentBuffer buffer = context.getCommentBuffer();
+        int start = 0;
+        int result = count;
+        while (start < comment.length()) {
+            int end = comment.indexOf('\n', start);
+            if (end < 0) {
+                end = comment.length();
+            }
+            final int next = end + 1;
+            while (end > start && comment.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (commentRanges.length < 2 * (result + 1)) {
+                commentRanges = Arrays.copyOf(commentRanges, 2 * commentRanges.length);
+            }
+            commentRanges[2 * result] = buffer.append(comment, start, end);
+            commentRanges[2 * result + 1] = buffer.length();
+            result++;
+            start = next;
+        }
+        return result;
+    }
+
+    private static int[] path(int[] parent, int field) {
+        int[] result = Arrays.copyOf(parent, parent.length + 1);
+        result[parent.length] = field;
+        return result;
+    }
+
+    private static int[] path(int[] parent, int field, int index) {
+        int[] result = Arrays.copyOf(parent, parent.length + 2);
+        result[parent.length] = field;
+        result[parent.length + 1] = index;
+        return result;
+    }
+
+    /**
+     * Path of an element in a file descriptor, as used by source code info.
+     */
+    private static final class PathKey {
+
+        private final int[] path;
+        private final int hash;
+
+        PathKey(int[] path) {
+            this.path = path;
+            this.hash = Arrays.hashCode(path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PathKey && Arrays.equals(path, ((PathKey) o).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
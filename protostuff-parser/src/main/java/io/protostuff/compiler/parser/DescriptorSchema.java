@@ -0,0 +1,251 @@
+package io.protostuff.compiler.parser;
+
+import io.protostuff.compiler.model.Enum;
+import io.protostuff.compiler.model.EnumConstant;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.FieldType;
+import io.protostuff.compiler.model.Group;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.OptionPath;
+import io.protostuff.compiler.model.ScalarFieldType;
+import io.protostuff.compiler.model.UserType;
+import io.protostuff.compiler.model.UserTypeContainer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+
+/**
+ * Field and enum types of a descriptor set, indexed by fully qualified
+ * type name. Used to decode binary option values; extensions are
+ * registered as fields of their extendee.
+ */
+final class DescriptorSchema {
+
+    // FieldDescriptorProto.Type
+    static final int TYPE_DOUBLE = 1;
+    static final int TYPE_FLOAT = 2;
+    static final int TYPE_INT64 = 3;
+    static final int TYPE_UINT64 = 4;
+    static final int TYPE_INT32 = 5;
+    static final int TYPE_FIXED64 = 6;
+    static final int TYPE_FIXED32 = 7;
+    static final int TYPE_BOOL = 8;
+    static final int TYPE_STRING = 9;
+    static final int TYPE_GROUP = 10;
+    static final int TYPE_MESSAGE = 11;
+    static final int TYPE_BYTES = 12;
+    static final int TYPE_UINT32 = 13;
+    static final int TYPE_ENUM = 14;
+    static final int TYPE_SFIXED32 = 15;
+    static final int TYPE_SFIXED64 = 16;
+    static final int TYPE_SINT32 = 17;
+    static final int TYPE_SINT64 = 18;
+
+    /**
+     * Names of scalar types, indexed by type number.
+     */
+    private static final String[] SCALAR_TYPE_NAMES = {
+            null, "double", "float", "int64", "uint64", "int32", "fixed64", "fixed32", "bool",
+            "string", null, null, "bytes", "uint32", null, "sfixed32", "sfixed64", "sint32", "sint64"
+    };
+
+    private static final String DESCRIPTOR_PROTO = "google/protobuf/descriptor.proto";
+
+    // FileDescriptorProto
+    private static final int FILE_NAME = 1;
+    private static final int FILE_PACKAGE = 2;
+    private static final int FILE_MESSAGE_TYPE = 4;
+    private static final int FILE_ENUM_TYPE = 5;
+    private static final int FILE_EXTENSION = 7;
+    // DescriptorProto
+    private static final int MESSAGE_NAME = 1;
+    private static final int MESSAGE_FIELD = 2;
+    private static final int MESSAGE_NESTED_TYPE = 3;
+    private static final int MESSAGE_ENUM_TYPE = 4;
+    private static final int MESSAGE_EXTENSION = 6;
+    // FieldDescriptorProto
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_EXTENDEE = 2;
+    private static final int FIELD_NUMBER = 3;
+    private static final int FIELD_TYPE = 5;
+    private static final int FIELD_TYPE_NAME = 6;
+    // EnumDescriptorProto
+    private static final int ENUM_NAME = 1;
+    private static final int ENUM_VALUE = 2;
+    private static final int ENUM_VALUE_NAME = 1;
+    private static final int ENUM_VALUE_NUMBER = 2;
+
+    private final Map<String, Map<Integer, FieldInfo>> messages = new HashMap<>();
+    private final Map<String, Map<Integer, String>> enums = new HashMap<>();
+
+    private DescriptorSchema() {
+    }
+
+    /**
+     * Create schema for given {@code FileDescriptorProto}'s. If there is no
+     * {@code descriptor.proto} among them, standard option types are taken
+     * from a given provider.
+     */
+    static DescriptorSchema create(Collection<WireMessage> files, Provider<ProtoContext> descriptorProto) {
+        DescriptorSchema schema = new DescriptorSchema();
+        boolean hasDescriptorProto = false;
+        for (WireMessage file : files) {
+            hasDescriptorProto |= DESCRIPTOR_PROTO.equals(file.getString(FILE_NAME));
+            String pkg = file.getString(FILE_PACKAGE);
+            String scope = pkg == null || pkg.isEmpty() ? "" : "." + pkg;
+            schema.addTypes(scope, file.getMessages(FILE_MESSAGE_TYPE), file.getMessages(FILE_ENUM_TYPE),
+                    file.getMessages(FILE_EXTENSION));
+        }
+        if (!hasDescriptorProto) {
+            schema.addTypes(descriptorProto.get().getProto());
+        }
+        return schema;
+    }
+
+    /**
+     * Returns name of a scalar type for a given type number, or null
+     * if it is not a scalar type.
+     */
+    @Nullable
+    static String getScalarTypeName(int type) {
+        if (type < 0 || type >= SCALAR_TYPE_NAMES.length) {
+            return null;
+        }
+        return SCALAR_TYPE_NAMES[type];
+    }
+
+    /**
+     * Returns field or extension of a given message type.
+     */
+    @Nullable
+    FieldInfo getField(String messageType, int number) {
+        Map<Integer, FieldInfo> fields = messages.get(messageType);
+        return fields == null ? null : fields.get(number);
+    }
+
+    /**
+     * Returns name of a constant of a given enum type.
+     */
+    @Nullable
+    String getEnumConstant(String enumType, int number) {
+        Map<Integer, String> constants = enums.get(enumType);
+        return constants == null ? null : constants.get(number);
+    }
+
+    private void addTypes(String scope, List<WireMessage> messageTypes, List<WireMessage> enumTypes,
+                          List<WireMessage> extensions) {
+        for (WireMessage messageType : messageTypes) {
+            String fullyQualifiedName = scope + "." + messageType.getString(MESSAGE_NAME);
+            Map<Integer, FieldInfo> fields = messages.computeIfAbsent(fullyQualifiedName, name -> new HashMap<>());
+            for (WireMessage field : messageType.getMessages(MESSAGE_FIELD)) {
+                String name = field.getString(FIELD_NAME);
+                fields.put(field.getInt(FIELD_NUMBER, 0), new FieldInfo(OptionPath.of(name),
+                        field.getInt(FIELD_TYPE, 0), field.getString(FIELD_TYPE_NAME)));
+            }
+            addTypes(fullyQualifiedName, messageType.getMessages(MESSAGE_NESTED_TYPE),
+                    messageType.getMessages(MESSAGE_ENUM_TYPE), messageType.getMessages(MESSAGE_EXTENSION));
+        }
+        for (WireMessage enumType : enumTypes) {
+            String fullyQualifiedName = scope + "." + enumType.getString(ENUM_NAME);
+            Map<Integer, String> constants = enums.computeIfAbsent(fullyQualifiedName, name -> new HashMap<>());
+            for (WireMessage value : enumType.getMessages(ENUM_VALUE)) {
+                // first constant wins for aliases, same as in protoc
+                constants.putIfAbsent(value.getInt(ENUM_VALUE_NUMBER, 0), value.getString(ENUM_VALUE_NAME));
+            }
+        }
+        for (WireMessage extension : extensions) {
+            String fullyQualifiedName = scope + "." + extension.getString(FIELD_NAME);
+            String extendee = extension.getString(FIELD_EXTENDEE);
+            messages.computeIfAbsent(extendee, name -> new HashMap<>())
+                    .put(extension.getInt(FIELD_NUMBER, 0), new FieldInfo(OptionPath.of("(" + fullyQualifiedName + ")"),
+                            extension.getInt(FIELD_TYPE, 0), extension.getString(FIELD_TYPE_NAME)));
+        }
+    }
+
+    /**
+     * Add types of an already parsed proto file.
+     */
+    private void addTypes(UserTypeContainer container) {
+        for (Message message : container.getMessages()) {
+            addMessage(message);
+        }
+        for (Enum anEnum : container.getEnums()) {
+            Map<Integer, String> constants = enums.computeIfAbsent(anEnum.getFullyQualifiedName(),
+                    name -> new HashMap<>());
+            for (EnumConstant constant : anEnum.getConstants()) {
+                constants.putIfAbsent(constant.getValue(), constant.getName());
+            }
+        }
+    }
+
+    private void addMessage(Message message) {
+        Map<Integer, FieldInfo> fields = messages.computeIfAbsent(message.getFullyQualifiedName(),
+                name -> new HashMap<>());
+        for (Field field : message.getFields()) {
+            FieldType type = field.getType();
+            String typeName = type instanceof UserType ? ((UserType) type).getFullyQualifiedName() : null;
+            fields.put(field.getTag(), new FieldInfo(OptionPath.of(field.getName()), getType(type), typeName));
+        }
+        for (Group group : message.getGroups()) {
+            addMessage(group);
+        }
+        addTypes(message);
+    }
+
+    private static int getType(FieldType type) {
+        if (type instanceof ScalarFieldType) {
+            String name = ((ScalarFieldType) type).getName();
+            for (int i = 0; i < SCALAR_TYPE_NAMES.length; i++) {
+                if (name.equals(SCALAR_TYPE_NAMES[i])) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Unknown field type: " + type);
+        }
+        if (type instanceof Enum) {
+            return TYPE_ENUM;
+        }
+        if (type instanceof Group) {
+            return TYPE_GROUP;
+        }
+        return TYPE_MESSAGE;
+    }
+
+    /**
+     * Type of a message field or of an extension.
+     */
+    static final class FieldInfo {
+
+        private final OptionPath path;
+        private final int type;
+        private final String typeName;
+
+        FieldInfo(OptionPath path, int type, @Nullable String typeName) {
+            this.path = path;
+            this.type = type;
+            this.typeName = typeName;
+        }
+
+        /**
+         * Option name of this field, in parentheses for extensions.
+         */
+        OptionPath getPath() {
+            return path;
+        }
+
+        int getType() {
+            return type;
+        }
+
+        /**
+         * Fully qualified name of enum or message type.
+         */
+        @Nullable
+        String getTypeName() {
+            return typeName;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.protostuff.compiler.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+
+/**
+ * Binary {@code google.protobuf.FileDescriptorSet}, as produced by
+ * {@code protoc --descriptor_set_out}. Proto files from a descriptor set
+ * are loaded without lexing and parsing, see {@link DescriptorSetFileReader}.
+ */
+public final class DescriptorSet {
+
+    private static final int FILE = 1;
+    private static final int FILE_NAME = 1;
+
+    private final Map<String, WireMessage> files;
+
+    /**
+     * Types that are used to decode options, built on first use.
+     */
+    private volatile DescriptorSchema schema;
+
+    private DescriptorSet(Map<String, WireMessage> files) {
+        this.files = files;
+    }
+
+    /**
+     * Read descriptor set from a given file.
+     *
+     * @throws ParserException if file can not be read or is not a valid descriptor set
+     */
+    public static DescriptorSet read(Path path) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new ParserException("Could not read descriptor set %s: %s", path, e.getMessage());
+        }
+        return parse(bytes);
+    }
+
+    /**
+     * Parse descriptor set from a given serialized {@code FileDescriptorSet}.
+     *
+     * @throws ParserException if given bytes are not a valid descriptor set
+     */
+    public static DescriptorSet parse(byte[] bytes) {
+        WireMessage set = WireMessage.parse(bytes);
+        Map<String, WireMessage> files = new LinkedHashMap<>();
+        for (WireMessage file : set.getMessages(FILE)) {
+            String name = file.getString(FILE_NAME);
+            if (name == null) {
+                throw new ParserException("Invalid descriptor set: file name is not set");
+            }
+            files.put(name, file);
+        }
+        return new DescriptorSet(files);
+    }
+
+    /**
+     * Merge given descriptor sets. If a file is in multiple sets,
+     * it is taken from the first one.
+     */
+    public static DescriptorSet merge(List<DescriptorSet> descriptorSets) {
+        if (descriptorSets.size() == 1) {
+            return descriptorSets.get(0);
+        }
+        Map<String, WireMessage> files = new LinkedHashMap<>();
+        for (DescriptorSet descriptorSet : descriptorSets) {
+            descriptorSet.files.forEach(files::putIfAbsent);
+        }
+        return new DescriptorSet(files);
+    }
+
+    public boolean contains(String filename) {
+        return files.containsKey(filename);
+    }
+
+    /**
+     * Returns names of all files in this descriptor set, in the order they were written.
+     */
+    public Set<String> getFileNames() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    @Nullable
+    WireMessage getFile(String filename) {
+        return files.get(filename);
+    }
+
+    /**
+     * Returns option types of this descriptor set. Standard option types are
+     * taken from a given {@code descriptor.proto} if it is not in this set.
+     */
+    DescriptorSchema getSchema(Provider<ProtoContext> descriptorProto) {
+        DescriptorSchema result = schema;
+        if (result == null) {
+            // not synchronized: descriptor.proto might be loaded by a parser thread
+            // that waits for this one; concurrent builds give the same result
+            result = DescriptorSchema.create(files.values(), descriptorProto);
+            schema = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package io.protostuff.compiler.parser;
+
+import javax.annotation.Nullable;
+import org.antlr.v4.runtime.CharStream;
+
+/**
+ * File reader for proto files from a binary {@link DescriptorSet}.
+ *
+ * <p>Files that are in the descriptor set are built by a loader directly
+ * from their descriptors, without lexing and parsing; other files (for
+ * example, {@code google/protobuf/descriptor.proto} when it is not included
+ * into the set) are read as source text using a delegate reader.
+ */
+public class DescriptorSetFileReader implements FileReader {
+
+    private final DescriptorSet descriptorSet;
+
+    private final FileReader delegate;
+
+    /**
+     * Create reader for a given descriptor set. Files that are not in
+     * the set are read from classpath.
+     */
+    public DescriptorSetFileReader(DescriptorSet descriptorSet) {
+        this(descriptorSet, new ClasspathFileReader());
+    }
+
+    public DescriptorSetFileReader(DescriptorSet descriptorSet, FileReader delegate) {
+        this.descriptorSet = descriptorSet;
+        this.delegate = delegate;
+    }
+
+    public DescriptorSet getDescriptorSet() {
+        return descriptorSet;
+    }
+
+    /**
+     * Read source text of a given file using delegate reader. Files from
+     * the descriptor set do not have source text, unless delegate has it.
+     */
+    @Nullable
+    @Override
+    public CharStream read(String name) {
+        return delegate.read(name);
+    }
+}
@@ -0,0 +1,363 @@
+package io.protostuff.compiler.parser;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.protostuff.compiler.model.Proto;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parse cache that stores serialized proto file models in a directory.
+ *
+ * <p>Entries are addressed by a hash of compiler build, file name and file
+ * content. Compiler build is identified by a hash of the jar (or classes
+ * directory) that contains parser and model classes, so entries written by
+ * any other build, including development builds of the same version, are
+ * never read. Parsed model does not depend on imported files - types are
+ * resolved later by post-processors - so imports are not a part of the key.
+ *
+ * <p>Entries that are older than given age are removed when cache is opened,
+ * after that oldest entries are removed until total size fits into given limit.
+ * Size limit is checked again after new entries are written.
+ *
+ * <p>Only model classes and few JDK classes they use can be deserialized
+ * from cache entries. When a model can not be serialized, cache is disabled
+ * until the end of a JVM lifetime, as all following writes would fail too.
+ */
+public final class DiskParseCache implements ParseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskParseCache.class);
+
+    private static final String SUFFIX = ".ser";
+
+    private static final ConcurrentMap<Path, DiskParseCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private static final String MODEL_PACKAGE = Proto.class.getPackage().getName();
+
+    private static final Set<String> ALLOWED_JDK_CLASSES = ImmutableSet.of(
+            "java.lang.Enum",
+            "java.lang.Number",
+            "java.lang.Boolean",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Float",
+            "java.lang.Double",
+            "java.lang.StringBuilder",
+            "java.util.ArrayList",
+            "java.util.HashMap",
+            "java.util.LinkedHashMap",
+            "java.util.HashSet",
+            "java.util.Collections$EmptyList");
+
+    private static final String BUILD_HASH = buildHash();
+
+    private final Path directory;
+    private final long maxSize;
+    private final long maxAge;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile boolean disabled;
+
+    private DiskParseCache(Path directory, long maxSize, long maxAge) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns cache instance for a given directory, shared by all compilers in
+     * this JVM. Cache is cleaned up when it is opened for the first time.
+     *
+     * @param directory cache directory, created if it does not exist
+     * @param maxSize   max total size of cache entries, in bytes
+     * @param maxAge    max age of cache entries, in milliseconds
+     */
+    public static DiskParseCache open(Path directory, long maxSize, long maxAge) {
+        Path key = directory.toAbsolutePath().normalize();
+        return INSTANCES.computeIfAbsent(key, dir -> {
+            DiskParseCache cache = new DiskParseCache(dir, maxSize, maxAge);
+            cache.evict();
+            return cache;
+        });
+    }
+
+    @Override
+    public ProtoContext load(String filename, CharStream stream, Supplier<ProtoContext> parser) {
+        if (disabled) {
+            misses.incrementAndGet();
+            return parser.get();
+        }
+        Path entry = getEntry(filename, stream);
+        Proto proto = read(entry);
+        if (proto != null) {
+            hits.incrementAndGet();
+            LOGGER.trace("Cache hit: {}", filename);
+            return new ProtoContext(filename, proto);
+        }
+        misses.incrementAndGet();
+        ProtoContext context = parser.get();
+        write(entry, context.getProto());
+        return context;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private Path getEntry(String filename, CharStream stream) {
+        String content = stream.getText(Interval.of(0, stream.size() - 1));
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(BUILD_HASH, StandardCharsets.UTF_8);
+        hasher.putByte((byte) 0);
+        hasher.putString(filename, StandardCharsets.UTF_8);
+        hasher.putByte((byte) 0);
+        hasher.putString(content, StandardCharsets.UTF_8);
+        String hash = hasher.hash().toString();
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+    }
+
+    private Proto read(Path entry) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (ObjectInputStream in = new FilteringObjectInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            Proto proto = (Proto) in.readObject();
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return proto;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // entry is corrupted or was written by incompatible version
+            LOGGER.warn("Could not read parse cache entry {}", entry, e);
+            delete(entry);
+            return null;
+        }
+    }
+
+    private void write(Path entry, Proto proto) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            tmp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeObject(proto);
+            }
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (totalSize.addAndGet(Files.size(entry)) > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            if (e instanceof ObjectStreamException) {
+                // model is not serializable, next writes would fail the same way
+                LOGGER.warn("Could not serialize {}, parse cache {} is disabled", entry, directory, e);
+                disabled = true;
+            } else {
+                LOGGER.warn("Could not write parse cache entry {}", entry, e);
+            }
+            if (tmp != null) {
+                delete(tmp);
+            }
+        }
+    }
+
+    private void evict() {
+        // entries written by other threads while we are evicting
+        // are picked up by the next eviction
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            doEvict();
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void doEvict() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> entries;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.warn("Could not list cache directory {}", directory, e);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<CacheEntry> alive = new ArrayList<>();
+        long size = 0;
+        for (Path entry : entries) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                if (now - lastModified > maxAge) {
+                    delete(entry);
+                } else {
+                    alive.add(new CacheEntry(entry, attributes.size(), lastModified));
+                    size += attributes.size();
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Could not read attributes of {}", entry, e);
+            }
+        }
+        alive.sort(Comparator.comparingLong(e -> e.lastModified));
+        int count = alive.size();
+        for (CacheEntry entry : alive) {
+            if (size <= maxSize) {
+                break;
+            }
+            delete(entry.path);
+            size -= entry.size;
+            count--;
+        }
+        totalSize.set(size);
+        LOGGER.debug("Evicted parse cache {}: {} entries, {} bytes left", directory, count, size);
+    }
+
+    /**
+     * Returns a hash of the jar or classes directory that contains this class.
+     * Falls back to implementation version and serial version of the model
+     * root when code source is not available.
+     */
+    private static String buildHash() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        CodeSource codeSource = DiskParseCache.class.getProtectionDomain().getCodeSource();
+        URL location = codeSource == null ? null : codeSource.getLocation();
+        try {
+            if (location != null) {
+                Path path = Paths.get(location.toURI());
+                if (Files.isDirectory(path)) {
+                    hashDirectory(hasher, path);
+                } else {
+                    hashFile(hasher, path);
+                }
+                return hasher.hash().toString();
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOGGER.debug("Could not compute build hash of {}", location, e);
+        }
+        return DiskParseCache.class.getPackage().getImplementationVersion()
+                + "-" + ObjectStreamClass.lookup(Proto.class).getSerialVersionUID();
+    }
+
+    private static void hashDirectory(Hasher hasher, Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            files = stream.filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            hasher.putString(directory.relativize(file).toString(), StandardCharsets.UTF_8);
+            hasher.putByte((byte) 0);
+            hashFile(hasher, file);
+        }
+    }
+
+    private static void hashFile(Hasher hasher, Path file) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                hasher.putBytes(buffer, 0, n);
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.debug("Could not delete {}", file, e);
+        }
+    }
+
+    /**
+     * Object stream that resolves only allowed classes.
+     */
+    private static final class FilteringObjectInputStream extends ObjectInputStream {
+
+        FilteringObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (!isAllowed(name)) {
+                throw new InvalidClassException(name, "Class is not allowed in parse cache");
+            }
+            return super.resolveClass(desc);
+        }
+
+        private static boolean isAllowed(String name) {
+            int dimensions = 0;
+            while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+                dimensions++;
+            }
+            if (dimensions > 0) {
+                // primitive arrays are "[I", object arrays are "[Ljava.lang.String;"
+                if (name.charAt(dimensions) != 'L') {
+                    return true;
+                }
+                return isAllowed(name.substring(dimensions + 1, name.length() - 1));
+            }
+            int lastDot = name.lastIndexOf('.');
+            return ALLOWED_JDK_CLASSES.contains(name)
+                    || lastDot > 0 && MODEL_PACKAGE.equals(name.substring(0, lastDot));
+        }
+    }
+
+    private static final class CacheEntry {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        CacheEntry(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
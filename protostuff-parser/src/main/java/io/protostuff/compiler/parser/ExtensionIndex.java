@@ -0,0 +1,127 @@
+package io.protostuff.compiler.parser;
+
+import io.protostuff.compiler.model.Extension;
+import io.protostuff.compiler.model.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Singleton;
+
+/**
+ * Index of all extensions registered during a compilation, by extendee's
+ * fully qualified name. Shared by all proto contexts that are loaded by the
+ * same importer; each context filters it by files that it can reach by imports.
+ */
+@Singleton
+public class ExtensionIndex {
+
+    /**
+     * Registrations by extendee. Lists are immutable and are replaced on every
+     * change, so a list instance also identifies a version of extendee's
+     * extensions: cached data that was built from another instance is stale.
+     */
+    private final ConcurrentMap<String, List<Registration>> extensions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FieldTable> fieldCache = new ConcurrentHashMap<>();
+
+    /**
+     * Register extension declared in a given context.
+     */
+    public void register(ProtoContext owner, Extension extension) {
+        String extendee = extension.getExtendee().getFullyQualifiedName();
+        Registration registration = new Registration(owner, extension);
+        extensions.compute(extendee, (name, registrations) -> {
+            List<Registration> result = registrations == null
+                    ? new ArrayList<>(1)
+                    : new ArrayList<>(registrations);
+            result.add(registration);
+            return Collections.unmodifiableList(result);
+        });
+        fieldCache.remove(extendee);
+    }
+
+    /**
+     * Remove all extensions that are declared in a given context.
+     */
+    public void unregister(ProtoContext owner) {
+        for (String extendee : extensions.keySet()) {
+            extensions.computeIfPresent(extendee, (name, list) -> {
+                List<Registration> result = new ArrayList<>(list.size());
+                for (Registration registration : list) {
+                    if (registration.owner != owner) {
+                        result.add(registration);
+                    }
+                }
+                if (result.size() == list.size()) {
+                    return list;
+                }
+                return result.isEmpty() ? null : Collections.unmodifiableList(result);
+            });
+        }
+        fieldCache.clear();
+    }
+
+    /**
+     * Returns all extensions of a given message, in registration order.
+     * Returned list is immutable; a new list is returned after extensions
+     * of a given message are changed.
+     */
+    public List<Registration> getExtensions(String extendee) {
+        return extensions.getOrDefault(extendee, Collections.emptyList());
+    }
+
+    /**
+     * Returns all extension fields of a given message, by fully qualified name.
+     */
+    public NameTable<Field> getExtensionFields(String extendee) {
+        List<Registration> registrations = getExtensions(extendee);
+        FieldTable table = fieldCache.get(extendee);
+        if (table == null || table.registrations != registrations) {
+            table = new FieldTable(registrations);
+            fieldCache.put(extendee, table);
+        }
+        return table.fields;
+    }
+
+    /**
+     * Extension fields, together with registrations they are built from.
+     */
+    private static final class FieldTable {
+
+        private final List<Registration> registrations;
+        private final NameTable<Field> fields = new NameTable<>();
+
+        FieldTable(List<Registration> registrations) {
+            this.registrations = registrations;
+            for (Registration registration : registrations) {
+                Extension extension = registration.extension;
+                for (Field field : extension.getFields()) {
+                    fields.put(extension.getNamespace() + field.getName(), field);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extension together with a context where it is declared.
+     */
+    public static final class Registration {
+
+        private final ProtoContext owner;
+        private final Extension extension;
+
+        Registration(ProtoContext owner, Extension extension) {
+            this.owner = owner;
+            this.extension = extension;
+        }
+
+        public ProtoContext getOwner() {
+            return owner;
+        }
+
+        public Extension getExtension() {
+            return extension;
+        }
+    }
+}
@@ -4,7 +4,6 @@ import io.protostuff.compiler.model.Extension;
 import io.protostuff.compiler.model.Field;
 import io.protostuff.compiler.model.Message;
 import java.util.Collection;
-import java.util.Map;
 
 /**
  * Extension registry. Used in two phases: first, we register all
@@ -21,7 +20,7 @@ public interface ExtensionRegistry {
 
     Collection<Extension> getExtensions(String messageName);
 
-    Map<String, Field> getExtensionFields(String messageName);
+    NameTable<Field> getExtensionFields(String messageName);
 
-    Map<String, Field> getExtensionFields(Message message);
+    NameTable<Field> getExtensionFields(Message message);
 }
@@ -10,4 +10,16 @@ public interface FileDescriptorLoader {
 
     ProtoContext load(FileReader reader, String filename);
 
+    /**
+     * Load proto file. Header-only file is not validated: its types and
+     * options are resolved, but checks that do not affect other files are skipped.
+     */
+    ProtoContext load(FileReader reader, String filename, boolean headerOnly);
+
+    /**
+     * Run skipped checks for a header-only context, so it becomes
+     * equivalent to a fully loaded one. Does nothing for other contexts.
+     */
+    void validate(ProtoContext context);
+
 }
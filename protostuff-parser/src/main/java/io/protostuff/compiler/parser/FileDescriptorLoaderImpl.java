@@ -1,32 +1,97 @@
 package io.protostuff.compiler.parser;
 
+import static io.protostuff.compiler.parser.DefaultDescriptorProtoProvider.DESCRIPTOR_PROTO;
+
+import io.protostuff.compiler.model.Import;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
 import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 /**
  * Loader of proto files. Returns fully parsed proto file context
  * for a given proto file.
  *
+ * <p>Files from a descriptor set of a {@link DescriptorSetFileReader} or
+ * a {@link MultiPathFileReader} are built from their binary descriptors
+ * instead of being parsed.
+ *
  * @author Kostiantyn Shchepanovskyi
  */
 public class FileDescriptorLoaderImpl implements FileDescriptorLoader {
 
     private final ANTLRErrorListener errorListener;
 
+    private final Provider<ANTLRErrorStrategy> bailErrorStrategy;
+
     private final Set<ProtoContextPostProcessor> postProcessors;
 
+    private final ParseCache parseCache;
+
+    private final Provider<Importer> importer;
+
+    private final ExtensionIndex extensionIndex;
+
+    private final Provider<ProtoContext> descriptorProtoProvider;
+
+    /**
+     * Create new loader instance.
+     */
     @Inject
-    public FileDescriptorLoaderImpl(ANTLRErrorListener errorListener, Set<ProtoContextPostProcessor> postProcessors) {
+    public FileDescriptorLoaderImpl(ANTLRErrorListener errorListener,
+                                    Provider<ANTLRErrorStrategy> bailErrorStrategy,
+                                    Set<ProtoContextPostProcessor> postProcessors,
+                                    ParseCache parseCache,
+                                    Provider<Importer> importer,
+                                    ExtensionIndex extensionIndex,
+                                    @Named(DESCRIPTOR_PROTO) Provider<ProtoContext> descriptorProtoProvider) {
         this.errorListener = errorListener;
+        this.bailErrorStrategy = bailErrorStrategy;
         this.postProcessors = postProcessors;
+        this.parseCache = parseCache;
+        this.importer = importer;
+        this.extensionIndex = extensionIndex;
+        this.descriptorProtoProvider = descriptorProtoProvider;
+    }
+
+    @Nullable
+    private static DescriptorSet getDescriptorSet(FileReader reader) {
+        if (reader instanceof DescriptorSetFileReader) {
+            return ((DescriptorSetFileReader) reader).getDescriptorSet();
+        }
+        if (reader instanceof MultiPathFileReader) {
+            return ((MultiPathFileReader) reader).getDescriptorSet();
+        }
+        return null;
     }
 
     @Override
     public ProtoContext load(FileReader reader, String filename) {
+        return load(reader, filename, false);
+    }
+
+    @Override
+    public ProtoContext load(FileReader reader, String filename, boolean headerOnly) {
+        DescriptorSet descriptorSet = getDescriptorSet(reader);
+        if (descriptorSet != null) {
+            WireMessage file = descriptorSet.getFile(filename);
+            if (file != null) {
+                DescriptorSchema schema = descriptorSet.getSchema(descriptorProtoProvider);
+                ProtoContext context = new DescriptorProtoBuilder(schema, filename, file).build();
+                return initialize(reader, context, headerOnly);
+            }
+        }
         CharStream stream = reader.read(filename);
         if (stream == null && "google/protobuf/descriptor.proto".equals(filename)) {
             stream = reader.read("google/protobuf/__descriptor.proto");
@@ -34,23 +99,119 @@ public class FileDescriptorLoaderImpl implements FileDescriptorLoader {
         if (stream == null) {
             throw new ParserException("Can not load proto: %s not found", filename);
         }
-        ProtoContext context = parse(filename, stream);
+        String contentHash = null;
+        if (SharedProtoContexts.isShareable(filename)) {
+            contentHash = SharedProtoContexts.getContentHash(stream);
+            ProtoContext shared = SharedProtoContexts.get(filename, contentHash);
+            if (shared != null && hasSameImports(reader, shared)) {
+                return shared;
+            }
+        }
+        CharStream source = stream;
+        ProtoContext context = parseCache.load(filename, source, () -> parse(filename, source));
+        // shared contexts are frozen, they can not be validated later
+        initialize(reader, context, headerOnly && contentHash == null);
+        if (contentHash != null && isImportsFrozen(context)) {
+            context.freeze();
+            return SharedProtoContexts.register(filename, contentHash, context);
+        }
+        return context;
+    }
+
+    private ProtoContext initialize(FileReader reader, ProtoContext context, boolean headerOnly) {
         context.setFileReader(reader);
-        postProcessors.forEach(p -> p.process(context));
+        context.setExtensionIndex(extensionIndex);
+        context.setHeaderOnly(headerOnly);
+        postProcess(context);
         context.setInitialized(true);
         return context;
     }
 
+    @Override
+    public void validate(ProtoContext context) {
+        if (!context.isHeaderOnly()) {
+            return;
+        }
+        synchronized (context) {
+            if (!context.isHeaderOnly()) {
+                return;
+            }
+            for (ProtoContextPostProcessor postProcessor : postProcessors) {
+                postProcessor.validate(context);
+            }
+            context.setHeaderOnly(false);
+        }
+    }
+
+    /**
+     * Run post-processors in order. Adjacent walking post-processors
+     * are fused into a single walk over the proto tree.
+     */
+    private void postProcess(ProtoContext context) {
+        ProtoWalker walker = null;
+        for (ProtoContextPostProcessor postProcessor : postProcessors) {
+            if (postProcessor instanceof WalkingPostProcessor) {
+                if (walker == null) {
+                    walker = ProtoWalker.newInstance(context);
+                }
+                ((WalkingPostProcessor) postProcessor).register(walker);
+            } else {
+                if (walker != null) {
+                    walker.walk();
+                    walker = null;
+                }
+                postProcessor.process(context);
+            }
+        }
+        if (walker != null) {
+            walker.walk();
+        }
+    }
+
+    /**
+     * Check that imports of a shared context are resolved to the same
+     * files using given file reader.
+     */
+    private boolean hasSameImports(FileReader reader, ProtoContext shared) {
+        List<Import> imports = shared.getProto().getImports();
+        if (imports.isEmpty()) {
+            return true;
+        }
+        List<String> files = new ArrayList<>(imports.size());
+        for (Import anImport : imports) {
+            files.add(anImport.getValue());
+        }
+        String filename = shared.getProto().getFilename();
+        List<ProtoContext> importedContexts = importer.get().importFiles(reader, filename, files);
+        for (int i = 0; i < imports.size(); i++) {
+            if (importedContexts.get(i).getProto() != imports.get(i).getProto()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isImportsFrozen(ProtoContext context) {
+        for (ProtoContext importedContext : context.getImports()) {
+            if (!importedContext.isFrozen()) {
+                return false;
+            }
+        }
+        for (ProtoContext importedContext : context.getPublicImports()) {
+            if (!importedContext.isFrozen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private ProtoContext parse(String filename, CharStream stream) {
         ProtoLexer lexer = new ProtoLexer(stream);
         lexer.removeErrorListeners();
         lexer.addErrorListener(errorListener);
         CommonTokenStream tokenStream = new CommonTokenStream(lexer);
         ProtoParser parser = new ProtoParser(tokenStream);
-        parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-
-        ProtoParser.ProtoContext tree = parser.proto();
+        ProtoParser.ProtoContext tree = parseProto(parser, tokenStream);
         int numberOfSyntaxErrors = parser.getNumberOfSyntaxErrors();
         if (numberOfSyntaxErrors > 0) {
             String format = "Could not parse %s: %d syntax errors found";
@@ -65,7 +226,29 @@ public class FileDescriptorLoaderImpl implements FileDescriptorLoader {
                 new ServiceParseListener(tokenStream, context)
         );
         ParseTreeWalker.DEFAULT.walk(composite, tree);
+        context.getCommentBuffer().trimToSize();
         return context;
     }
 
+    /**
+     * Two-stage parsing: fast SLL prediction that bails out on a first error,
+     * then full LL prediction with error reporting if SLL fails. SLL failure
+     * does not always mean a syntax error, so second stage is required.
+     */
+    private ProtoParser.ProtoContext parseProto(ProtoParser parser, CommonTokenStream tokenStream) {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(bailErrorStrategy.get());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.proto();
+        } catch (ParseCancellationException e) {
+            tokenStream.seek(0);
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.proto();
+        }
+    }
+
 }
@@ -0,0 +1,121 @@
+package io.protostuff.compiler.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Extracts package name and imports of a proto file using only the lexer,
+ * without building a parse tree. Does not validate the file: syntax errors
+ * are reported later, when the file is parsed.
+ */
+public final class ImportScanner {
+
+    private ImportScanner() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Scan given source of a proto file.
+     */
+    public static ProtoImports scan(CharStream stream) {
+        ProtoLexer lexer = new ProtoLexer(stream);
+        lexer.removeErrorListeners();
+        String packageName = null;
+        List<String> imports = new ArrayList<>();
+        List<String> publicImports = new ArrayList<>();
+        int depth = 0;
+        boolean statementStart = true;
+        Token token = nextToken(lexer);
+        while (token.getType() != Token.EOF) {
+            int type = token.getType();
+            if (depth == 0 && statementStart && type == ProtoLexer.IMPORT) {
+                token = nextToken(lexer);
+                boolean isPublic = token.getType() == ProtoLexer.PUBLIC;
+                if (isPublic) {
+                    token = nextToken(lexer);
+                }
+                if (token.getType() == ProtoLexer.STRING_VALUE) {
+                    String fileName = Util.removeFirstAndLastChar(token.getText());
+                    imports.add(fileName);
+                    if (isPublic) {
+                        publicImports.add(fileName);
+                    }
+                }
+                statementStart = false;
+                continue;
+            }
+            if (depth == 0 && statementStart && type == ProtoLexer.PACKAGE) {
+                StringBuilder name = new StringBuilder();
+                token = nextToken(lexer);
+                while (token.getType() != Token.EOF && token.getType() != ProtoLexer.SEMICOLON) {
+                    name.append(token.getText());
+                    token = nextToken(lexer);
+                }
+                packageName = name.toString();
+                statementStart = false;
+                continue;
+            }
+            if (type == ProtoLexer.LCURLY) {
+                depth++;
+            } else if (type == ProtoLexer.RCURLY) {
+                depth = Math.max(0, depth - 1);
+            }
+            statementStart = type == ProtoLexer.SEMICOLON
+                    || type == ProtoLexer.RCURLY
+                    || type == ProtoLexer.LCURLY;
+            token = nextToken(lexer);
+        }
+        return new ProtoImports(packageName, imports, publicImports);
+    }
+
+    /**
+     * Returns next token from a default channel.
+     */
+    private static Token nextToken(ProtoLexer lexer) {
+        Token token = lexer.nextToken();
+        while (token.getChannel() != Token.DEFAULT_CHANNEL && token.getType() != Token.EOF) {
+            token = lexer.nextToken();
+        }
+        return token;
+    }
+
+    /**
+     * Package name and imports of a proto file.
+     */
+    public static final class ProtoImports {
+
+        @Nullable
+        private final String packageName;
+        private final List<String> imports;
+        private final List<String> publicImports;
+
+        ProtoImports(@Nullable String packageName, List<String> imports, List<String> publicImports) {
+            this.packageName = packageName;
+            this.imports = Collections.unmodifiableList(imports);
+            this.publicImports = Collections.unmodifiableList(publicImports);
+        }
+
+        /**
+         * Returns package name, or {@code null} if there is no package declaration.
+         */
+        @Nullable
+        public String getPackageName() {
+            return packageName;
+        }
+
+        /**
+         * Returns all imported files (including public imports) in declaration order.
+         */
+        public List<String> getImports() {
+            return imports;
+        }
+
+        public List<String> getPublicImports() {
+            return publicImports;
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package io.protostuff.compiler.parser;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
 /**
  * Proto file importer - parses and returns context for a proto file.
  * Results are cached.
@@ -9,4 +14,20 @@ package io.protostuff.compiler.parser;
 public interface Importer {
 
     ProtoContext importFile(FileReader fileReader, String fileName);
+
+    /**
+     * Import a list of proto files on behalf of an importing file ({@code null}
+     * for top-level files). Files that are not cached yet might be loaded
+     * concurrently; returned contexts are in the same order as given file names.
+     */
+    List<ProtoContext> importFiles(FileReader fileReader, @Nullable String importingFile, List<String> fileNames);
+
+    /**
+     * Remove given files and all files that import them (directly or transitively)
+     * from the cache, so they are parsed again on next import.
+     * Must not be called concurrently with imports.
+     *
+     * @return names of removed files
+     */
+    Set<String> invalidate(Collection<String> fileNames);
 }
@@ -1,39 +1,254 @@
 package io.protostuff.compiler.parser;
 
+import io.protostuff.compiler.model.Import;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 /**
  * Caching implementation of an {@link Importer}.
  *
+ * <p>Files that are imported together (all imports of a single proto file, or
+ * all top-level files of a module) are loaded in parallel on a fork-join pool.
+ * Import cycles are detected using a graph of imports that are not loaded yet.
+ *
+ * <p>Files that are loaded only as imports of other files are header-only,
+ * unless strict imports are enabled; they are validated when requested as
+ * top-level files.
+ *
  * @author Kostiantyn Shchepanovskyi
  */
 @Singleton
 public class ImporterImpl implements Importer {
 
+    public static final String PARSER_THREADS = "parserThreads";
+    public static final String STRICT_IMPORTS = "strictImports";
+
     private final FileDescriptorLoader loader;
 
-    private Map<String, ProtoContext> cachedImports = new HashMap<>();
+    private final ExtensionIndex extensionIndex;
+
+    private final boolean strictImports;
+
+    private final int parserThreads;
+
+    /**
+     * Pools of top-level imports that are being loaded right now.
+     */
+    private final Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, ImportTask> cachedImports = new ConcurrentHashMap<>();
 
+    /**
+     * Imports of the files that are being loaded right now. Guarded by itself.
+     */
+    private final Map<String, Set<String>> pendingImports = new HashMap<>();
+
+    /**
+     * Create new importer instance. If number of parser threads is greater than one,
+     * imports are loaded in parallel on a pool that lives until top-level files are
+     * loaded; otherwise they are loaded on a caller thread. In strict mode imported
+     * files are fully validated.
+     */
     @Inject
-    public ImporterImpl(FileDescriptorLoader loader) {
+    public ImporterImpl(FileDescriptorLoader loader, ExtensionIndex extensionIndex,
+                        @Named(PARSER_THREADS) int parserThreads,
+                        @Named(STRICT_IMPORTS) boolean strictImports) {
         this.loader = loader;
+        this.extensionIndex = extensionIndex;
+        this.strictImports = strictImports;
+        this.parserThreads = parserThreads;
     }
 
     @Override
     public ProtoContext importFile(FileReader reader, String fileName) {
-        ProtoContext cachedInstance = cachedImports.get(fileName);
-        if (cachedInstance != null) {
-            if (cachedInstance.isInitialized()) {
-                return cachedInstance;
+        List<ProtoContext> contexts = importFiles(reader, null, Collections.singletonList(fileName));
+        return contexts.get(0);
+    }
+
+    @Override
+    public List<ProtoContext> importFiles(FileReader reader, @Nullable String importingFile, List<String> fileNames) {
+        ForkJoinPool currentPool = ForkJoinTask.getPool();
+        if (currentPool != null && pools.contains(currentPool)) {
+            // imports of a file that is loaded on our pool
+            return load(reader, importingFile, fileNames, currentPool);
+        }
+        if (parserThreads <= 1) {
+            return load(reader, importingFile, fileNames, null);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parserThreads);
+        pools.add(pool);
+        try {
+            return load(reader, importingFile, fileNames, pool);
+        } finally {
+            pools.remove(pool);
+            pool.shutdown();
+        }
+    }
+
+    private List<ProtoContext> load(FileReader reader, @Nullable String importingFile, List<String> fileNames,
+                                    @Nullable ForkJoinPool pool) {
+        List<ImportTask> tasks = new ArrayList<>(fileNames.size());
+        for (String fileName : fileNames) {
+            ImportTask cachedTask = cachedImports.get(fileName);
+            if (cachedTask != null && cachedTask.isDone()) {
+                tasks.add(cachedTask);
+                continue;
+            }
+            if (importingFile != null) {
+                registerPendingImport(importingFile, fileName);
+            }
+            boolean headerOnly = importingFile != null && !strictImports;
+            tasks.add(schedule(reader, fileName, headerOnly, pool));
+        }
+        List<ProtoContext> result = new ArrayList<>(tasks.size());
+        for (ImportTask task : tasks) {
+            task.quietlyJoin();
+            if (task.failure != null) {
+                throw task.failure;
+            }
+            ProtoContext context = task.getRawResult();
+            if (importingFile == null) {
+                // top-level file might be already loaded as a header-only import
+                loader.validate(context);
+            }
+            result.add(context);
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> invalidate(Collection<String> fileNames) {
+        Map<String, Set<String>> importedBy = new HashMap<>();
+        for (ImportTask task : cachedImports.values()) {
+            ProtoContext context = task.getRawResult();
+            if (context == null) {
+                continue;
+            }
+            for (Import anImport : context.getProto().getImports()) {
+                importedBy.computeIfAbsent(anImport.getValue(), file -> new HashSet<>())
+                        .add(task.fileName);
             }
-            throw new ParserException("Can not load proto: imports cycle found");
         }
-        ProtoContext context = loader.load(reader, fileName);
-        cachedImports.put(fileName, context);
-        return context;
+        Set<String> invalidated = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(fileNames);
+        while (!queue.isEmpty()) {
+            String file = queue.poll();
+            if (invalidated.add(file)) {
+                queue.addAll(importedBy.getOrDefault(file, Collections.emptySet()));
+            }
+        }
+        invalidated.removeIf(file -> {
+            ImportTask task = cachedImports.remove(file);
+            if (task == null) {
+                return true;
+            }
+            ProtoContext context = task.getRawResult();
+            if (context != null) {
+                extensionIndex.unregister(context);
+            }
+            return false;
+        });
+        return invalidated;
+    }
+
+    private ImportTask schedule(FileReader reader, String fileName, boolean headerOnly, @Nullable ForkJoinPool pool) {
+        ImportTask newTask = new ImportTask(reader, fileName, headerOnly);
+        ImportTask task = cachedImports.putIfAbsent(fileName, newTask);
+        if (task != null) {
+            return task;
+        }
+        if (pool == null) {
+            newTask.quietlyInvoke();
+        } else {
+            pool.execute(newTask);
+        }
+        return newTask;
+    }
+
+    private void registerPendingImport(String importingFile, String fileName) {
+        synchronized (pendingImports) {
+            if (isPendingImport(fileName, importingFile)) {
+                throw new ParserException("Can not load proto: imports cycle found");
+            }
+            pendingImports.computeIfAbsent(importingFile, file -> new HashSet<>())
+                    .add(fileName);
+        }
+    }
+
+    /**
+     * Check if target file is (directly or transitively) imported by a source
+     * file that is not loaded yet.
+     */
+    private boolean isPendingImport(String source, String target) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            String file = queue.poll();
+            if (file.equals(target)) {
+                return true;
+            }
+            if (visited.add(file)) {
+                queue.addAll(pendingImports.getOrDefault(file, Collections.emptySet()));
+            }
+        }
+        return false;
     }
 
+    private final class ImportTask extends RecursiveTask<ProtoContext> {
+
+        private static final long serialVersionUID = 0L;
+
+        private final transient FileReader reader;
+        private final String fileName;
+        private final boolean headerOnly;
+        private final transient ClassLoader contextClassLoader;
+
+        private volatile RuntimeException failure;
+
+        ImportTask(FileReader reader, String fileName, boolean headerOnly) {
+            this.reader = reader;
+            this.fileName = fileName;
+            this.headerOnly = headerOnly;
+            // classpath lookups depend on a context class loader of a current thread
+            this.contextClassLoader = Thread.currentThread().getContextClassLoader();
+        }
+
+        @Override
+        protected ProtoContext compute() {
+            Thread thread = Thread.currentThread();
+            ClassLoader threadClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(contextClassLoader);
+            try {
+                return loader.load(reader, fileName, headerOnly);
+            } catch (RuntimeException e) {
+                // keep original exception, fork-join pool might rethrow its copy
+                failure = e;
+                cachedImports.remove(fileName, this);
+                return null;
+            } finally {
+                thread.setContextClassLoader(threadClassLoader);
+                synchronized (pendingImports) {
+                    pendingImports.remove(fileName);
+                }
+            }
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package io.protostuff.compiler.parser;
 
 import io.protostuff.compiler.model.Import;
+import java.util.ArrayList;
+import java.util.List;
 import javax.inject.Inject;
 
 /**
@@ -23,10 +25,17 @@ public class ImportsPostProcessor implements ProtoContextPostProcessor {
     }
 
     private void resolveImports(ProtoContext context) {
-        for (Import anImport : context.getProto().getImports()) {
-            FileReader reader = context.getFileReader();
-            String file = anImport.getValue();
-            ProtoContext importedContext = importer.importFile(reader, file);
+        List<Import> imports = context.getProto().getImports();
+        List<String> files = new ArrayList<>(imports.size());
+        for (Import anImport : imports) {
+            files.add(anImport.getValue());
+        }
+        FileReader reader = context.getFileReader();
+        String filename = context.getProto().getFilename();
+        List<ProtoContext> importedContexts = importer.importFiles(reader, filename, files);
+        for (int i = 0; i < imports.size(); i++) {
+            Import anImport = imports.get(i);
+            ProtoContext importedContext = importedContexts.get(i);
             if (anImport.isPublic()) {
                 context.addPublicImport(importedContext);
             } else {
@@ -0,0 +1,160 @@
+package io.protostuff.compiler.parser;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of proto files in a list of include directories.
+ *
+ * <p>Directories are indexed lazily: when a relative file name is looked up,
+ * its parent directory is listed in all include directories at once, into
+ * a single map from a file name to a file in the first include directory
+ * that contains it. Later lookups of files in the same directory, found or
+ * not, take one map lookup regardless of the number of include directories,
+ * and do not touch the file system.
+ *
+ * <p>Index is a snapshot: readers are created per compilation, so each
+ * compilation gets a fresh index. Callers that keep an index for a longer
+ * time should call {@link #refresh()} before a next compilation; after that,
+ * every indexed directory is checked for modifications once, on its next
+ * lookup, and listed again if it was changed.
+ */
+public class IncludePathIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncludePathIndex.class);
+
+    private static final String PROTO_EXTENSION = ".proto";
+
+    private final List<Path> pathList;
+    private final ConcurrentMap<String, Directory> directories = new ConcurrentHashMap<>();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public IncludePathIndex(List<Path> pathList) {
+        this.pathList = pathList;
+    }
+
+    /**
+     * Check if a file with given name can be looked up in the index. Only proto
+     * files are indexed, and names must be relative and normalized.
+     */
+    public static boolean isIndexable(String name) {
+        return name.endsWith(PROTO_EXTENSION)
+                && !name.startsWith("/")
+                && !name.contains("\\")
+                && !name.contains("./")
+                && !name.contains("//");
+    }
+
+    /**
+     * Returns a file for given relative name, or {@code null} if
+     * there is no such file in include directories.
+     */
+    @Nullable
+    public Path find(String name) {
+        int slash = name.lastIndexOf('/');
+        String directoryName = slash < 0 ? "" : name.substring(0, slash);
+        String fileName = name.substring(slash + 1);
+        int currentGeneration = generation.get();
+        Directory directory = directories.get(directoryName);
+        if (directory == null || directory.checkedGeneration != currentGeneration && isModified(directory)) {
+            directory = list(directoryName, currentGeneration);
+            directories.put(directoryName, directory);
+        } else {
+            directory.checkedGeneration = currentGeneration;
+        }
+        return directory.files.get(fileName);
+    }
+
+    /**
+     * Check indexed directories for modifications, each one on its next lookup.
+     */
+    public void refresh() {
+        generation.incrementAndGet();
+    }
+
+    private boolean isModified(Directory directory) {
+        for (int i = 0; i < pathList.size(); i++) {
+            Path path = resolve(pathList.get(i), directory.name);
+            if (!Objects.equals(directory.lastModified[i], getLastModifiedTime(path))) {
+                LOGGER.debug("Include directory {} is modified", path);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Directory list(String name, int checkedGeneration) {
+        FileTime[] lastModified = new FileTime[pathList.size()];
+        Map<String, Path> files = new HashMap<>();
+        for (int i = 0; i < pathList.size(); i++) {
+            Path path = resolve(pathList.get(i), name);
+            // modification time is taken before listing, so that
+            // changes made while directory is listed are detected later
+            lastModified[i] = getLastModifiedTime(path);
+            if (lastModified[i] == null) {
+                continue;
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*" + PROTO_EXTENSION)) {
+                for (Path file : stream) {
+                    String fileName = file.getFileName().toString();
+                    if (!files.containsKey(fileName) && Files.isRegularFile(file)) {
+                        files.put(fileName, file);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                LOGGER.trace("Could not list {}", path, e);
+            }
+        }
+        return new Directory(name, lastModified, files, checkedGeneration);
+    }
+
+    private static Path resolve(Path root, String directoryName) {
+        return directoryName.isEmpty() ? root : root.resolve(directoryName);
+    }
+
+    /**
+     * Returns last modification time of a directory, or {@code null}
+     * if it does not exist or is not a directory.
+     */
+    @Nullable
+    private static FileTime getLastModifiedTime(Path directory) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+            return attributes.isDirectory() ? attributes.lastModifiedTime() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Files of a relative directory, merged from all include directories.
+     */
+    private static final class Directory {
+        private final String name;
+        private final FileTime[] lastModified;
+        private final Map<String, Path> files;
+        private volatile int checkedGeneration;
+
+        Directory(String name, FileTime[] lastModified, Map<String, Path> files, int checkedGeneration) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.files = files;
+            this.checkedGeneration = checkedGeneration;
+        }
+    }
+}
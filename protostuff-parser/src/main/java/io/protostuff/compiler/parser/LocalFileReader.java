@@ -1,35 +1,66 @@
 package io.protostuff.compiler.parser;
 
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointBuffer;
+import org.antlr.v4.runtime.CodePointCharStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Load file from local filesystem.
  *
+ * <p>Files that are larger than a threshold are memory-mapped and decoded
+ * directly into a code point buffer, smaller files are read into a heap buffer.
+ *
  * @author Kostiantyn Shchepanovskyi
  */
 public class LocalFileReader implements FileReader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileReader.class);
 
+    /**
+     * Default size of a file, in bytes, starting from which file is memory-mapped.
+     */
+    public static final long DEFAULT_MAPPED_READ_THRESHOLD = 1024 * 1024;
+
+    private static final int DECODE_BUFFER_SIZE = 8192;
+
     private final List<Path> pathList;
+    private final IncludePathIndex index;
+    private final long mappedReadThreshold;
 
     public LocalFileReader(Path... paths) {
-        this.pathList = checkDirectories(Arrays.asList(paths));
+        this(Arrays.asList(paths));
     }
 
     public LocalFileReader(List<Path> paths) {
+        this(paths, DEFAULT_MAPPED_READ_THRESHOLD);
+    }
+
+    /**
+     * Create new reader for given include paths. Files of the given size and larger are memory-mapped.
+     */
+    public LocalFileReader(List<Path> paths, long mappedReadThreshold) {
         this.pathList = checkDirectories(paths);
+        this.index = new IncludePathIndex(pathList);
+        this.mappedReadThreshold = mappedReadThreshold;
     }
 
     /**
@@ -53,13 +84,22 @@ public class LocalFileReader implements FileReader {
     @Nullable
     @Override
     public CharStream read(String name) {
+        if (IncludePathIndex.isIndexable(name)) {
+            Path path = index.find(name);
+            if (path != null) {
+                try {
+                    return read(path);
+                } catch (IOException e) {
+                    LOGGER.trace("Could not read {}", path, e);
+                }
+            }
+            return null;
+        }
         for (Path prefix : pathList) {
             Path path = prefix.resolve(name);
             if (Files.isRegularFile(path)) {
                 try {
-                    byte[] bytes = Files.readAllBytes(path);
-                    String result = new String(bytes, StandardCharsets.UTF_8);
-                    return CharStreams.fromString(result);
+                    return read(path);
                 } catch (IOException e) {
                     LOGGER.trace("Could not read {}", path, e);
                 }
@@ -67,4 +107,44 @@ public class LocalFileReader implements FileReader {
         }
         return null;
     }
+
+    private CharStream read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < mappedReadThreshold || size > Integer.MAX_VALUE) {
+                return CharStreams.fromChannel(channel, StandardCharsets.UTF_8, DECODE_BUFFER_SIZE,
+                        CodingErrorAction.REPLACE, path.toString(), size);
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return decode(bytes, (int) size, path.toString());
+        }
+    }
+
+    private CharStream decode(MappedByteBuffer bytes, int size, String sourceName) throws CharacterCodingException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CodePointBuffer.Builder codePoints = CodePointBuffer.builder(size);
+        CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, true);
+            append(result, chars, codePoints);
+        } while (result.isOverflow());
+        do {
+            result = decoder.flush(chars);
+            append(result, chars, codePoints);
+        } while (result.isOverflow());
+        return CodePointCharStream.fromBuffer(codePoints.build(), sourceName);
+    }
+
+    private void append(CoderResult result, CharBuffer chars, CodePointBuffer.Builder codePoints)
+            throws CharacterCodingException {
+        if (result.isError()) {
+            result.throwException();
+        }
+        chars.flip();
+        codePoints.append(chars);
+        chars.compact();
+    }
 }
@@ -2,7 +2,9 @@ package io.protostuff.compiler.parser;
 
 import com.google.common.base.MoreObjects;
 import com.google.inject.assistedinject.Assisted;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -11,6 +13,10 @@ import org.antlr.v4.runtime.CharStream;
 /**
  * File reader implementation that can do file lookup in multiple folders.
  *
+ * <p>Include paths that are regular files are binary descriptor sets
+ * ({@code protoc --descriptor_set_out}); files from descriptor sets
+ * are loaded without parsing and take precedence over files in folders.
+ *
  * @author Kostiantyn Shchepanovskyi
  */
 public class MultiPathFileReader implements FileReader {
@@ -18,15 +24,43 @@ public class MultiPathFileReader implements FileReader {
     private final List<Path> includePathList;
     private final FileReader delegate;
 
+    @Nullable
+    private final DescriptorSet descriptorSet;
+
     /**
      * Create new instance for a specified list of lookup paths.
      */
     @Inject
     public MultiPathFileReader(@Assisted List<Path> includePathList) {
         this.includePathList = includePathList;
+        List<Path> directories = new ArrayList<>();
+        List<DescriptorSet> descriptorSets = new ArrayList<>();
+        for (Path path : includePathList) {
+            if (Files.isRegularFile(path)) {
+                descriptorSets.add(DescriptorSet.read(path));
+            } else {
+                directories.add(path);
+            }
+        }
         ClasspathFileReader classpathFileReader = new ClasspathFileReader();
-        LocalFileReader localFileReader = new LocalFileReader(includePathList);
-        delegate = new CompositeFileReader(localFileReader, classpathFileReader);
+        LocalFileReader localFileReader = new LocalFileReader(directories);
+        FileReader reader = new CompositeFileReader(localFileReader, classpathFileReader);
+        if (descriptorSets.isEmpty()) {
+            descriptorSet = null;
+        } else {
+            descriptorSet = DescriptorSet.merge(descriptorSets);
+            reader = new DescriptorSetFileReader(descriptorSet, reader);
+        }
+        delegate = reader;
+    }
+
+    /**
+     * Returns descriptor set that is built from all descriptor set include
+     * paths, or {@code null} if there are no such paths.
+     */
+    @Nullable
+    public DescriptorSet getDescriptorSet() {
+        return descriptorSet;
     }
 
     @Nullable
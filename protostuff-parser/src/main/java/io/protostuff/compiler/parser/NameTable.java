@@ -0,0 +1,238 @@
+package io.protostuff.compiler.parser;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Open-addressing hash table for fully qualified names.
+ *
+ * <p>Besides regular lookups, a name can be looked up relative to a scope -
+ * a prefix of a namespace - without concatenating scope and name: hash of a
+ * concatenated string is computed from both parts, and stored keys are compared
+ * with both parts in place. Removal is not supported.
+ */
+public final class NameTable<V> extends AbstractMap<String, V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] hashes;
+    private Object[] values;
+    private int size;
+
+    public NameTable() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Create new table that can hold given number of names without resizing.
+     */
+    public NameTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Create new table that contains all entries of a given map.
+     */
+    public NameTable(Map<String, ? extends V> source) {
+        this(source.size());
+        for (Map.Entry<String, ? extends V> entry : source.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    @Nullable
+    public V get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        return valueAt(indexOf((String) key));
+    }
+
+    /**
+     * Returns value for a name {@code scope.substring(0, scopeLength) + name}.
+     */
+    @Nullable
+    public V get(String scope, int scopeLength, String name) {
+        return valueAt(indexOf(scope, scopeLength, name));
+    }
+
+    /**
+     * Returns stored key that is equal to {@code scope.substring(0, scopeLength) + name},
+     * or {@code null} if there is no such key.
+     */
+    @Nullable
+    public String getKey(String scope, int scopeLength, String name) {
+        int index = indexOf(scope, scopeLength, name);
+        return index < 0 ? null : keys[index];
+    }
+
+    @Override
+    public V put(String key, V value) {
+        return insert(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(String key, V value) {
+        return insert(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V insert(String key, V value, boolean onlyIfAbsent) {
+        int hash = key.hashCode();
+        int mask = keys.length - 1;
+        int index = spread(hash) & mask;
+        while (keys[index] != null) {
+            if (hashes[index] == hash && keys[index].equals(key)) {
+                V previous = (V) values[index];
+                if (!onlyIfAbsent) {
+                    values[index] = value;
+                }
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        hashes[index] = hash;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return null;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = spread(oldHashes[i]) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                hashes[index] = oldHashes[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private int indexOf(String key) {
+        int hash = key.hashCode();
+        int mask = keys.length - 1;
+        int index = spread(hash) & mask;
+        while (keys[index] != null) {
+            if (hashes[index] == hash && keys[index].equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int indexOf(String scope, int scopeLength, String name) {
+        // same as (scope.substring(0, scopeLength) + name).hashCode()
+        int hash = 0;
+        for (int i = 0; i < scopeLength; i++) {
+            hash = 31 * hash + scope.charAt(i);
+        }
+        int nameLength = name.length();
+        for (int i = 0; i < nameLength; i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        int mask = keys.length - 1;
+        int index = spread(hash) & mask;
+        while (keys[index] != null) {
+            String key = keys[index];
+            if (hashes[index] == hash
+                    && key.length() == scopeLength + nameLength
+                    && key.regionMatches(0, scope, 0, scopeLength)
+                    && key.regionMatches(scopeLength, name, 0, nameLength)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return index < 0 ? null : (V) values[index];
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, V>> {
+
+        private int next = advance(0);
+
+        private int advance(int from) {
+            int index = from;
+            while (index < keys.length && keys[index] == null) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int index = next;
+            next = advance(index + 1);
+            return new SimpleImmutableEntry<>(keys[index], valueAt(index));
+        }
+    }
+}
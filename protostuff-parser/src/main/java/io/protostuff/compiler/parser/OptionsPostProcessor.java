@@ -1,7 +1,6 @@
 package io.protostuff.compiler.parser;
 
 import static io.protostuff.compiler.parser.DefaultDescriptorProtoProvider.DESCRIPTOR_PROTO;
-import static io.protostuff.compiler.parser.TypeResolverPostProcessor.createScopeLookupList;
 
 import com.google.common.collect.ImmutableMap;
 import io.protostuff.compiler.model.Descriptor;
@@ -15,7 +14,6 @@ import io.protostuff.compiler.model.Message;
 import io.protostuff.compiler.model.ProtobufConstants;
 import io.protostuff.compiler.model.ScalarFieldType;
 import io.protostuff.compiler.model.UserTypeContainer;
-import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,7 +30,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Kostiantyn Shchepanovskyi
  */
-public class OptionsPostProcessor implements ProtoContextPostProcessor {
+public class OptionsPostProcessor implements WalkingPostProcessor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OptionsPostProcessor.class);
 
@@ -97,20 +95,35 @@ public class OptionsPostProcessor implements ProtoContextPostProcessor {
     }
 
     @Override
-    public void process(ProtoContext context) {
-        ProtoWalker.newInstance(context)
-                .onProto(this::processOptions)
-                .onMessage(this::processOptions)
-                .onField(this::processOptions)
-                .onEnum(this::processOptions)
-                .onEnumConstant(this::processOptions)
-                .onService(this::processOptions)
-                .onServiceMethod(this::processOptions)
-                .onOneof(this::processOptions)
-                .walk();
+    public void register(ProtoWalker walker) {
+        register(walker, !walker.getContext().isHeaderOnly());
     }
 
-    private void processOptions(ProtoContext context, Descriptor descriptor) {
+    /**
+     * Register option processors. If values are not checked, only
+     * names of custom options are resolved and normalized.
+     */
+    private void register(ProtoWalker walker, boolean checkValues) {
+        ProtoWalker.Processor<Descriptor> processor = (context, descriptor) ->
+                processOptions(context, descriptor, checkValues);
+        walker.onProto(processor::run)
+                .onMessage(processor::run)
+                .onField(processor::run)
+                .onEnum(processor::run)
+                .onEnumConstant(processor::run)
+                .onService(processor::run)
+                .onServiceMethod(processor::run)
+                .onOneof(processor::run);
+    }
+
+    @Override
+    public void validate(ProtoContext context) {
+        ProtoWalker walker = ProtoWalker.newInstance(context);
+        register(walker, true);
+        walker.walk();
+    }
+
+    private void processOptions(ProtoContext context, Descriptor descriptor, boolean checkValues) {
         DynamicMessage options = descriptor.getOptions();
         if (options.isEmpty()) {
             // nothing to check - skip this message
@@ -120,15 +133,17 @@ public class OptionsPostProcessor implements ProtoContextPostProcessor {
         String descriptorName = descriptor.getName();
         LOGGER.trace("processing class={} name={}", descriptorClassName, descriptorName);
         Message sourceMessage = findSourceMessage(context, descriptor.getDescriptorType());
-        processOptions(context, sourceMessage, descriptor, options);
+        processOptions(context, sourceMessage, descriptor, options, checkValues);
     }
 
-    private void processOptions(ProtoContext context, Message sourceMessage, Descriptor owningDescriptor, DynamicMessage options) {
-        processCustomOptions(context, sourceMessage, owningDescriptor, options);
-        processStandardOptions(context, sourceMessage, owningDescriptor, options);
+    private void processOptions(ProtoContext context, Message sourceMessage, Descriptor owningDescriptor,
+                                DynamicMessage options, boolean checkValues) {
+        processCustomOptions(context, sourceMessage, owningDescriptor, options, checkValues);
+        processStandardOptions(context, sourceMessage, owningDescriptor, options, checkValues);
     }
 
-    private void processStandardOptions(ProtoContext context, Message sourceMessage, Descriptor owningDescriptor, DynamicMessage options) {
+    private void processStandardOptions(ProtoContext context, Message sourceMessage, Descriptor owningDescriptor,
+                                        DynamicMessage options, boolean checkValues) {
         for (Map.Entry<DynamicMessage.Key, DynamicMessage.Value> entry : options.getFields()) {
             DynamicMessage.Key key = entry.getKey();
             DynamicMessage.Value value = entry.getValue();
@@ -140,19 +155,22 @@ public class OptionsPostProcessor implements ProtoContextPostProcessor {
             Field field = sourceMessage.getField(fieldName);
             if (DEFAULT.equals(fieldName)) {
                 // TODO: check value of default option
-            } else {
+            } else if (checkValues) {
                 if (field == null) {
                     throw new ParserException(value, "Unknown option: '%s'", fieldName);
                 }
                 checkFieldValue(context, owningDescriptor, field, value);
+            } else if (field != null) {
+                processNestedOptions(context, owningDescriptor, field, value);
             }
 
         }
     }
 
-    private void processCustomOptions(ProtoContext context, Message sourceMessage, Descriptor owningDescriptor, DynamicMessage options) {
+    private void processCustomOptions(ProtoContext context, Message sourceMessage, Descriptor owningDescriptor,
+                                      DynamicMessage options, boolean checkValues) {
         ExtensionRegistry extensionRegistry = context.getExtensionRegistry();
-        Map<String, Field> extensionFields = extensionRegistry.getExtensionFields(sourceMessage);
+        NameTable<Field> extensionFields = extensionRegistry.getExtensionFields(sourceMessage);
         Map<DynamicMessage.Key, String> fullyQualifiedNames = new HashMap<>();
         for (Map.Entry<DynamicMessage.Key, DynamicMessage.Value> entry : options.getFields()) {
             DynamicMessage.Key key = entry.getKey();
@@ -163,27 +181,42 @@ public class OptionsPostProcessor implements ProtoContextPostProcessor {
             String fullyQualifiedName = getFullyQualifiedName(owningDescriptor, extensionFields, key, value);
             Field extensionField = extensionFields.get(fullyQualifiedName);
             fullyQualifiedNames.put(key, fullyQualifiedName);
-            checkFieldValue(context, owningDescriptor, extensionField, value);
+            if (checkValues) {
+                checkFieldValue(context, owningDescriptor, extensionField, value);
+            } else {
+                processNestedOptions(context, owningDescriptor, extensionField, value);
+            }
         }
         for (Map.Entry<DynamicMessage.Key, String> entry : fullyQualifiedNames.entrySet()) {
             options.normalizeName(entry.getKey(), entry.getValue());
         }
     }
 
-    private String getFullyQualifiedName(Descriptor owningDescriptor, Map<String, Field> extensionFields, DynamicMessage.Key key, DynamicMessage.Value value) {
-        if (key.getName().startsWith(".")) {
-            String name = key.getName();
+    /**
+     * Normalize names of custom options inside of a message value, without checks.
+     */
+    private void processNestedOptions(ProtoContext context, Descriptor owningDescriptor, Field field, DynamicMessage.Value value) {
+        FieldType fieldType = field.getType();
+        if (fieldType instanceof Message && value.getType() == DynamicMessage.Value.Type.MESSAGE) {
+            processOptions(context, (Message) fieldType, owningDescriptor, value.getMessage(), false);
+        }
+    }
+
+    private String getFullyQualifiedName(Descriptor owningDescriptor, NameTable<Field> extensionFields, DynamicMessage.Key key, DynamicMessage.Value value) {
+        String name = key.getName();
+        if (name.startsWith(".")) {
             if (extensionFields.containsKey(name)) {
                 return name;
             }
         } else {
-            UserTypeContainer owningContainer = getOwningContainer(owningDescriptor);
-            Deque<String> scopeLookupList = createScopeLookupList(owningContainer);
-            for (String scope : scopeLookupList) {
-                String name = scope + key.getName();
-                if (extensionFields.containsKey(name)) {
-                    return name;
+            String namespace = getOwningContainer(owningDescriptor).getNamespace();
+            int scopeLength = namespace.length();
+            while (scopeLength > 0) {
+                String fullyQualifiedName = extensionFields.getKey(namespace, scopeLength, name);
+                if (fullyQualifiedName != null) {
+                    return fullyQualifiedName;
                 }
+                scopeLength = TypeResolverPostProcessor.nextScopeLength(namespace, scopeLength);
             }
         }
         throw new ParserException(value, "Unknown option: '%s'", key.getName());
@@ -218,7 +251,7 @@ public class OptionsPostProcessor implements ProtoContextPostProcessor {
                 throw new ParserException(value, "Cannot set option '%s': expected message value", fieldName);
             }
             Message message = (Message) fieldType;
-            processOptions(context, message, descriptor, value.getMessage());
+            processOptions(context, message, descriptor, value.getMessage(), true);
         } else {
             throw new IllegalStateException("Unknown field type: " + fieldType);
         }
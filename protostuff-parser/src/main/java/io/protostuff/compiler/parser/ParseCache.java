@@ -0,0 +1,41 @@
+package io.protostuff.compiler.parser;
+
+import java.util.function.Supplier;
+import org.antlr.v4.runtime.CharStream;
+
+/**
+ * Cache of parsed proto files. Holds proto file models as they were built
+ * by parse listeners, before any post-processing.
+ */
+public interface ParseCache {
+
+    /**
+     * Cache that is always empty - every file is parsed.
+     */
+    ParseCache DISABLED = new ParseCache() {
+        @Override
+        public ProtoContext load(String filename, CharStream stream, Supplier<ProtoContext> parser) {
+            return parser.get();
+        }
+
+        @Override
+        public long getHitCount() {
+            return 0;
+        }
+
+        @Override
+        public long getMissCount() {
+            return 0;
+        }
+    };
+
+    /**
+     * Returns context of a cached proto file with the same name and content,
+     * or parses given stream using given parser and stores its result in the cache.
+     */
+    ProtoContext load(String filename, CharStream stream, Supplier<ProtoContext> parser);
+
+    long getHitCount();
+
+    long getMissCount();
+}
@@ -0,0 +1,41 @@
+package io.protostuff.compiler.parser;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Provider;
+
+/**
+ * Provides a {@link ParseCache} configured by system properties.
+ * Cache is disabled unless {@value #CACHE_DIR} property is set.
+ */
+public class ParseCacheProvider implements Provider<ParseCache> {
+
+    /**
+     * Cache directory.
+     */
+    public static final String CACHE_DIR = "protostuff.compiler.cache.dir";
+
+    /**
+     * Max size of a cache, in megabytes.
+     */
+    public static final String CACHE_MAX_SIZE = "protostuff.compiler.cache.maxSize";
+
+    /**
+     * Max age of cache entries, in days.
+     */
+    public static final String CACHE_MAX_AGE = "protostuff.compiler.cache.maxAge";
+
+    private static final long DEFAULT_MAX_SIZE = 256;
+    private static final long DEFAULT_MAX_AGE = 30;
+
+    @Override
+    public ParseCache get() {
+        String dir = System.getProperty(CACHE_DIR);
+        if (dir == null || dir.isEmpty()) {
+            return ParseCache.DISABLED;
+        }
+        long maxSize = Long.getLong(CACHE_MAX_SIZE, DEFAULT_MAX_SIZE) * 1024 * 1024;
+        long maxAge = TimeUnit.DAYS.toMillis(Long.getLong(CACHE_MAX_AGE, DEFAULT_MAX_AGE));
+        return DiskParseCache.open(Paths.get(dir), maxSize, maxAge);
+    }
+}
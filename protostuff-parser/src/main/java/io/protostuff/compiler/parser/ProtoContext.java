@@ -1,12 +1,12 @@
 package io.protostuff.compiler.parser;
 
+import io.protostuff.compiler.model.CommentBuffer;
 import io.protostuff.compiler.model.Element;
 import io.protostuff.compiler.model.Proto;
 import io.protostuff.compiler.model.Type;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.FilenameUtils;
@@ -20,34 +20,63 @@ import org.apache.commons.io.FilenameUtils;
 public class ProtoContext {
 
     private final String filename;
-    private final Map<String, Type> symbolTable;
-    private final Deque<Object> declarationStack;
+    private final NameTable<Type> symbolTable;
+    private Deque<Object> declarationStack;
+    private CommentBuffer commentBuffer;
     private final Proto proto;
-    private final ExtensionRegistry extensionRegistry;
+    private final ProtoExtensionRegistry extensionRegistry;
     private final List<ProtoContext> imports;
     private final List<ProtoContext> publicImports;
 
+    /**
+     * All symbols that are visible from this context: local types, types from public
+     * imports and types exported by imported files. Built on first lookup.
+     */
+    private volatile NameTable<Type> visibleSymbols;
+
+    /**
+     * Symbols that are visible to files that import this context:
+     * local types and types exported by public imports. Built on first lookup.
+     */
+    private volatile NameTable<Type> exportedSymbols;
+
     private boolean initialized;
+    private volatile boolean frozen;
+    private volatile boolean headerOnly;
     private FileReader fileReader;
 
     /**
      * Create new empty context instance for a given filename.
      */
     public ProtoContext(String filename) {
+        this(filename, createProto(filename));
+    }
+
+    /**
+     * Create new context instance for a given filename and
+     * already parsed proto file.
+     */
+    public ProtoContext(String filename, Proto proto) {
         this.filename = filename;
-        symbolTable = new HashMap<>();
+        symbolTable = new NameTable<>();
         declarationStack = new ArrayDeque<>();
+        commentBuffer = new CommentBuffer();
         imports = new ArrayList<>();
         publicImports = new ArrayList<>();
-        proto = new Proto();
+        this.proto = proto;
         proto.setContext(this);
-        proto.setFilename(filename);
-        proto.setName(getFilenameWithoutExtension(filename));
         push(proto);
         extensionRegistry = new ProtoExtensionRegistry(this);
     }
 
-    private String getFilenameWithoutExtension(String filename) {
+    private static Proto createProto(String filename) {
+        Proto proto = new Proto();
+        proto.setFilename(filename);
+        proto.setName(getFilenameWithoutExtension(filename));
+        return proto;
+    }
+
+    private static String getFilenameWithoutExtension(String filename) {
         String shortFilename = FilenameUtils.getName(filename);
         return FilenameUtils.removeExtension(shortFilename);
     }
@@ -76,6 +105,14 @@ public class ProtoContext {
         declarationStack.push(declaration);
     }
 
+    /**
+     * Get a buffer for text of comments of this file.
+     * Used by parse listeners.
+     */
+    public CommentBuffer getCommentBuffer() {
+        return commentBuffer;
+    }
+
     /**
      * Pop an element from from a declaration stack.
      * Used by parse listeners.
@@ -93,10 +130,26 @@ public class ProtoContext {
      * Register user type in symbol table. Full name should start with ".".
      */
     public <T extends Type & Element> void register(String fullyQualifiedName, T type) {
+        checkNotFrozen();
         if (resolve(fullyQualifiedName) != null) {
             throw new ParserException(type, "Cannot register duplicate type: %s", fullyQualifiedName);
         }
         symbolTable.put(fullyQualifiedName, type);
+        // types are registered before context is visible to other threads
+        NameTable<Type> visible = visibleSymbols;
+        if (visible != null) {
+            visible.put(fullyQualifiedName, type);
+        }
+        NameTable<Type> exported = exportedSymbols;
+        if (exported != null) {
+            exported.put(fullyQualifiedName, type);
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Can not modify frozen context: " + filename);
+        }
     }
 
     private <T> T fail(Object descriptor, Class<T> targetClass) {
@@ -147,37 +200,52 @@ public class ProtoContext {
      * using this proto context.
      */
     public Type resolve(String fullyQualifiedName) {
-        Type local = symbolTable.get(fullyQualifiedName);
-        if (local != null) {
-            return local;
-        }
-        for (ProtoContext importedContext : publicImports) {
-            Type imported = importedContext.resolve(fullyQualifiedName);
-            if (imported != null) {
-                return imported;
+        return getVisibleSymbols().get(fullyQualifiedName);
+    }
+
+    /**
+     * Resolve a type declaration by it's relative name in a given scope,
+     * {@code namespace.substring(0, scopeLength)}, without building
+     * a fully-qualified name.
+     */
+    public Type resolve(String namespace, int scopeLength, String typeName) {
+        return getVisibleSymbols().get(namespace, scopeLength, typeName);
+    }
+
+    private NameTable<Type> getVisibleSymbols() {
+        NameTable<Type> result = visibleSymbols;
+        if (result == null) {
+            result = new NameTable<>(symbolTable);
+            for (ProtoContext importedContext : publicImports) {
+                addAbsent(result, importedContext.getVisibleSymbols());
             }
-        }
-        for (ProtoContext importedContext : imports) {
-            Type imported = importedContext.resolveImport(fullyQualifiedName);
-            if (imported != null) {
-                return imported;
+            for (ProtoContext importedContext : imports) {
+                addAbsent(result, importedContext.getExportedSymbols());
             }
+            visibleSymbols = result;
         }
-        return null;
+        return result;
     }
 
-    private Type resolveImport(String typeName) {
-        Type local = symbolTable.get(typeName);
-        if (local != null) {
-            return local;
-        }
-        for (ProtoContext importedContext : publicImports) {
-            Type imported = importedContext.resolveImport(typeName);
-            if (imported != null) {
-                return imported;
+    private NameTable<Type> getExportedSymbols() {
+        NameTable<Type> result = exportedSymbols;
+        if (result == null) {
+            result = new NameTable<>(symbolTable);
+            for (ProtoContext importedContext : publicImports) {
+                addAbsent(result, importedContext.getExportedSymbols());
             }
+            exportedSymbols = result;
+        }
+        return result;
+    }
+
+    /**
+     * First visible declaration wins, in the order of lookup.
+     */
+    private static void addAbsent(Map<String, Type> target, Map<String, Type> source) {
+        for (Map.Entry<String, Type> entry : source.entrySet()) {
+            target.putIfAbsent(entry.getKey(), entry.getValue());
         }
-        return null;
     }
 
     public boolean isInitialized() {
@@ -188,34 +256,101 @@ public class ProtoContext {
         this.initialized = initialized;
     }
 
+    /**
+     * Header-only context is loaded as a dependency: its types are registered
+     * and resolved, but validation and option value checks are skipped.
+     */
+    public boolean isHeaderOnly() {
+        return headerOnly;
+    }
+
+    public void setHeaderOnly(boolean headerOnly) {
+        checkNotFrozen();
+        this.headerOnly = headerOnly;
+    }
+
     public List<ProtoContext> getImports() {
         return imports;
     }
 
+    /**
+     * Add imported context. Types exported by it become visible in this context.
+     */
     public void addImport(ProtoContext importedProto) {
+        checkNotFrozen();
         imports.add(importedProto);
+        visibleSymbols = null;
+        extensionRegistry.importsChanged();
     }
 
     public List<ProtoContext> getPublicImports() {
         return publicImports;
     }
 
+    /**
+     * Add publicly imported context. Types visible in it become visible in this
+     * context and in all files that import it.
+     */
     public void addPublicImport(ProtoContext importedProto) {
+        checkNotFrozen();
         publicImports.add(importedProto);
+        visibleSymbols = null;
+        exportedSymbols = null;
+        extensionRegistry.importsChanged();
     }
 
-    public ExtensionRegistry getExtensionRegistry() {
+    public ProtoExtensionRegistry getExtensionRegistry() {
         return extensionRegistry;
     }
 
+    /**
+     * Attach this context to an extension index of a compilation. Must be
+     * called before extensions are registered.
+     */
+    public void setExtensionIndex(ExtensionIndex extensionIndex) {
+        checkNotFrozen();
+        extensionRegistry.setIndex(extensionIndex);
+    }
+
     public FileReader getFileReader() {
         return fileReader;
     }
 
     public void setFileReader(FileReader fileReader) {
+        checkNotFrozen();
         this.fileReader = fileReader;
     }
 
+    /**
+     * Make this context read-only, so it can be shared between compilers
+     * and threads. Context must be initialized.
+     */
+    public void freeze() {
+        if (!initialized) {
+            throw new IllegalStateException("Can not freeze uninitialized context: " + filename);
+        }
+        // file reader is used only for imports, do not hold it
+        fileReader = null;
+        // shared contexts must not hold an index of a compilation that loaded them
+        extensionRegistry.setIndex(null);
+        frozen = true;
+    }
+
+    /**
+     * Drop state that is used only by parse listeners.
+     * Called when context is post-processed.
+     */
+    public void compact() {
+        checkNotFrozen();
+        declarationStack = null;
+        // elements keep references to the buffer, context does not need it
+        commentBuffer = null;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     @Override
     public String toString() {
         return "ProtoContext{'" + filename + "'}";
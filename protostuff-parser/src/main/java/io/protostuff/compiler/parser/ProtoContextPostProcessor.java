@@ -8,4 +8,11 @@ package io.protostuff.compiler.parser;
 public interface ProtoContextPostProcessor {
 
     void process(ProtoContext context);
+
+    /**
+     * Run checks that were skipped when given context was loaded as
+     * {@linkplain ProtoContext#isHeaderOnly() header-only}.
+     */
+    default void validate(ProtoContext context) {
+    }
 }
@@ -1,18 +1,28 @@
 package io.protostuff.compiler.parser;
 
 import io.protostuff.compiler.model.Extension;
-import io.protostuff.compiler.model.Import;
-import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.model.Field;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 
 /**
  * Composite extension registry - combination of local extenstion registry
- * and extension registries of all imported files.
+ * and extension registries of all (directly or transitively) imported files.
+ *
+ * <p>When context is attached to an {@link ExtensionIndex}, extensions are taken
+ * from the index and filtered by reachable files; extensions of reachable files
+ * that are not in the same index (shared contexts) are taken from their local
+ * registries.
  *
  * @author Kostiantyn Shchepanovskyi
  */
@@ -20,43 +30,166 @@ public final class ProtoExtensionRegistry extends AbstractExtensionRegistry {
 
     private final ExtensionRegistry localExtensionRegistry;
     private final ProtoContext context;
-    private final ConcurrentMap<String, Collection<Extension>> extensionCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, VisibleExtensions> extensionCache = new ConcurrentHashMap<>();
+
+    @Nullable
+    private volatile ExtensionIndex index;
+
+    /**
+     * Contexts that are reachable from this context by imports, including itself,
+     * mapped to their position in breadth-first order. Built on first lookup.
+     */
+    private volatile Map<ProtoContext, Integer> reachableContexts;
 
     public ProtoExtensionRegistry(ProtoContext context) {
         this.context = context;
         this.localExtensionRegistry = new LocalExtensionRegistry();
     }
 
+    void setIndex(@Nullable ExtensionIndex index) {
+        ExtensionIndex previous = this.index;
+        if (previous != null && previous != index) {
+            previous.unregister(context);
+        }
+        this.index = index;
+        importsChanged();
+    }
+
+    void importsChanged() {
+        reachableContexts = null;
+        extensionCache.clear();
+    }
+
     @Override
     public void registerExtension(Extension extension) {
         super.registerExtension(extension);
         localExtensionRegistry.registerExtension(extension);
+        ExtensionIndex extensionIndex = index;
+        if (extensionIndex != null) {
+            extensionIndex.register(context, extension);
+        }
         String fullyQualifiedName = extension.getExtendee().getFullyQualifiedName();
         extensionCache.remove(fullyQualifiedName);
     }
 
     @Override
     public Collection<Extension> getExtensions(String fullMessageName) {
-        return extensionCache.computeIfAbsent(fullMessageName, name -> {
-            Collection<Extension> result = new ArrayList<>();
-            result.addAll(localExtensionRegistry.getExtensions(name));
-            Deque<Import> queue = new ArrayDeque<>();
-            queue.addAll(context.getProto().getImports());
-            while (!queue.isEmpty()) {
-                Import anImport = queue.poll();
-                Proto proto = anImport.getProto();
-                Collection<Extension> extensions = getExtensions(proto, name);
-                result.addAll(extensions);
-                queue.addAll(proto.getPublicImports());
+        return getVisibleExtensions(fullMessageName).extensions;
+    }
+
+    @Override
+    public NameTable<Field> getExtensionFields(String fullMessageName) {
+        ExtensionIndex extensionIndex = index;
+        VisibleExtensions visibleExtensions = getVisibleExtensions(fullMessageName);
+        if (extensionIndex != null && visibleExtensions.complete) {
+            // all extensions from the index are visible - share fields table
+            return extensionIndex.getExtensionFields(fullMessageName);
+        }
+        return visibleExtensions.getFields();
+    }
+
+    private VisibleExtensions getVisibleExtensions(String fullMessageName) {
+        VisibleExtensions visibleExtensions = extensionCache.get(fullMessageName);
+        ExtensionIndex extensionIndex = index;
+        // other files that are loaded by the same importer could change extensions in the index
+        if (visibleExtensions == null || extensionIndex != null
+                && visibleExtensions.registrations != extensionIndex.getExtensions(fullMessageName)) {
+            visibleExtensions = findVisibleExtensions(fullMessageName);
+            extensionCache.put(fullMessageName, visibleExtensions);
+        }
+        return visibleExtensions;
+    }
+
+    private VisibleExtensions findVisibleExtensions(String name) {
+        ExtensionIndex extensionIndex = index;
+        Map<ProtoContext, Integer> reachable = getReachableContexts();
+        List<Extension> result = new ArrayList<>();
+        boolean complete = true;
+        List<ExtensionIndex.Registration> indexRegistrations = null;
+        if (extensionIndex != null) {
+            indexRegistrations = extensionIndex.getExtensions(name);
+            List<ExtensionIndex.Registration> registrations = new ArrayList<>();
+            for (ExtensionIndex.Registration registration : indexRegistrations) {
+                if (reachable.containsKey(registration.getOwner())) {
+                    registrations.add(registration);
+                } else {
+                    complete = false;
+                }
             }
-            return result;
-        });
+            // files might be loaded concurrently, keep order independent of it
+            registrations.sort(Comparator.comparing(registration -> reachable.get(registration.getOwner())));
+            for (ExtensionIndex.Registration registration : registrations) {
+                result.add(registration.getExtension());
+            }
+        }
+        for (ProtoContext reachableContext : reachable.keySet()) {
+            ProtoExtensionRegistry registry = reachableContext.getExtensionRegistry();
+            if (extensionIndex == null || registry.index != extensionIndex) {
+                Collection<Extension> extensions = registry.localExtensionRegistry.getExtensions(name);
+                if (!extensions.isEmpty()) {
+                    result.addAll(extensions);
+                    complete = false;
+                }
+            }
+        }
+        return new VisibleExtensions(indexRegistrations, Collections.unmodifiableList(result), complete);
     }
 
-    private Collection<Extension> getExtensions(Proto proto, String name) {
-        ProtoContext protoContext = proto.getContext();
-        ExtensionRegistry extensionRegistry = protoContext.getExtensionRegistry();
-        return extensionRegistry.getExtensions(name);
+    private Map<ProtoContext, Integer> getReachableContexts() {
+        Map<ProtoContext, Integer> result = reachableContexts;
+        if (result == null) {
+            result = new LinkedHashMap<>();
+            Deque<ProtoContext> queue = new ArrayDeque<>();
+            queue.add(context);
+            while (!queue.isEmpty()) {
+                ProtoContext next = queue.poll();
+                if (!result.containsKey(next)) {
+                    result.put(next, result.size());
+                    queue.addAll(next.getImports());
+                    queue.addAll(next.getPublicImports());
+                }
+            }
+            reachableContexts = result;
+        }
+        return result;
     }
 
+    private static final class VisibleExtensions {
+
+        /**
+         * Registrations from the index this instance is built from.
+         */
+        @Nullable
+        private final List<ExtensionIndex.Registration> registrations;
+
+        private final List<Extension> extensions;
+
+        /**
+         * True when visible extensions are exactly all extensions from the index.
+         */
+        private final boolean complete;
+
+        private volatile NameTable<Field> fields;
+
+        VisibleExtensions(@Nullable List<ExtensionIndex.Registration> registrations,
+                          List<Extension> extensions, boolean complete) {
+            this.registrations = registrations;
+            this.extensions = extensions;
+            this.complete = complete;
+        }
+
+        NameTable<Field> getFields() {
+            NameTable<Field> result = fields;
+            if (result == null) {
+                result = new NameTable<>();
+                for (Extension extension : extensions) {
+                    for (Field field : extension.getFields()) {
+                        result.put(extension.getNamespace() + field.getName(), field);
+                    }
+                }
+                fields = result;
+            }
+            return result;
+        }
+    }
 }
@@ -27,7 +27,7 @@ public class ProtoParseListener extends AbstractProtoParserListener {
     @Override
     public void exitProto(ProtoParser.ProtoContext ctx) {
         int i = 0;
-        List<String> comments = new ArrayList<>();
+        List<Token> comments = new ArrayList<>();
         while (i < tokens.size() && isWhitespace(tokens.get(i))) {
             // skip whitespaces until we reach line comments
             i++;
@@ -37,8 +37,7 @@ public class ProtoParseListener extends AbstractProtoParserListener {
             Token token = tokens.get(i);
             // skip processed LINE_COMMENT and following NL
             i += 2;
-            String text = getTextFromLineCommentToken(token);
-            comments.add(text);
+            comments.add(token);
         }
         if (i < tokens.size()) {
             // check if next token is not element that is owner of our comment block
@@ -47,10 +46,15 @@ public class ProtoParseListener extends AbstractProtoParserListener {
                 return;
             }
         }
-        List<String> trimComments = trim(comments);
-        for (String comment : trimComments) {
-            context.getProto().addComment(comment);
+        if (comments.isEmpty()) {
+            return;
         }
+        int[] ranges = new int[2 * comments.size()];
+        for (int j = 0; j < comments.size(); j++) {
+            ranges[2 * j] = appendLineComment(comments.get(j));
+            ranges[2 * j + 1] = context.getCommentBuffer().length();
+        }
+        context.getProto().setComments(context.getCommentBuffer(), ranges);
     }
 
     private boolean isComment(Token token) {
@@ -41,6 +41,10 @@ public class ProtoWalker {
         return new ProtoWalker(proto);
     }
 
+    public ProtoContext getContext() {
+        return context;
+    }
+
     static <T> Processor<T> wrap(ContextlessProcessor<T> contextlessProcessor) {
         return (context1, t) -> contextlessProcessor.run(t);
     }
@@ -129,7 +133,8 @@ public class ProtoWalker {
     }
 
     /**
-     * Start walking.
+     * Start walking. Each node is visited once and passed to all processors
+     * registered for its type, in the order they were registered.
      */
     public void walk() {
         for (Processor<Proto> protoProcessor : protoProcessors) {
@@ -139,63 +144,50 @@ public class ProtoWalker {
     }
 
     private void walk(Proto container) {
-        List<Service> services = container.getServices();
-        for (Processor<Service> serviceProcessor : serviceProcessors) {
-            for (Service service : services) {
-                serviceProcessor.run(context, service);
-                walk(service);
-            }
-        }
-        walk((UserTypeContainer) container);
-    }
-
-    private void walk(Service service) {
-        for (Processor<ServiceMethod> serviceMethodProcessor : serviceMethodProcessors) {
+        for (Service service : container.getServices()) {
+            run(serviceProcessors, service);
             for (ServiceMethod serviceMethod : service.getMethods()) {
-                serviceMethodProcessor.run(context, serviceMethod);
+                run(serviceMethodProcessors, serviceMethod);
             }
         }
+        walk((UserTypeContainer) container);
     }
 
     private void walk(UserTypeContainer container) {
-        List<Message> messages = container.getMessages();
-        for (Message message : messages) {
-            for (Processor<Message> messageProcessor : messageProcessors) {
-                messageProcessor.run(context, message);
-                walk(message);
-            }
+        for (Message message : container.getMessages()) {
+            run(messageProcessors, message);
+            walk(message);
             walk((UserTypeContainer) message);
         }
-        List<Enum> enums = container.getEnums();
-        for (Processor<Enum> enumProcessor : enumProcessors) {
-            for (Enum anEnum : enums) {
-                enumProcessor.run(context, anEnum);
-                walk(anEnum);
-            }
-        }
-    }
-
-    private void walk(Enum anEnum) {
-        for (Processor<EnumConstant> enumConstantProcessor : enumConstantProcessors) {
-            for (EnumConstant enumConstant : anEnum.getConstants()) {
-                enumConstantProcessor.run(context, enumConstant);
+        for (Enum anEnum : container.getEnums()) {
+            run(enumProcessors, anEnum);
+            if (!enumConstantProcessors.isEmpty()) {
+                for (EnumConstant enumConstant : anEnum.getConstants()) {
+                    run(enumConstantProcessors, enumConstant);
+                }
             }
         }
     }
 
     private void walk(Message message) {
-        for (Processor<Field> fieldProcessor : fieldProcessors) {
+        if (!fieldProcessors.isEmpty()) {
             for (Field field : message.getFields()) {
-                fieldProcessor.run(context, field);
+                run(fieldProcessors, field);
             }
         }
-        for (Processor<Oneof> processor : oneofProcessors) {
+        if (!oneofProcessors.isEmpty()) {
             for (Oneof oneof : message.getOneofs()) {
-                processor.run(context, oneof);
+                run(oneofProcessors, oneof);
             }
         }
     }
 
+    private <T> void run(List<Processor<T>> processors, T node) {
+        for (Processor<T> processor : processors) {
+            processor.run(context, node);
+        }
+    }
+
     @FunctionalInterface
     public interface Processor<T> {
 
@@ -0,0 +1,74 @@
+package io.protostuff.compiler.parser;
+
+import com.google.common.hash.Hashing;
+import io.protostuff.compiler.model.Import;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * JVM-wide registry of frozen contexts for {@code google/protobuf/*} files -
+ * descriptor.proto and well-known types. Contexts are registered by file
+ * name and content hash, so a modified copy of a file is never shared
+ * instead of an original one.
+ */
+public final class SharedProtoContexts {
+
+    private static final String SHAREABLE_PREFIX = "google/protobuf/";
+
+    private static final ConcurrentMap<String, ProtoContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private SharedProtoContexts() {
+        // utility class
+    }
+
+    public static boolean isShareable(String filename) {
+        return filename.startsWith(SHAREABLE_PREFIX);
+    }
+
+    /**
+     * Returns hash of a file content.
+     */
+    public static String getContentHash(CharStream stream) {
+        String content = stream.getText(Interval.of(0, stream.size() - 1));
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+    }
+
+    @Nullable
+    public static ProtoContext get(String filename, String contentHash) {
+        return CONTEXTS.get(filename + ':' + contentHash);
+    }
+
+    /**
+     * Register frozen context. If there is a shared context for the same file
+     * and it has the same imports, that context is returned instead of given one.
+     */
+    public static ProtoContext register(String filename, String contentHash, ProtoContext context) {
+        if (!context.isFrozen()) {
+            throw new IllegalArgumentException("Context is not frozen: " + filename);
+        }
+        ProtoContext existing = CONTEXTS.putIfAbsent(filename + ':' + contentHash, context);
+        if (existing != null && hasSameImports(existing, context)) {
+            return existing;
+        }
+        return context;
+    }
+
+    private static boolean hasSameImports(ProtoContext a, ProtoContext b) {
+        List<Import> importsA = a.getProto().getImports();
+        List<Import> importsB = b.getProto().getImports();
+        if (importsA.size() != importsB.size()) {
+            return false;
+        }
+        for (int i = 0; i < importsA.size(); i++) {
+            if (importsA.get(i).getProto() != importsB.get(i).getProto()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
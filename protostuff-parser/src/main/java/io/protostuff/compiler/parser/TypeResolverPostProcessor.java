@@ -48,6 +48,25 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
         return scopeLookupList;
     }
 
+    /**
+     * Returns length of the next outer scope of a namespace, or {@code 0}
+     * if there are no more scopes. Scopes are prefixes of a namespace that
+     * end with '.', starting from the namespace itself:
+     * <pre>
+     * for (int scopeLength = namespace.length(); scopeLength > 0;
+     *         scopeLength = nextScopeLength(namespace, scopeLength)) {
+     *     ...
+     * }
+     * </pre>
+     * This is allocation-free equivalent of {@link #createScopeLookupList(UserTypeContainer)}.
+     */
+    static int nextScopeLength(String namespace, int scopeLength) {
+        if (scopeLength < 2) {
+            return 0;
+        }
+        return namespace.lastIndexOf('.', scopeLength - 2) + 1;
+    }
+
     @Override
     public void process(ProtoContext context) {
         resolveTypeReferences(context);
@@ -55,13 +74,13 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
 
     private void resolveTypeReferences(ProtoContext context) {
         Proto proto = context.getProto();
-        Deque<String> scopeLookupList = createScopeLookupList(proto);
+        String namespace = proto.getNamespace();
 
         for (Service service : proto.getServices()) {
 
             for (ServiceMethod method : service.getMethods()) {
                 String argTypeName = method.getArgTypeName();
-                FieldType argType = resolveFieldType(method, context, scopeLookupList, argTypeName);
+                FieldType argType = resolveFieldType(method, context, namespace, argTypeName);
                 if (!(argType instanceof Message)) {
                     String format = "Cannot use '%s' as a service method argument type: not a message";
                     throw new ParserException(method, format, argType.getName());
@@ -69,7 +88,7 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
                 method.setArgType((Message) argType);
 
                 String returnTypeName = method.getReturnTypeName();
-                FieldType returnType = resolveFieldType(method, context, scopeLookupList, returnTypeName);
+                FieldType returnType = resolveFieldType(method, context, namespace, returnTypeName);
                 if (!(returnType instanceof Message)) {
                     String format = "Cannot use '%s' as a service method return type: not a message";
                     throw new ParserException(method, format, returnType.getName());
@@ -78,14 +97,14 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
             }
         }
 
-        resolveTypeReferences(context, scopeLookupList, proto);
+        resolveTypeReferences(context, namespace, proto);
 
     }
 
-    private void resolveTypeReferences(ProtoContext context, Deque<String> scopeLookupList, UserTypeContainer container) {
+    private void resolveTypeReferences(ProtoContext context, String namespace, UserTypeContainer container) {
         for (Extension extension : container.getDeclaredExtensions()) {
             String extendeeName = extension.getExtendeeName();
-            UserType type = resolveUserType(extension, context, scopeLookupList, extendeeName);
+            UserType type = resolveUserType(extension, context, namespace, extendeeName);
             if (!(type instanceof Message)) {
                 throw new ParserException(extension, "Cannot extend '%s': not a message", type.getName());
             }
@@ -95,7 +114,7 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
                 // for groups field type is already set
                 if (field.getType() == null) {
                     String typeName = field.getTypeName();
-                    FieldType fieldType = resolveFieldType(field, context, scopeLookupList, typeName);
+                    FieldType fieldType = resolveFieldType(field, context, namespace, typeName);
                     field.setType(fieldType);
                 }
             }
@@ -110,40 +129,38 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
             messages.addAll(extension.getGroups());
         }
         for (Message message : messages) {
-            String root = scopeLookupList.peek();
-            scopeLookupList.push(root + message.getName() + ".");
-            updateFieldTypes(context, scopeLookupList, message);
+            String messageNamespace = namespace + message.getName() + ".";
+            updateFieldTypes(context, messageNamespace, message);
             for (Oneof oneof : message.getOneofs()) {
-                updateFieldTypes(context, scopeLookupList, oneof);
+                updateFieldTypes(context, messageNamespace, oneof);
             }
 
-            resolveTypeReferences(context, scopeLookupList, message);
-            scopeLookupList.pop();
+            resolveTypeReferences(context, messageNamespace, message);
         }
     }
 
-    private void updateFieldTypes(ProtoContext context, Deque<String> scopeLookupList, FieldContainer fieldContainer) {
+    private void updateFieldTypes(ProtoContext context, String namespace, FieldContainer fieldContainer) {
         // check if field type isn't already set
         fieldContainer.getFields()
                 .stream()
                 .filter(field -> field.getType() == null) // for map fields it is set by parser
                 .forEach(field -> {
                     String typeName = field.getTypeName();
-                    FieldType fieldType = resolveFieldType(field, context, scopeLookupList, typeName);
+                    FieldType fieldType = resolveFieldType(field, context, namespace, typeName);
                     field.setType(fieldType);
                 });
     }
 
-    private FieldType resolveFieldType(Element source, ProtoContext context, Deque<String> scopeLookupList, String typeName) {
+    private FieldType resolveFieldType(Element source, ProtoContext context, String namespace, String typeName) {
         ScalarFieldType scalarFieldType = ScalarFieldType.getByName(typeName);
         if (scalarFieldType != null) {
             return scalarFieldType;
         } else {
-            return resolveUserType(source, context, scopeLookupList, typeName);
+            return resolveUserType(source, context, namespace, typeName);
         }
     }
 
-    private UserType resolveUserType(Element source, ProtoContext context, Deque<String> scopeLookupList, String typeName) {
+    private UserType resolveUserType(Element source, ProtoContext context, String namespace, String typeName) {
         UserType fieldType = null;
         // A leading '.' (for example, .foo.bar.Baz) means to start from the outermost scope
         if (typeName.startsWith(".")) {
@@ -152,13 +169,14 @@ public class TypeResolverPostProcessor implements ProtoContextPostProcessor {
                 fieldType = type;
             }
         } else {
-            for (String scope : scopeLookupList) {
-                String fullTypeName = scope + typeName;
-                UserType type = (UserType) context.resolve(fullTypeName);
+            int scopeLength = namespace.length();
+            while (scopeLength > 0) {
+                UserType type = (UserType) context.resolve(namespace, scopeLength, typeName);
                 if (type != null) {
                     fieldType = type;
                     break;
                 }
+                scopeLength = nextScopeLength(namespace, scopeLength);
             }
         }
         if (fieldType == null) {
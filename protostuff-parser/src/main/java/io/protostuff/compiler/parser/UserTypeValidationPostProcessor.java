@@ -6,6 +6,7 @@ import io.protostuff.compiler.model.Enum;
 import io.protostuff.compiler.model.EnumConstant;
 import io.protostuff.compiler.model.Field;
 import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.OptionPath;
 import io.protostuff.compiler.model.Range;
 import io.protostuff.compiler.model.Service;
 import io.protostuff.compiler.model.ServiceMethod;
@@ -20,21 +21,34 @@ import java.util.Set;
  *
  * @author Kostiantyn Shchepanovskyi
  */
-public class UserTypeValidationPostProcessor implements ProtoContextPostProcessor {
+public class UserTypeValidationPostProcessor implements WalkingPostProcessor {
 
-    private static final String ALLOW_ALIAS = "allow_alias";
+    private static final OptionPath ALLOW_ALIAS = OptionPath.of("allow_alias");
     private static final int MIN_TAG = 1;
     private static final int MAX_TAG = Field.MAX_TAG_VALUE;
     private static final int SYS_RESERVED_START = 19000;
     private static final int SYS_RESERVED_END = 19999;
 
     @Override
-    public void process(ProtoContext context) {
-        ProtoWalker.newInstance(context)
-                .onMessage(this::processMessage)
+    public void register(ProtoWalker walker) {
+        if (walker.getContext().isHeaderOnly()) {
+            // header-only contexts are validated on demand
+            return;
+        }
+        registerChecks(walker);
+    }
+
+    @Override
+    public void validate(ProtoContext context) {
+        ProtoWalker walker = ProtoWalker.newInstance(context);
+        registerChecks(walker);
+        walker.walk();
+    }
+
+    private void registerChecks(ProtoWalker walker) {
+        walker.onMessage(this::processMessage)
                 .onEnum(this::processEnum)
-                .onService(this::processService)
-                .walk();
+                .onService(this::processService);
     }
 
     private void processService(Service service) {
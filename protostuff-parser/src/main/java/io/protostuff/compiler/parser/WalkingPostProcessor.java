@@ -0,0 +1,24 @@
+package io.protostuff.compiler.parser;
+
+/**
+ * Post-processor that only needs to visit nodes of a proto tree.
+ *
+ * <p>Adjacent walking post-processors share a single {@link ProtoWalker}
+ * pass: every node is passed to all of them, in the order post-processors are
+ * registered. Processor that depends on results of a previous processor for
+ * other nodes (not only for the same node) should not be a walking one.
+ */
+public interface WalkingPostProcessor extends ProtoContextPostProcessor {
+
+    /**
+     * Register node processors in a given walker.
+     */
+    void register(ProtoWalker walker);
+
+    @Override
+    default void process(ProtoContext context) {
+        ProtoWalker walker = ProtoWalker.newInstance(context);
+        register(walker);
+        walker.walk();
+    }
+}
@@ -0,0 +1,354 @@
+package io.protostuff.compiler.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Message in protobuf binary wire format, decoded without a schema.
+ * Fields are kept in wire order; length-delimited values are not copied,
+ * they point to a region of the original buffer.
+ */
+final class WireMessage {
+
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int START_GROUP = 3;
+    static final int END_GROUP = 4;
+    static final int FIXED32 = 5;
+
+    private static final int[] NO_INTS = new int[0];
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+
+    private int size;
+    private int[] numbers = NO_INTS;
+    private int[] wireTypes = NO_INTS;
+    /**
+     * Numeric value for varint and fixed fields; for length-delimited
+     * fields - offset (high 32 bits) and length (low 32 bits) in the buffer.
+     */
+    private long[] values = new long[0];
+
+    /**
+     * Position after the last varint read by {@link #readVarint(int, int)}.
+     */
+    private int varintEnd;
+
+    private WireMessage(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        decode();
+    }
+
+    static WireMessage parse(byte[] buffer) {
+        return new WireMessage(buffer, 0, buffer.length);
+    }
+
+    private void decode() {
+        int position = offset;
+        int limit = offset + length;
+        while (position < limit) {
+            long tag = readVarint(position, limit);
+            position = varintEnd;
+            int number = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            if (number <= 0) {
+                throw invalid();
+            }
+            long value;
+            switch (wireType) {
+                case VARINT:
+                    value = readVarint(position, limit);
+                    position = varintEnd;
+                    break;
+                case FIXED64:
+                    value = readFixed(position, limit, 8);
+                    position += 8;
+                    break;
+                case FIXED32:
+                    value = readFixed(position, limit, 4);
+                    position += 4;
+                    break;
+                case LENGTH_DELIMITED:
+                    long fieldLength = readVarint(position, limit);
+                    position = varintEnd;
+                    if (fieldLength < 0 || fieldLength > limit - position) {
+                        throw invalid();
+                    }
+                    value = ((long) position << 32) | fieldLength;
+                    position += (int) fieldLength;
+                    break;
+                case START_GROUP:
+                    // groups are not used by descriptors, skip them
+                    position = skipGroup(position, limit, number);
+                    continue;
+                default:
+                    throw invalid();
+            }
+            add(number, wireType, value);
+        }
+    }
+
+    private long readVarint(int position, int limit) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw invalid();
+            }
+            byte b = buffer[position++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                varintEnd = position;
+                return result;
+            }
+        }
+        throw invalid();
+    }
+
+    private long readFixed(int position, int limit, int bytes) {
+        if (limit - position < bytes) {
+            throw invalid();
+        }
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            result |= (buffer[position + i] & 0xFFL) << (8 * i);
+        }
+        return result;
+    }
+
+    private int skipGroup(int position, int limit, int groupNumber) {
+        int current = position;
+        while (current < limit) {
+            long tag = readVarint(current, limit);
+            current = varintEnd;
+            int wireType = (int) (tag & 7);
+            switch (wireType) {
+                case VARINT:
+                    readVarint(current, limit);
+                    current = varintEnd;
+                    break;
+                case FIXED64:
+                    current = skip(current, limit, 8);
+                    break;
+                case FIXED32:
+                    current = skip(current, limit, 4);
+                    break;
+                case LENGTH_DELIMITED:
+                    long fieldLength = readVarint(current, limit);
+                    current = skip(varintEnd, limit, fieldLength);
+                    break;
+                case START_GROUP:
+                    current = skipGroup(current, limit, (int) (tag >>> 3));
+                    break;
+                case END_GROUP:
+                    if ((int) (tag >>> 3) == groupNumber) {
+                        return current;
+                    }
+                    throw invalid();
+                default:
+                    throw invalid();
+            }
+        }
+        throw invalid();
+    }
+
+    private static int skip(int position, int limit, long bytes) {
+        if (bytes < 0 || bytes > limit - position) {
+            throw invalid();
+        }
+        return position + (int) bytes;
+    }
+
+    private void add(int number, int wireType, long value) {
+        if (size == numbers.length) {
+            int capacity = size == 0 ? 8 : size * 2;
+            numbers = Arrays.copyOf(numbers, capacity);
+            wireTypes = Arrays.copyOf(wireTypes, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        numbers[size] = number;
+        wireTypes[size] = wireType;
+        values[size] = value;
+        size++;
+    }
+
+    private static ParserException invalid() {
+        return new ParserException("Invalid descriptor set: malformed protobuf message");
+    }
+
+    int size() {
+        return size;
+    }
+
+    int numberAt(int index) {
+        return numbers[index];
+    }
+
+    int wireTypeAt(int index) {
+        return wireTypes[index];
+    }
+
+    long longAt(int index) {
+        return values[index];
+    }
+
+    String stringAt(int index) {
+        long value = checkLengthDelimited(index);
+        return new String(buffer, (int) (value >>> 32), (int) value, StandardCharsets.UTF_8);
+    }
+
+    byte[] bytesAt(int index) {
+        long value = checkLengthDelimited(index);
+        int start = (int) (value >>> 32);
+        return Arrays.copyOfRange(buffer, start, start + (int) value);
+    }
+
+    WireMessage messageAt(int index) {
+        long value = checkLengthDelimited(index);
+        return new WireMessage(buffer, (int) (value >>> 32), (int) value);
+    }
+
+    /**
+     * Decode packed repeated varint field value.
+     */
+    long[] packedVarintsAt(int index) {
+        long value = checkLengthDelimited(index);
+        int position = (int) (value >>> 32);
+        int limit = position + (int) value;
+        long[] result = new long[(int) value];
+        int count = 0;
+        while (position < limit) {
+            result[count++] = readVarint(position, limit);
+            position = varintEnd;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Decode packed repeated fixed-size field value, elements are 4 or 8 bytes long.
+     */
+    long[] packedFixedAt(int index, int bytes) {
+        long value = checkLengthDelimited(index);
+        int position = (int) (value >>> 32);
+        int length = (int) value;
+        if (length % bytes != 0) {
+            throw invalid();
+        }
+        long[] result = new long[length / bytes];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = readFixed(position + i * bytes, position + length, bytes);
+        }
+        return result;
+    }
+
+    private long checkLengthDelimited(int index) {
+        if (wireTypes[index] != LENGTH_DELIMITED) {
+            throw invalid();
+        }
+        return values[index];
+    }
+
+    private int lastIndexOf(int number) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (numbers[i] == number) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    boolean has(int number) {
+        return lastIndexOf(number) >= 0;
+    }
+
+    /**
+     * Get a value of a varint field, last one wins.
+     */
+    long getLong(int number, long defaultValue) {
+        int index = lastIndexOf(number);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    int getInt(int number, int defaultValue) {
+        return (int) getLong(number, defaultValue);
+    }
+
+    boolean getBoolean(int number) {
+        return getLong(number, 0) != 0;
+    }
+
+    /**
+     * Get a value of a string field, last one wins.
+     */
+    @Nullable
+    String getString(int number) {
+        int index = lastIndexOf(number);
+        return index < 0 ? null : stringAt(index);
+    }
+
+    /**
+     * Get a value of a message field.
+     */
+    @Nullable
+    WireMessage getMessage(int number) {
+        int index = lastIndexOf(number);
+        return index < 0 ? null : messageAt(index);
+    }
+
+    List<String> getStrings(int number) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (numbers[i] == number) {
+                result.add(stringAt(i));
+            }
+        }
+        return result;
+    }
+
+    List<WireMessage> getMessages(int number) {
+        List<WireMessage> result = null;
+        for (int i = 0; i < size; i++) {
+            if (numbers[i] == number) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(messageAt(i));
+            }
+        }
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Get all values of a repeated integer field, packed or not.
+     */
+    int[] getInts(int number) {
+        int[] result = NO_INTS;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (numbers[i] != number) {
+                continue;
+            }
+            long[] items;
+            if (wireTypes[i] == LENGTH_DELIMITED) {
+                items = packedVarintsAt(i);
+            } else {
+                items = new long[] {values[i]};
+            }
+            if (result.length < count + items.length) {
+                result = Arrays.copyOf(result, Math.max(2 * result.length, count + items.length));
+            }
+            for (long item : items) {
+                result[count++] = (int) item;
+            }
+        }
+        return result.length == count ? result : Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,34 @@
+package io.protostuff.compiler.model;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CommentBufferTest {
+
+    @Test
+    public void commonIndentIsRemoved() {
+        CommentBuffer buffer = new CommentBuffer();
+        int[] ranges = new int[] {
+                buffer.append("//   first", 2, 10), buffer.length(),
+                buffer.append("//", 2, 2), buffer.length(),
+                buffer.append("//     second", 2, 13), buffer.length(),
+                buffer.append("//    ", 2, 6), buffer.length()
+        };
+        assertEquals(Arrays.asList("first", "", "  second", " "), buffer.getLines(ranges));
+    }
+
+    @Test
+    public void commentsAreCreatedOnDemand() {
+        CommentBuffer buffer = new CommentBuffer();
+        int[] ranges = new int[] {buffer.append("// comment", 2, 10), buffer.length()};
+        Message message = new Message(new Proto());
+        message.setComments(buffer, ranges);
+        assertEquals("comment", message.getComments());
+        assertSame(message.getCommentLines(), message.getCommentLines());
+        message.addComment("more");
+        assertEquals("comment\nmore", message.getComments());
+    }
+}
@@ -1,10 +1,21 @@
 package io.protostuff.compiler.model;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static io.protostuff.compiler.model.DynamicMessage.Value.createString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * @author Kostiantyn Shchepanovskyi
@@ -54,4 +65,106 @@ public class DynamicMessageTest {
         assertEquals("value", n.get("subkey").getString());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testOptionPath() throws Exception {
+        OptionPath path = OptionPath.of("(.io.protostuff.key).subkey");
+        assertEquals(2, path.length());
+        assertEquals(DynamicMessage.Key.extension("io.protostuff.key"), path.getKey(0));
+        assertEquals(DynamicMessage.Key.field("subkey"), path.getKey(1));
+        m.set(SourceCodeLocation.UNKNOWN, path, createString("value"));
+        assertEquals("value", m.get(path).getString());
+        assertEquals("value", m.get("(io.protostuff.key).subkey").getString());
+        assertNull(m.get("(io.protostuff.other).subkey"));
+    }
+
+    @Test
+    public void testManyFields() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            m.set("key" + i, createString("value" + i));
+        }
+        m.set("key7", createString("updated"));
+        assertEquals(20, m.size());
+        assertEquals("value19", m.get("key19").getString());
+        assertEquals("updated", m.get("key7").getString());
+    }
+
+    @Test
+    public void testNormalizeName() throws Exception {
+        m.set("a", createString("a"));
+        m.set("(b)", createString("b"));
+        m.set("c", createString("c"));
+        m.normalizeName(DynamicMessage.Key.extension("b"), ".pkg.b");
+        assertEquals("b", m.get("(pkg.b)").getString());
+        assertNull(m.get("(b)"));
+        assertEquals(3, m.size());
+    }
+
+    @Test
+    public void testNormalizeNameOfManyFields() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            m.set("(key" + i + ")", createString("value" + i));
+        }
+        m.set("(pkg.key3)", createString("old"));
+        m.normalizeName(DynamicMessage.Key.extension("key2"), ".pkg.key2");
+        m.normalizeName(DynamicMessage.Key.extension("key3"), ".pkg.key3");
+        assertEquals(20, m.size());
+        assertNull(m.get("(key2)"));
+        assertNull(m.get("(key3)"));
+        assertEquals("value2", m.get("(pkg.key2)").getString());
+        assertEquals("value3", m.get("(pkg.key3)").getString());
+        assertEquals("value19", m.get("(key19)").getString());
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<DynamicMessage.Key, DynamicMessage.Value> field : m.getFields()) {
+            names.add(field.getKey().getName());
+        }
+        assertEquals("pkg.key2", names.get(2));
+        assertEquals("key4", names.get(3));
+        assertEquals("pkg.key3", names.get(19));
+    }
+
+    @Test
+    public void testSerializeManyFields() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            m.set("key" + i, createString("value" + i));
+        }
+        m.get("key0");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(m);
+        }
+        DynamicMessage copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (DynamicMessage) in.readObject();
+        }
+        copy.set("key20", createString("value20"));
+        assertEquals(21, copy.size());
+        assertEquals("value7", copy.get("key7").getString());
+        assertEquals("value20", copy.get("key20").getString());
+    }
+
+    @Test
+    public void testConcurrentReadsOfManyFields() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 100; round++) {
+                DynamicMessage message = new DynamicMessage();
+                for (int i = 0; i < 50; i++) {
+                    message.set("key" + i, createString("value" + i));
+                }
+                List<Future<?>> readers = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    readers.add(executor.submit(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            assertEquals("value" + i, message.get("key" + i).getString());
+                        }
+                    }));
+                }
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
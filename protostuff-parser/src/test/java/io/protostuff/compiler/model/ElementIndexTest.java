@@ -0,0 +1,78 @@
+package io.protostuff.compiler.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ElementIndexTest {
+
+    @Test
+    public void wideMessage() {
+        Message message = new Message(new Proto());
+        for (int tag = 1; tag <= 800; tag++) {
+            message.addField(field(message, "f" + tag, tag));
+        }
+        assertSame(message.getFields().get(499), message.getField(500));
+        assertSame(message.getFields().get(499), message.getField("f500"));
+        assertNull(message.getField(0));
+        assertNull(message.getField(801));
+        assertNull(message.getField("f801"));
+    }
+
+    @Test
+    public void sparseTags() {
+        Message message = new Message(new Proto());
+        message.addField(field(message, "a", 1));
+        message.addField(field(message, "b", 1 << 20));
+        assertSame(message.getFields().get(1), message.getField(1 << 20));
+        assertNull(message.getField(2));
+    }
+
+    @Test
+    public void indexFollowsChanges() {
+        Message message = new Message(new Proto());
+        message.addField(field(message, "a", 1));
+        assertNull(message.getField("b"));
+        Field b = field(message, "b", 2);
+        message.addField(b);
+        assertSame(b, message.getField("b"));
+        List<Field> fields = new ArrayList<>();
+        Field c = field(message, "c", 2);
+        fields.add(c);
+        message.setFields(fields);
+        assertNull(message.getField("b"));
+        assertSame(c, message.getField(2));
+        // direct modification of a list
+        Field d = field(message, "d", 3);
+        message.getFields().add(d);
+        assertSame(d, message.getField(3));
+    }
+
+    @Test
+    public void enumAliases() {
+        Enum anEnum = new Enum(new Proto());
+        anEnum.addConstant(constant(anEnum, "A", -1));
+        anEnum.addConstant(constant(anEnum, "B", 0));
+        anEnum.addConstant(constant(anEnum, "ALIAS", 0));
+        assertSame(anEnum.getConstants().get(0), anEnum.getConstant(-1));
+        assertSame(anEnum.getConstants().get(1), anEnum.getConstant(0));
+        assertSame(anEnum.getConstants().get(2), anEnum.getConstant("ALIAS"));
+    }
+
+    private static Field field(Message message, String name, int tag) {
+        Field field = new Field(message);
+        field.setName(name);
+        field.setTag(tag);
+        return field;
+    }
+
+    private static EnumConstant constant(Enum anEnum, String name, int value) {
+        EnumConstant constant = new EnumConstant(anEnum);
+        constant.setName(name);
+        constant.setValue(value);
+        return constant;
+    }
+}
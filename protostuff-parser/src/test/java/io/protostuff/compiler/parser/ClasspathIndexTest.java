@@ -0,0 +1,163 @@
+package io.protostuff.compiler.parser;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClasspathIndexTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("protostuff-test-");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void lookupOrder() throws Exception {
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+        Files.write(classes.resolve("a.proto"), "classes".getBytes(StandardCharsets.UTF_8));
+        jar("dependency.jar", null, "a.proto", "pkg/b.proto");
+        Path main = jar("main.jar", "dependency.jar", "pkg/c.proto");
+        URL[] urls = {main.toUri().toURL(), classes.toUri().toURL()};
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(classLoader);
+            assertTrue(index.isComplete());
+            assertSame(index, ClasspathIndex.forClassLoader(classLoader));
+            // manifest class path of main.jar goes before classes directory
+            assertEquals("dependency.jar:a.proto", read(index, "a.proto"));
+            assertEquals("dependency.jar:pkg/b.proto", read(index, "pkg/b.proto"));
+            assertEquals("main.jar:pkg/c.proto", read(index, "pkg/c.proto"));
+            assertNull(index.open("pkg/d.proto"));
+        }
+    }
+
+    @Test
+    public void classpathChanged() throws Exception {
+        Path first = jar("first.jar", null, "a.proto");
+        Path second = jar("second.jar", null, "a.proto", "b.proto");
+        try (GrowingClassLoader classLoader = new GrowingClassLoader(first.toUri().toURL())) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(classLoader);
+            assertNull(index.open("b.proto"));
+            classLoader.addURL(second.toUri().toURL());
+            ClasspathIndex newIndex = ClasspathIndex.forClassLoader(classLoader);
+            assertNotSame(index, newIndex);
+            assertSame(newIndex, ClasspathIndex.forClassLoader(classLoader));
+            assertEquals("first.jar:a.proto", read(newIndex, "a.proto"));
+            assertEquals("second.jar:b.proto", read(newIndex, "b.proto"));
+        }
+    }
+
+    @Test
+    public void jarChanged() throws Exception {
+        Path jar = jar("dependency.jar", null, "a.proto");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toUri().toURL()}, null)) {
+            assertEquals("dependency.jar:a.proto", read(ClasspathIndex.forClassLoader(classLoader), "a.proto"));
+        }
+        // jar is closed at the end of compilation, so it can be replaced
+        ClasspathIndex.closeJars();
+        Files.delete(jar);
+        jar("dependency.jar", null, "a.proto", "b.proto");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toUri().toURL()}, null)) {
+            assertEquals("dependency.jar:b.proto", read(ClasspathIndex.forClassLoader(classLoader), "b.proto"));
+        }
+    }
+
+    @Test
+    public void urlClassLoaderSubclasses() throws Exception {
+        Path jar = jar("dependency.jar", null, "a.proto");
+        try (GrowingClassLoader classLoader = new GrowingClassLoader(jar.toUri().toURL())) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(classLoader);
+            assertTrue(index.isComplete());
+            assertEquals("dependency.jar:a.proto", read(index, "a.proto"));
+        }
+        try (ResourceClassLoader classLoader = new ResourceClassLoader(jar.toUri().toURL())) {
+            assertFalse(ClasspathIndex.forClassLoader(classLoader).isComplete());
+        }
+    }
+
+    @Test
+    public void jarsAreReopenedAfterClose() throws Exception {
+        Path jar = jar("dependency.jar", null, "a.proto", "b.proto");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toUri().toURL()}, null)) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(classLoader);
+            assertEquals("dependency.jar:a.proto", read(index, "a.proto"));
+            assertEquals("dependency.jar:b.proto", read(index, "b.proto"));
+            ClasspathIndex.closeJars();
+            assertEquals("dependency.jar:a.proto", read(index, "a.proto"));
+            ClasspathIndex.closeJars();
+        }
+    }
+
+    private String read(ClasspathIndex index, String name) throws Exception {
+        try (InputStream in = index.open(name)) {
+            assertNotNull(in, name);
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private Path jar(String name, String classpath, String... entries) throws Exception {
+        Path jar = directory.resolve(name);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classpath != null) {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classpath);
+        }
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+            for (String entry : entries) {
+                jarOut.putNextEntry(new ZipEntry(entry));
+                jarOut.write((name + ":" + entry).getBytes(StandardCharsets.UTF_8));
+                jarOut.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static final class GrowingClassLoader extends URLClassLoader {
+
+        GrowingClassLoader(URL url) {
+            super(new URL[] {url}, null);
+        }
+
+        @Override
+        public void addURL(URL url) {
+            super.addURL(url);
+        }
+    }
+
+    /**
+     * Class loader that can find resources that are not in its URLs.
+     */
+    private static final class ResourceClassLoader extends URLClassLoader {
+
+        ResourceClassLoader(URL url) {
+            super(new URL[] {url}, null);
+        }
+
+        @Override
+        public URL findResource(String name) {
+            return super.findResource(name);
+        }
+    }
+}
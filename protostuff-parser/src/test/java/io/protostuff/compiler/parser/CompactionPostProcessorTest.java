@@ -0,0 +1,80 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Proto;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class CompactionPostProcessorTest {
+
+    /**
+     * Number of fields in a synthetic corpus for a footprint report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String FOOTPRINT_FIELDS = "protostuff.footprint.fields";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompactionPostProcessorTest.class);
+
+    private final SyntheticCorpus corpus = new SyntheticCorpus("footprint");
+
+    @Test
+    public void identifiersAreInterned() throws Exception {
+        Importer importer = newImporter();
+        ProtoContext context = importer.importFile(corpus.reader(), "footprint/0.proto");
+        Proto proto = context.getProto();
+        Message a = proto.getMessage("M0");
+        Message b = proto.getMessage("M1");
+        assertSame(a.getFields().get(1).getName(), b.getFields().get(1).getName());
+        assertSame(a.getFields().get(0).getTypeName(), b.getFields().get(0).getTypeName());
+        assertEquals(".footprint.M0", a.getFullyQualifiedName());
+        assertNull(context.getCommentBuffer());
+        assertEquals("comment 0", a.getFields().get(0).getComments());
+    }
+
+    @Test
+    public void footprint() throws Exception {
+        assumeTrue(System.getProperty(FOOTPRINT_FIELDS) != null);
+        int fields = Integer.getInteger(FOOTPRINT_FIELDS);
+        int messages = fields / SyntheticCorpus.FIELDS_PER_MESSAGE;
+        int files = Math.max(1, messages / SyntheticCorpus.MESSAGES_PER_FILE);
+        List<String> names = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            names.add("footprint/" + i + ".proto");
+        }
+        FileReader reader = corpus.reader();
+        Importer importer = newImporter();
+        // warm-up: load descriptor.proto and classes before measurement
+        importer.importFile(reader, "footprint/warmup.proto");
+        long before = usedHeap();
+        List<ProtoContext> contexts = importer.importFiles(reader, null, names);
+        long retained = usedHeap() - before;
+        int totalMessages = files * SyntheticCorpus.MESSAGES_PER_FILE;
+        int totalFields = totalMessages * SyntheticCorpus.FIELDS_PER_MESSAGE;
+        LOGGER.info("Footprint: {} files, {} messages, {} fields, {} bytes retained",
+                contexts.size(), totalMessages, totalFields, retained);
+        LOGGER.info("Footprint: {} bytes per field, {} bytes per message",
+                retained / totalFields, retained / totalMessages);
+    }
+
+    private Importer newImporter() {
+        return Guice.createInjector(new ParserModule()).getInstance(Importer.class);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
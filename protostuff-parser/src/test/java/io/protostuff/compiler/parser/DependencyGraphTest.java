@@ -0,0 +1,56 @@
+package io.protostuff.compiler.parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DependencyGraphTest {
+
+    private static final String A = "protostuff_unittest/imports_a.proto";
+    private static final String B = "protostuff_unittest/imports_b.proto";
+    private static final String C = "protostuff_unittest/imports_c.proto";
+    private static final String D = "protostuff_unittest/imports_d.proto";
+    private static final String CYCLE_A = "protostuff_unittest/imports_cycle_a.proto";
+    private static final String CYCLE_B = "protostuff_unittest/imports_cycle_b.proto";
+
+    @Test
+    public void topologicalOrder() throws Exception {
+        DependencyGraph graph = DependencyGraph.build(new ClasspathFileReader(), Collections.singletonList(A));
+        assertEquals(new HashSet<>(Arrays.asList(A, B, C, D)), graph.getFiles());
+        assertEquals(Arrays.asList(D, C, B, A), graph.getTopologicalOrder());
+        assertEquals(Collections.singletonList(C), graph.getImports(B).getPublicImports());
+        assertTrue(graph.getCycles().isEmpty());
+    }
+
+    @Test
+    public void dependents() throws Exception {
+        DependencyGraph graph = DependencyGraph.build(new ClasspathFileReader(), Collections.singletonList(A));
+        assertEquals(Collections.singleton(B), graph.getImportedBy(C));
+        assertEquals(new HashSet<>(Arrays.asList(C, B, A)), graph.getDependents(Collections.singletonList(C)));
+        assertEquals(Collections.singleton(A), graph.getDependents(Collections.singletonList(A)));
+    }
+
+    @Test
+    public void cycle() throws Exception {
+        DependencyGraph graph = DependencyGraph.build(new ClasspathFileReader(), Collections.singletonList(CYCLE_A));
+        List<Set<String>> cycles = graph.getCycles();
+        assertEquals(1, cycles.size());
+        assertEquals(new HashSet<>(Arrays.asList(CYCLE_A, CYCLE_B)), cycles.get(0));
+        assertEquals(2, graph.getTopologicalOrder().size());
+    }
+
+    @Test
+    public void missingFile() throws Exception {
+        ParserException exception = assertThrows(ParserException.class, () -> {
+            DependencyGraph.build(new ClasspathFileReader(), Collections.singletonList("protostuff_unittest/missing.proto"));
+        });
+        assertEquals("Can not load proto: protostuff_unittest/missing.proto not found", exception.getMessage());
+    }
+}
@@ -0,0 +1,208 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.Message;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DescriptorSetTest {
+
+    /**
+     * Number of files in a synthetic corpus for a throughput report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String THROUGHPUT_FILES = "protostuff.throughput.files";
+
+    private static final String SAMPLE = "protostuff_unittest/descriptor_set_sample.proto";
+
+    private static final int LABEL_OPTIONAL = 1;
+    private static final int LABEL_REPEATED = 3;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DescriptorSetTest.class);
+
+    @Test
+    public void sameModelAsParser() {
+        ProtoContext parsed = newImporter().importFile(new ClasspathFileReader(), SAMPLE);
+        DescriptorSet descriptorSet = DescriptorSet.parse(sampleDescriptorSet());
+        ProtoContext built = newImporter().importFile(new DescriptorSetFileReader(descriptorSet), SAMPLE);
+        assertEquals(ModelDump.dump(parsed.getProto(), false), ModelDump.dump(built.getProto(), false));
+    }
+
+    @Test
+    public void sourceCodeLocation() {
+        DescriptorSet descriptorSet = DescriptorSet.parse(sampleDescriptorSet());
+        ProtoContext built = newImporter().importFile(new DescriptorSetFileReader(descriptorSet), SAMPLE);
+        Message sample = built.getProto().getMessage("Sample");
+        assertEquals(SAMPLE, sample.getSourceCodeLocation().getFile());
+        assertEquals(16, sample.getSourceCodeLocation().getLine());
+    }
+
+    @Test
+    public void invalidDescriptorSet() {
+        byte[] truncated = new WireWriter().string(1, "test.proto").toByteArray();
+        assertThrows(ParserException.class, () -> DescriptorSet.parse(new byte[] {truncated[0], 100}));
+    }
+
+    @Test
+    public void malformedGroup() {
+        // group with a field that is longer than a message
+        byte[] bytes = {0x0B, 0x12, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0x0C};
+        assertThrows(ParserException.class, () -> DescriptorSet.parse(bytes));
+        byte[] truncatedFixed = {0x0B, 0x11, 1, 2, 0x0C};
+        assertThrows(ParserException.class, () -> DescriptorSet.parse(truncatedFixed));
+    }
+
+    @Test
+    public void unknownOption() {
+        WireWriter file = new WireWriter()
+                .string(1, "unknown_option.proto")
+                .message(8, new WireWriter().varint(50001, 1));
+        DescriptorSet descriptorSet = DescriptorSet.parse(new WireWriter().message(1, file).toByteArray());
+        ParserException exception = assertThrows(ParserException.class, () -> newImporter()
+                .importFile(new DescriptorSetFileReader(descriptorSet), "unknown_option.proto"));
+        assertTrue(exception.getMessage().contains("Unknown field 50001 of .google.protobuf.FileOptions"),
+                exception.getMessage());
+    }
+
+    @Test
+    public void descriptorSetIncludePath() throws Exception {
+        Path file = Files.createTempFile("sample", ".desc");
+        try {
+            Files.write(file, sampleDescriptorSet());
+            Path directory = Paths.get("src/test/resources");
+            MultiPathFileReader reader = new MultiPathFileReader(Arrays.asList(directory, file));
+            assertNotNull(reader.getDescriptorSet());
+            ProtoContext parsed = newImporter().importFile(new ClasspathFileReader(), SAMPLE);
+            ProtoContext built = newImporter().importFile(reader, SAMPLE);
+            assertEquals(ModelDump.dump(parsed.getProto(), false), ModelDump.dump(built.getProto(), false));
+            // files that are not in the descriptor set are read from directories
+            assertNotNull(newImporter().importFile(reader, "protostuff_unittest/messages_sample.proto"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void throughput() {
+        assumeTrue(System.getProperty(THROUGHPUT_FILES) != null);
+        int files = Integer.getInteger(THROUGHPUT_FILES);
+        SyntheticCorpus corpus = new SyntheticCorpus("throughput");
+        List<String> names = new ArrayList<>(files);
+        WireWriter descriptorSet = new WireWriter();
+        for (int i = 0; i < files; i++) {
+            String name = "throughput/" + i + ".proto";
+            names.add(name);
+            descriptorSet.message(1, corpus.descriptor(name));
+        }
+        byte[] bytes = descriptorSet.toByteArray();
+        FileReader textReader = corpus.reader();
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            newImporter().importFiles(textReader, null, names);
+            long text = System.nanoTime() - start;
+            start = System.nanoTime();
+            newImporter().importFiles(new DescriptorSetFileReader(DescriptorSet.parse(bytes)), null, names);
+            long binary = System.nanoTime() - start;
+            LOGGER.info("Throughput: {} files, text {} ms, descriptor set {} ms",
+                    files, text / 1_000_000, binary / 1_000_000);
+        }
+    }
+
+    private static Importer newImporter() {
+        return Guice.createInjector(new ParserModule()).getInstance(Importer.class);
+    }
+
+    private static byte[] sampleDescriptorSet() {
+        WireWriter sample = new WireWriter()
+                .string(1, "Sample")
+                .message(2, field("id", 1, LABEL_OPTIONAL, DescriptorSchema.TYPE_INT32)
+                        .string(7, "5")
+                        .message(8, new WireWriter().string(50000, "x\"y")))
+                .message(2, field("items", 3, LABEL_REPEATED, DescriptorSchema.TYPE_MESSAGE)
+                        .string(6, ".sample.Sample.ItemsEntry"))
+                .message(2, field("a", 4, LABEL_OPTIONAL, DescriptorSchema.TYPE_STRING).varint(9, 0))
+                .message(2, field("b", 5, LABEL_OPTIONAL, DescriptorSchema.TYPE_INT64).varint(9, 0))
+                .message(2, field("result", 6, LABEL_OPTIONAL, DescriptorSchema.TYPE_GROUP)
+                        .string(6, ".sample.Sample.Result"))
+                .message(2, field("kind", 8, LABEL_OPTIONAL, DescriptorSchema.TYPE_ENUM)
+                        .string(6, ".sample.Sample.Kind")
+                        .string(7, "SECOND"))
+                .message(2, field("ratio", 9, LABEL_OPTIONAL, DescriptorSchema.TYPE_DOUBLE).string(7, "0.5"))
+                .message(2, field("codes", 10, LABEL_REPEATED, DescriptorSchema.TYPE_INT32)
+                        .message(8, new WireWriter().varint(2, 1)))
+                .message(3, new WireWriter()
+                        .string(1, "ItemsEntry")
+                        .message(2, field("key", 1, LABEL_OPTIONAL, DescriptorSchema.TYPE_STRING))
+                        .message(2, field("value", 2, LABEL_OPTIONAL, DescriptorSchema.TYPE_MESSAGE)
+                                .string(6, ".sample.Sample.Nested"))
+                        .message(7, new WireWriter().varint(7, 1)))
+                .message(3, new WireWriter()
+                        .string(1, "Result")
+                        .message(2, field("url", 7, LABEL_OPTIONAL, DescriptorSchema.TYPE_STRING)))
+                .message(3, new WireWriter()
+                        .string(1, "Nested")
+                        .message(2, field("value", 1, LABEL_OPTIONAL, DescriptorSchema.TYPE_DOUBLE)
+                                .message(8, new WireWriter().varint(3, 1))))
+                .message(4, new WireWriter()
+                        .string(1, "Kind")
+                        .message(2, new WireWriter().string(1, "FIRST").varint(2, 0))
+                        .message(2, new WireWriter().string(1, "SECOND").varint(2, 1)))
+                .message(5, new WireWriter().varint(1, 100).varint(2, Field.MAX_TAG_VALUE + 1))
+                .message(7, new WireWriter().varint(3, 1))
+                .message(8, new WireWriter().string(1, "choice"))
+                .message(9, new WireWriter().varint(1, 20).varint(2, 23))
+                .string(10, "old");
+        WireWriter service = new WireWriter()
+                .string(1, "SampleService")
+                .message(2, new WireWriter()
+                        .string(1, "Call")
+                        .string(2, ".sample.Sample")
+                        .string(3, ".sample.Sample")
+                        .message(4, new WireWriter().varint(33, 1))
+                        .varint(6, 1));
+        WireWriter sourceCodeInfo = new WireWriter()
+                .message(1, location(12).string(6, " Sample file\n"))
+                .message(1, location(4, 0).packed(2, 15, 0, 41, 1).string(3, " Message comment\n"))
+                .message(1, location(4, 0, 2, 0).string(3, " field comment\n").string(4, " trailing\n"))
+                .message(1, location(4, 0, 4, 0, 2, 1).string(4, " second\n"));
+        WireWriter file = new WireWriter()
+                .string(1, SAMPLE)
+                .string(2, "sample")
+                .string(3, "google/protobuf/descriptor.proto")
+                .message(4, sample)
+                .message(6, service)
+                .message(7, field("label", 50000, LABEL_OPTIONAL, DescriptorSchema.TYPE_STRING)
+                        .string(2, ".google.protobuf.FieldOptions"))
+                .message(8, new WireWriter().string(1, "sample.java"))
+                .message(9, sourceCodeInfo);
+        return new WireWriter().message(1, file).toByteArray();
+    }
+
+    private static WireWriter field(String name, int number, int label, int type) {
+        return new WireWriter()
+                .string(1, name)
+                .varint(3, number)
+                .varint(4, label)
+                .varint(5, type)
+                .string(10, name);
+    }
+
+    private static WireWriter location(int... path) {
+        return new WireWriter().packed(1, path);
+    }
+}
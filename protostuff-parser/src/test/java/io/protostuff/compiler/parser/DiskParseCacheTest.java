@@ -0,0 +1,181 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import com.google.inject.util.Modules;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.model.UserTypeContainer;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.antlr.v4.runtime.CharStreams;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskParseCacheTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("parse-cache");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void cachedProtoIsPostProcessed() throws Exception {
+        DiskParseCache cache = DiskParseCache.open(directory, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1));
+        ProtoContext first = importSample(cache);
+        long misses = cache.getMissCount();
+        assertEquals(0, cache.getHitCount());
+        assertTrue(misses > 0);
+
+        // shared google/protobuf/* contexts are not loaded again
+        ProtoContext second = importSample(cache);
+        assertTrue(cache.getHitCount() > 0);
+        assertEquals(misses, cache.getMissCount());
+
+        Proto proto = second.getProto();
+        assertEquals(first.getProto().getPackage(), proto.getPackage());
+        assertEquals(first.getProto().getMessages().size(), proto.getMessages().size());
+        assertEquals("A", proto.getOptions().get("(.protostuff_unittest.a)").getString());
+        assertEquals(42, proto.getOptions().get("(.protostuff_unittest.d).f").getInt32());
+    }
+
+    @Test
+    public void cachedModelIsSameAsParsed() throws Exception {
+        String sample = "protostuff_unittest/descriptor_set_sample.proto";
+        ProtoContext parsed = newImporter(ParseCache.DISABLED).importFile(new ClasspathFileReader(), sample);
+
+        DiskParseCache cache = DiskParseCache.open(directory, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1));
+        newImporter(cache).importFile(new ClasspathFileReader(), sample);
+        long hits = cache.getHitCount();
+        ProtoContext cached = newImporter(cache).importFile(new ClasspathFileReader(), sample);
+        assertTrue(cache.getHitCount() > hits);
+        assertEquals(ModelDump.dump(parsed.getProto(), true), ModelDump.dump(cached.getProto(), true));
+    }
+
+    @Test
+    public void cacheIsDisabledWhenModelIsNotSerializable() throws Exception {
+        DiskParseCache cache = DiskParseCache.open(directory, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1));
+        cache.load("bad.proto", CharStreams.fromString("bad"), () -> {
+            ProtoContext context = new ProtoContext("bad.proto");
+            context.getProto().addMessage(new NotSerializableMessage(context.getProto()));
+            return context;
+        });
+        importSample(cache);
+        importSample(cache);
+        assertEquals(0, cache.getHitCount());
+        assertTrue(entries(directory).isEmpty());
+    }
+
+    @Test
+    public void sizeLimitIsCheckedAfterWrites() throws Exception {
+        Path unlimited = directory.resolve("unlimited");
+        importCorpus(DiskParseCache.open(unlimited, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1)));
+        long fullSize = totalSize(unlimited);
+
+        Path limited = directory.resolve("limited");
+        importCorpus(DiskParseCache.open(limited, fullSize / 2, TimeUnit.DAYS.toMillis(1)));
+        long size = totalSize(limited);
+        assertTrue(size > 0);
+        assertTrue(size <= fullSize / 2, size + " > " + fullSize / 2);
+    }
+
+    @Test
+    public void disallowedClassesAreNotDeserialized() throws Exception {
+        DiskParseCache cache = DiskParseCache.open(directory, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1));
+        importSample(cache);
+        long misses = cache.getMissCount();
+        for (Path entry : entries(directory)) {
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(entry))) {
+                out.writeObject(new Payload());
+            }
+        }
+        Payload.deserialized = false;
+
+        importSample(cache);
+        assertFalse(Payload.deserialized);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2 * misses, cache.getMissCount());
+    }
+
+    private static long totalSize(Path directory) throws Exception {
+        long result = 0;
+        for (Path entry : entries(directory)) {
+            result += Files.size(entry);
+        }
+        return result;
+    }
+
+    private static List<Path> entries(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".ser"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private ProtoContext importSample(ParseCache cache) {
+        return newImporter(cache).importFile(new ClasspathFileReader(), "protostuff_unittest/options_sample.proto");
+    }
+
+    private void importCorpus(ParseCache cache) {
+        Importer importer = newImporter(cache);
+        FileReader reader = new SyntheticCorpus("corpus").reader();
+        for (int i = 0; i < 5; i++) {
+            importer.importFile(reader, "corpus_" + i + ".proto");
+        }
+    }
+
+    private Importer newImporter(ParseCache cache) {
+        return Guice.createInjector(Modules.override(new ParserModule())
+                .with(binder -> binder.bind(ParseCache.class).toInstance(cache)))
+                .getInstance(Importer.class);
+    }
+
+    /**
+     * Message that fails to serialize.
+     */
+    static final class NotSerializableMessage extends Message {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object lock = new Object();
+
+        NotSerializableMessage(UserTypeContainer parent) {
+            super(parent);
+        }
+    }
+
+    /**
+     * Serializable class that is not allowed in cache entries.
+     */
+    static final class Payload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static volatile boolean deserialized;
+
+        private void readObject(ObjectInputStream in) throws Exception {
+            in.defaultReadObject();
+            deserialized = true;
+        }
+    }
+}
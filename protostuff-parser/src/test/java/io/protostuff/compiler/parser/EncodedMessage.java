@@ -0,0 +1,84 @@
+package io.protostuff.compiler.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Read-only view of an encoded message, for field-level assertions
+ * on generated descriptors.
+ */
+public final class EncodedMessage {
+
+    private static final int NAME = 1;
+
+    private final WireMessage message;
+
+    private EncodedMessage(WireMessage message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns encoded {@code FileDescriptorProto} of a file from a descriptor set.
+     */
+    public static EncodedMessage file(DescriptorSet descriptorSet, String filename) {
+        WireMessage file = descriptorSet.getFile(filename);
+        if (file == null) {
+            throw new IllegalArgumentException("Unknown file: " + filename);
+        }
+        return new EncodedMessage(file);
+    }
+
+    public boolean has(int number) {
+        return message.has(number);
+    }
+
+    public int getInt(int number) {
+        return message.getInt(number, 0);
+    }
+
+    public boolean getBoolean(int number) {
+        return message.getBoolean(number);
+    }
+
+    @Nullable
+    public String getString(int number) {
+        return message.getString(number);
+    }
+
+    /**
+     * Returns all values of a repeated message field.
+     */
+    public List<EncodedMessage> getMessages(int number) {
+        List<EncodedMessage> result = new ArrayList<>();
+        for (WireMessage value : message.getMessages(number)) {
+            result.add(new EncodedMessage(value));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a value of a repeated message field, that has given name
+     * (all descriptor messages keep their name in a field 1).
+     */
+    public EncodedMessage getMessage(int number, String name) {
+        for (WireMessage value : message.getMessages(number)) {
+            if (Objects.equals(name, value.getString(NAME))) {
+                return new EncodedMessage(value);
+            }
+        }
+        throw new IllegalArgumentException("Field " + number + " does not contain " + name);
+    }
+
+    /**
+     * Returns names of all values of a repeated message field.
+     */
+    public List<String> getNames(int number) {
+        List<String> result = new ArrayList<>();
+        for (WireMessage value : message.getMessages(number)) {
+            result.add(value.getString(NAME));
+        }
+        return result;
+    }
+}
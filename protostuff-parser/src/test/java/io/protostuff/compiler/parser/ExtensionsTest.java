@@ -13,7 +13,9 @@ import org.junit.jupiter.api.Test;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /**
@@ -64,6 +66,44 @@ public class ExtensionsTest {
         assertEquals(1000, bRange.getTo());
     }
 
+    @Test
+    public void diamondImports() throws Exception {
+        ProtoContext left = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/extensions_diamond_left.proto");
+        ProtoContext top = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/extensions_diamond_top.proto");
+        ProtoContext base = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/extensions_diamond_base.proto");
+        String extendee = ".protostuff_unittest.diamond.Base";
+
+        // each extension is visible once, even if it is reachable by two paths
+        Map<String, Field> topFields = top.getExtensionRegistry().getExtensionFields(extendee);
+        assertEquals(3, top.getExtensionRegistry().getExtensions(extendee).size());
+        assertEquals(3, topFields.size());
+
+        // extensions from files that are not imported are not visible
+        Map<String, Field> leftFields = left.getExtensionRegistry().getExtensionFields(extendee);
+        assertEquals(2, leftFields.size());
+        assertTrue(leftFields.containsKey(".protostuff_unittest.diamond.left_ext"));
+        assertFalse(leftFields.containsKey(".protostuff_unittest.diamond.right_ext"));
+        assertEquals(1, base.getExtensionRegistry().getExtensions(extendee).size());
+    }
+
+    @Test
+    public void extensionsOfLaterLoadedFiles() throws Exception {
+        String extendee = ".protostuff_unittest.diamond.Base";
+        ProtoContext left = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/extensions_diamond_left.proto");
+        assertEquals(2, left.getExtensionRegistry().getExtensionFields(extendee).size());
+
+        // file that is not imported by "left" registers another extension of the same message
+        ProtoContext right = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/extensions_diamond_right.proto");
+        Map<String, Field> leftFields = left.getExtensionRegistry().getExtensionFields(extendee);
+        assertEquals(2, leftFields.size());
+        assertFalse(leftFields.containsKey(".protostuff_unittest.diamond.right_ext"));
+        assertEquals(2, left.getExtensionRegistry().getExtensions(extendee).size());
+        assertEquals(2, right.getExtensionRegistry().getExtensionFields(extendee).size());
+
+        ProtoContext top = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/extensions_diamond_top.proto");
+        assertEquals(3, top.getExtensionRegistry().getExtensionFields(extendee).size());
+    }
+
     @Test
     public void tagOutOfRange() throws Exception {
         ParserException exception = assertThrows(ParserException.class, () -> {
@@ -0,0 +1,69 @@
+package io.protostuff.compiler.parser;
+
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class FileDescriptorLoaderImplTest {
+
+    /**
+     * Number of parse rounds for a prediction mode report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String PREDICTION_ROUNDS = "protostuff.prediction.rounds";
+
+    private static final String UNITTEST = "protobuf_unittest/unittest.proto";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileDescriptorLoaderImplTest.class);
+
+    @Test
+    public void sllAndLlProduceSameTree() {
+        CharStream source = new ClasspathFileReader().read(UNITTEST);
+        ProtoParser sll = newParser(source, PredictionMode.SLL);
+        String sllTree = sll.proto().toStringTree(sll);
+        source.seek(0);
+        ProtoParser ll = newParser(source, PredictionMode.LL);
+        assertEquals(sllTree, ll.proto().toStringTree(ll));
+    }
+
+    @Test
+    public void predictionModeReport() {
+        assumeTrue(System.getProperty(PREDICTION_ROUNDS) != null);
+        int rounds = Integer.getInteger(PREDICTION_ROUNDS);
+        CharStream unittest = new ClasspathFileReader().read(UNITTEST);
+        CharStream synthetic = new SyntheticCorpus("prediction").reader().read("prediction/0.proto");
+        for (int round = 0; round < rounds; round++) {
+            report(UNITTEST, unittest);
+            report("synthetic", synthetic);
+        }
+    }
+
+    private void report(String name, CharStream source) {
+        long start = System.nanoTime();
+        source.seek(0);
+        newParser(source, PredictionMode.SLL).proto();
+        long sll = System.nanoTime() - start;
+        start = System.nanoTime();
+        source.seek(0);
+        newParser(source, PredictionMode.LL).proto();
+        long ll = System.nanoTime() - start;
+        LOGGER.info("Prediction mode: {}, SLL {} us, LL {} us", name,
+                TimeUnit.NANOSECONDS.toMicros(sll), TimeUnit.NANOSECONDS.toMicros(ll));
+    }
+
+    private static ProtoParser newParser(CharStream source, PredictionMode predictionMode) {
+        ProtoParser parser = new ProtoParser(new CommonTokenStream(new ProtoLexer(source)));
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(predictionMode);
+        return parser;
+    }
+}
@@ -0,0 +1,99 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.Message;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HeaderOnlyImportsTest {
+
+    /**
+     * Number of imported files for a header-only imports report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String HEADER_ONLY_IMPORTS = "protostuff.headeronly.imports";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeaderOnlyImportsTest.class);
+
+    private static final String ROOT = "protostuff_unittest/header_only_root.proto";
+    private static final String DEPENDENCY = "protostuff_unittest/header_only_dependency.proto";
+
+    @Test
+    public void dependencyIsNotValidated() throws Exception {
+        Importer importer = newImporter(false);
+        ProtoContext root = importer.importFile(new ClasspathFileReader(), ROOT);
+        assertFalse(root.isHeaderOnly());
+        ProtoContext dependency = root.getImports().get(0);
+        assertTrue(dependency.isHeaderOnly());
+        Message message = dependency.resolve(Message.class, ".protostuff_unittest.Dependency");
+        assertNotNull(message);
+        assertEquals("ten", message.getOptions().get("(.protostuff_unittest.limits).max").getString());
+        assertEquals(10, root.getProto().getMessage("Root").getOptions()
+                .get("(.protostuff_unittest.limits).max").getInt32());
+    }
+
+    @Test
+    public void dependencyIsValidatedWhenImportedAsTopLevelFile() throws Exception {
+        Importer importer = newImporter(false);
+        ProtoContext root = importer.importFile(new ClasspathFileReader(), ROOT);
+        ProtoContext dependency = root.getImports().get(0);
+        ParserException exception = assertThrows(ParserException.class, () -> {
+            importer.importFile(new ClasspathFileReader(), DEPENDENCY);
+        });
+        assertEquals("Cannot set option 'max': expected int32 value [" + DEPENDENCY + ":16]",
+                exception.getMessage());
+        assertTrue(dependency.isHeaderOnly());
+    }
+
+    @Test
+    public void strictImports() throws Exception {
+        Importer importer = newImporter(true);
+        assertThrows(ParserException.class, () -> {
+            importer.importFile(new ClasspathFileReader(), ROOT);
+        });
+    }
+
+    @Test
+    public void headerOnlyReport() throws Exception {
+        assumeTrue(System.getProperty(HEADER_ONLY_IMPORTS) != null);
+        int imports = Integer.getInteger(HEADER_ONLY_IMPORTS);
+        StringBuilder root = new StringBuilder("syntax = \"proto3\";\n");
+        for (int i = 0; i < imports; i++) {
+            root.append("import \"dependency/").append(i).append(".proto\";\n");
+        }
+        root.append("message Root {\n");
+        for (int i = 0; i < imports; i++) {
+            root.append("    dependency").append(i).append(".M0 field_").append(i)
+                    .append(" = ").append(i + 1).append(";\n");
+        }
+        String rootSource = root.append("}\n").toString();
+        FileReader reader = name -> {
+            if ("root.proto".equals(name)) {
+                return CharStreams.fromString(rootSource, name);
+            }
+            String packageName = "dependency" + name.substring("dependency/".length(), name.indexOf(".proto"));
+            return new SyntheticCorpus(packageName).reader().read(name);
+        };
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            newImporter(false).importFile(reader, "root.proto");
+            long headerOnly = System.nanoTime() - start;
+            start = System.nanoTime();
+            newImporter(true).importFile(reader, "root.proto");
+            long strict = System.nanoTime() - start;
+            LOGGER.info("Header-only imports: {} imports, header-only {} ms, strict {} ms", imports,
+                    TimeUnit.NANOSECONDS.toMillis(headerOnly), TimeUnit.NANOSECONDS.toMillis(strict));
+        }
+    }
+
+    private Importer newImporter(boolean strictImports) {
+        return Guice.createInjector(new ParserModule(1, strictImports)).getInstance(Importer.class);
+    }
+}
@@ -0,0 +1,78 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ImportScannerTest {
+
+    /**
+     * Number of files in a synthetic corpus for a scan report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String SCAN_FILES = "protostuff.scan.files";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportScannerTest.class);
+
+    @Test
+    public void scan() throws Exception {
+        String source = "syntax = \"proto3\";\n"
+                + "// import \"commented.proto\";\n"
+                + "package foo.message.bar;\n"
+                + "import \"a.proto\";\n"
+                + "/* import \"b.proto\"; */\n"
+                + "import public 'c.proto';\n"
+                + "option (x) = { import: 1 };\n"
+                + "message A {\n"
+                + "    int32 import = 1;\n"
+                + "}\n"
+                + "import \"d.proto\";\n";
+        ImportScanner.ProtoImports imports = ImportScanner.scan(CharStreams.fromString(source));
+        assertEquals("foo.message.bar", imports.getPackageName());
+        assertEquals(Arrays.asList("a.proto", "c.proto", "d.proto"), imports.getImports());
+        assertEquals(Collections.singletonList("c.proto"), imports.getPublicImports());
+    }
+
+    @Test
+    public void noPackage() throws Exception {
+        ImportScanner.ProtoImports imports = ImportScanner.scan(CharStreams.fromString("message A {}"));
+        assertNull(imports.getPackageName());
+        assertEquals(Collections.emptyList(), imports.getImports());
+    }
+
+    @Test
+    public void scanReport() throws Exception {
+        assumeTrue(System.getProperty(SCAN_FILES) != null);
+        int files = Integer.getInteger(SCAN_FILES);
+        List<String> names = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            names.add("scan/" + i + ".proto");
+        }
+        FileReader reader = new SyntheticCorpus("scan").reader();
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (String name : names) {
+                ImportScanner.scan(reader.read(name));
+            }
+            long scan = System.nanoTime() - start;
+            Importer importer = Guice.createInjector(new ParserModule(1)).getInstance(Importer.class);
+            start = System.nanoTime();
+            importer.importFiles(reader, null, names);
+            long parse = System.nanoTime() - start;
+            LOGGER.info("Scan: {} files, scan {} ms, full parse {} ms",
+                    files, TimeUnit.NANOSECONDS.toMillis(scan), TimeUnit.NANOSECONDS.toMillis(parse));
+        }
+    }
+}
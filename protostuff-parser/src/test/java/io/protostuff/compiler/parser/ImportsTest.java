@@ -4,16 +4,36 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.protostuff.compiler.ParserModule;
 import io.protostuff.compiler.model.Import;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * @author Kostiantyn Shchepanovskyi
  */
 public class ImportsTest {
 
+    /**
+     * Number of files in a synthetic corpus for a parallel parsing report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String PARALLEL_FILES = "protostuff.parallel.files";
+
+    private static final int[] PARALLEL_THREADS = {1, 2, 4, 8, 16};
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportsTest.class);
 
     private Injector injector;
     private Importer importer;
@@ -44,4 +64,85 @@ public class ImportsTest {
         assertEquals("Cannot register duplicate type: .protostuff_unittest.A " +
                 "[protostuff_unittest/imports_duplicate.proto:7]", exception.getMessage());
     }
+
+    @Test
+    public void cycle() throws Exception {
+        Throwable exception = assertThrows(ParserException.class, () -> {
+            importer.importFile(new ClasspathFileReader(), "protostuff_unittest/imports_cycle_a.proto");
+        });
+        assertEquals("Can not load proto: imports cycle found", exception.getMessage());
+    }
+
+    @Test
+    public void parallelImport() throws Exception {
+        Importer parallelImporter = Guice.createInjector(new ParserModule(4))
+                .getInstance(Importer.class);
+        List<String> files = Arrays.asList(
+                "protostuff_unittest/imports_a.proto",
+                "protostuff_unittest/imports_b.proto",
+                "protostuff_unittest/imports_c.proto",
+                "protobuf_unittest/unittest.proto");
+        List<ProtoContext> contexts = parallelImporter.importFiles(new ClasspathFileReader(), null, files);
+        assertEquals(files.size(), contexts.size());
+        for (int i = 0; i < files.size(); i++) {
+            ProtoContext context = contexts.get(i);
+            assertTrue(context.isInitialized());
+            assertEquals(files.get(i), context.getProto().getFilename());
+        }
+        ProtoContext b = contexts.get(1);
+        assertSame(b.getProto(), contexts.get(0).getProto().getImports().get(0).getProto());
+        assertNotNull(contexts.get(0).resolve(".protostuff_unittest.C"));
+    }
+
+    @Test
+    public void parserThreadsStopAfterImport() throws Exception {
+        Importer parallelImporter = Guice.createInjector(new ParserModule(4))
+                .getInstance(Importer.class);
+        Set<Thread> threads = new HashSet<>(Thread.getAllStackTraces().keySet());
+        parallelImporter.importFile(new ClasspathFileReader(), "protostuff_unittest/imports_a.proto");
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!threads.contains(thread) && thread instanceof ForkJoinWorkerThread) {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+                assertFalse(thread.isAlive(), thread.getName());
+            }
+        }
+    }
+
+    @Test
+    public void parallelImportReport() throws Exception {
+        assumeTrue(System.getProperty(PARALLEL_FILES) != null);
+        int files = Integer.getInteger(PARALLEL_FILES);
+        List<String> names = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            names.add("parallel/" + i + ".proto");
+        }
+        FileReader reader = new SyntheticCorpus("parallel").reader();
+        for (int round = 0; round < 3; round++) {
+            for (int threads : PARALLEL_THREADS) {
+                Importer parallelImporter = Guice.createInjector(new ParserModule(threads))
+                        .getInstance(Importer.class);
+                long start = System.nanoTime();
+                parallelImporter.importFiles(reader, null, names);
+                long elapsed = System.nanoTime() - start;
+                LOGGER.info("Parallel import: {} files, {} threads, {} ms",
+                        files, threads, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        ClasspathFileReader reader = new ClasspathFileReader();
+        ProtoContext a = importer.importFile(reader, "protostuff_unittest/imports_a.proto");
+        ProtoContext c = importer.importFile(reader, "protostuff_unittest/imports_c.proto");
+        ProtoContext d = importer.importFile(reader, "protostuff_unittest/imports_d.proto");
+        Set<String> invalidated = importer.invalidate(Collections.singletonList("protostuff_unittest/imports_c.proto"));
+        assertEquals(new HashSet<>(Arrays.asList(
+                "protostuff_unittest/imports_a.proto",
+                "protostuff_unittest/imports_b.proto",
+                "protostuff_unittest/imports_c.proto")), invalidated);
+        assertNotSame(a, importer.importFile(reader, "protostuff_unittest/imports_a.proto"));
+        assertNotSame(c, importer.importFile(reader, "protostuff_unittest/imports_c.proto"));
+        assertSame(d, importer.importFile(reader, "protostuff_unittest/imports_d.proto"));
+    }
 }
@@ -0,0 +1,90 @@
+package io.protostuff.compiler.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncludePathIndexTest {
+
+    private Path root1;
+    private Path root2;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        root1 = Files.createTempDirectory("protostuff-test-");
+        root2 = Files.createTempDirectory("protostuff-test-");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(root1.toFile());
+        FileUtils.deleteDirectory(root2.toFile());
+    }
+
+    @Test
+    public void firstDirectoryWins() throws Exception {
+        Path a1 = write(root1, "pkg/a.proto");
+        write(root2, "pkg/a.proto");
+        Path b2 = write(root2, "b.proto");
+        IncludePathIndex index = new IncludePathIndex(Arrays.asList(root1, root2));
+        assertEquals(a1, index.find("pkg/a.proto"));
+        assertEquals(b2, index.find("b.proto"));
+        assertNull(index.find("c.proto"));
+    }
+
+    @Test
+    public void refreshModifiedDirectory() throws Exception {
+        IncludePathIndex index = new IncludePathIndex(Arrays.asList(root1, root2));
+        assertNull(index.find("pkg/a.proto"));
+        Path a = write(root2, "pkg/b.proto");
+        index.refresh();
+        assertEquals(a, index.find("pkg/b.proto"));
+    }
+
+    @Test
+    public void addedFileIsFound() throws Exception {
+        IncludePathIndex index = new IncludePathIndex(Arrays.asList(root1, root2));
+        assertNull(index.find("pkg/a.proto"));
+        Path a = write(root1, "pkg/a.proto");
+        assertNull(index.find("pkg/a.proto"));
+        index.refresh();
+        assertEquals(a, index.find("pkg/a.proto"));
+    }
+
+    @Test
+    public void removedFileIsNotFound() throws Exception {
+        Path a1 = write(root1, "pkg/a.proto");
+        Path a2 = write(root2, "pkg/a.proto");
+        IncludePathIndex index = new IncludePathIndex(Arrays.asList(root1, root2));
+        assertEquals(a1, index.find("pkg/a.proto"));
+        Files.delete(a1);
+        // index is not checked for modifications until it is refreshed
+        assertEquals(a1, index.find("pkg/a.proto"));
+        index.refresh();
+        assertEquals(a2, index.find("pkg/a.proto"));
+        Files.delete(a2);
+        index.refresh();
+        assertNull(index.find("pkg/a.proto"));
+    }
+
+    @Test
+    public void isIndexable() throws Exception {
+        assertTrue(IncludePathIndex.isIndexable("pkg/a.proto"));
+        assertFalse(IncludePathIndex.isIndexable("pkg/a.txt"));
+        assertFalse(IncludePathIndex.isIndexable("../a.proto"));
+        assertFalse(IncludePathIndex.isIndexable("/a.proto"));
+    }
+
+    private Path write(Path root, String name) throws Exception {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, name.getBytes(StandardCharsets.UTF_8));
+    }
+}
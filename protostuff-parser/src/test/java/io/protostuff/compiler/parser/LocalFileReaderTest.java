@@ -6,17 +6,34 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * @author Kostiantyn Shchepanovskyi
  */
 public class LocalFileReaderTest {
 
+    /**
+     * Size of a generated file, in megabytes, for a peak heap report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String PEAK_HEAP_MEGABYTES = "protostuff.peakheap.megabytes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileReaderTest.class);
+
     private Path tempDirectory1;
     private Path tempDirectory2;
     private Path file1;
@@ -51,4 +68,75 @@ public class LocalFileReaderTest {
         assertEquals("2", b.getText(Interval.of(0, 1)));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMappedRead() throws Exception {
+        String text = "// \u043f\u0440\u0438\u0432\u0456\u0442 \uD83D\uDE00\nmessage A {}";
+        Path file = Files.write(tempDirectory2.resolve("3.proto"), text.getBytes(StandardCharsets.UTF_8));
+        try {
+            LocalFileReader reader = new LocalFileReader(Arrays.asList(tempDirectory1, tempDirectory2), 0);
+            CharStream a = reader.read("1.proto");
+            CharStream c = reader.read("3.proto");
+            assertNotNull(a);
+            assertNotNull(c);
+            assertEquals("1", a.getText(Interval.of(0, 1)));
+            assertEquals(text.codePointCount(0, text.length()), c.size());
+            assertEquals(text, c.getText(Interval.of(0, c.size() - 1)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void peakHeapReport() throws Exception {
+        assumeTrue(System.getProperty(PEAK_HEAP_MEGABYTES) != null);
+        long size = Integer.getInteger(PEAK_HEAP_MEGABYTES) * 1024L * 1024L;
+        Path file = tempDirectory2.resolve("large.proto");
+        writeComments(file, size);
+        try {
+            for (int round = 0; round < 3; round++) {
+                long heap = peakHeap(new LocalFileReader(Arrays.asList(tempDirectory2), Long.MAX_VALUE));
+                long mapped = peakHeap(new LocalFileReader(Arrays.asList(tempDirectory2), 0));
+                LOGGER.info("Peak heap: {} bytes file, heap read {} bytes, mapped read {} bytes",
+                        Files.size(file), heap, mapped);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void writeComments(Path file, long size) throws IOException {
+        String line = "// \u043a\u043e\u043c\u0435\u043d\u0442\u0430\u0440 comment line\n";
+        long lines = size / line.getBytes(StandardCharsets.UTF_8).length;
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < lines; i++) {
+                writer.write(line);
+            }
+        }
+    }
+
+    /**
+     * Returns peak heap usage above a baseline while given reader loads a large file.
+     * Peaks of heap pools are summed, so result is an upper bound.
+     */
+    private static long peakHeap(LocalFileReader reader) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                baseline += pool.getUsage().getUsed();
+            }
+        }
+        CharStream stream = reader.read("large.proto");
+        assertNotNull(stream);
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak - baseline;
+    }
+}
@@ -0,0 +1,147 @@
+package io.protostuff.compiler.parser;
+
+import io.protostuff.compiler.model.Descriptor;
+import io.protostuff.compiler.model.Element;
+import io.protostuff.compiler.model.Enum;
+import io.protostuff.compiler.model.EnumConstant;
+import io.protostuff.compiler.model.Extension;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.Group;
+import io.protostuff.compiler.model.Import;
+import io.protostuff.compiler.model.Message;
+import io.protostuff.compiler.model.Oneof;
+import io.protostuff.compiler.model.Proto;
+import io.protostuff.compiler.model.Range;
+import io.protostuff.compiler.model.Service;
+import io.protostuff.compiler.model.ServiceMethod;
+import io.protostuff.compiler.model.UserType;
+import io.protostuff.compiler.model.UserTypeContainer;
+import java.util.List;
+
+/**
+ * Text representation of a proto file model, used to compare models
+ * built from different sources.
+ */
+public final class ModelDump {
+
+    private final StringBuilder out = new StringBuilder();
+    private final boolean lineNumbers;
+
+    private ModelDump(boolean lineNumbers) {
+        this.lineNumbers = lineNumbers;
+    }
+
+    /**
+     * Returns text representation of a proto file model.
+     *
+     * @param lineNumbers if set, source code line numbers are included
+     */
+    public static String dump(Proto proto, boolean lineNumbers) {
+        ModelDump dump = new ModelDump(lineNumbers);
+        dump.dumpProto(proto);
+        return dump.out.toString();
+    }
+
+    private void dumpProto(Proto proto) {
+        out.append("proto ").append(proto.getPackage()).append(' ').append(proto.getSyntax());
+        dumpDescriptor(proto);
+        for (Import anImport : proto.getImports()) {
+            out.append("import ").append(anImport.getValue()).append(' ').append(anImport.isPublic()).append('\n');
+        }
+        dumpContainer(proto);
+        for (Service service : proto.getServices()) {
+            out.append("service ").append(service.getFullyQualifiedName());
+            dumpDescriptor(service);
+            for (ServiceMethod method : service.getMethods()) {
+                out.append("method ").append(method.getName())
+                        .append(' ').append(method.getArgType().getFullyQualifiedName())
+                        .append(' ').append(method.isArgStream())
+                        .append(' ').append(method.getReturnType().getFullyQualifiedName())
+                        .append(' ').append(method.isReturnStream());
+                dumpDescriptor(method);
+            }
+        }
+    }
+
+    private void dumpContainer(UserTypeContainer container) {
+        for (Message message : container.getMessages()) {
+            dumpMessage(message);
+        }
+        for (Enum anEnum : container.getEnums()) {
+            out.append("enum ").append(anEnum.getFullyQualifiedName());
+            dumpDescriptor(anEnum);
+            for (EnumConstant constant : anEnum.getConstants()) {
+                out.append("constant ").append(constant.getName()).append('=').append(constant.getValue());
+                dumpDescriptor(constant);
+            }
+            dumpRanges("reserved", anEnum.getReservedFieldRanges());
+            out.append("reserved ").append(anEnum.getReservedFieldNames()).append('\n');
+        }
+        for (Extension extension : container.getDeclaredExtensions()) {
+            out.append("extend ").append(extension.getExtendee().getFullyQualifiedName())
+                    .append(' ').append(extension.getComments()).append('\n');
+            for (Field field : extension.getFields()) {
+                dumpField(field);
+            }
+            for (Group group : extension.getGroups()) {
+                dumpMessage(group);
+            }
+        }
+    }
+
+    private void dumpMessage(Message message) {
+        out.append(message.getDescriptorType()).append(' ').append(message.getFullyQualifiedName())
+                .append(' ').append(message.isMapEntry());
+        dumpDescriptor(message);
+        for (Field field : message.getFields()) {
+            dumpField(field);
+        }
+        for (Group group : message.getGroups()) {
+            dumpMessage(group);
+        }
+        for (Oneof oneof : message.getOneofs()) {
+            out.append("oneof ").append(oneof.getName());
+            for (Field field : oneof.getFields()) {
+                out.append(' ').append(field.getName());
+            }
+            dumpDescriptor(oneof);
+        }
+        dumpRanges("extensions", message.getExtensionRanges());
+        dumpRanges("reserved", message.getReservedFieldRanges());
+        out.append("reserved ").append(message.getReservedFieldNames()).append('\n');
+        dumpContainer(message);
+    }
+
+    private void dumpField(Field field) {
+        String typeName = field.getType() instanceof UserType
+                ? ((UserType) field.getType()).getFullyQualifiedName()
+                : field.getType().toString();
+        // explicit modifier is printed as is, implicit one as "-"
+        // (default modifier is same as optional)
+        out.append("field ").append(field.getName())
+                .append(' ').append(field.getTag())
+                .append(' ').append(field.getIndex())
+                .append(' ').append(field.hasModifier() ? field.getModifier() : "-")
+                .append(' ').append(typeName)
+                .append(' ').append(field.isOneofPart() ? field.getOneof().getName() : "-");
+        dumpDescriptor(field);
+    }
+
+    private void dumpRanges(String kind, List<Range> ranges) {
+        out.append(kind);
+        for (Range range : ranges) {
+            out.append(' ').append(range.getFrom()).append('-').append(range.getTo());
+        }
+        out.append('\n');
+    }
+
+    private void dumpDescriptor(Element element) {
+        if (element instanceof Descriptor) {
+            out.append(" options=").append(((Descriptor) element).getOptions().toMap());
+        }
+        if (lineNumbers && !(element instanceof Proto)) {
+            out.append(" line=").append(element.getSourceCodeLocation().getLine());
+        }
+        out.append(" comments=").append(element.getCommentLines()).append('\n');
+    }
+}
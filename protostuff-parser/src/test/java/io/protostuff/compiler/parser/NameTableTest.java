@@ -0,0 +1,55 @@
+package io.protostuff.compiler.parser;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameTableTest {
+
+    @Test
+    public void scopedGet() {
+        NameTable<String> table = new NameTable<>();
+        table.put(".a.b.C", "abc");
+        table.put(".a.C", "ac");
+        String namespace = ".a.b.M.";
+        assertNull(table.get(namespace, namespace.length(), "C"));
+        assertEquals("abc", table.get(namespace, 5, "C"));
+        assertEquals("ac", table.get(namespace, 3, "C"));
+        assertNull(table.get(namespace, 1, "C"));
+        assertEquals(".a.b.C", table.getKey(namespace, 5, "C"));
+        assertNull(table.getKey(namespace, 1, "C"));
+    }
+
+    @Test
+    public void nextScopeLength() {
+        String namespace = ".a.bb.";
+        assertEquals(3, TypeResolverPostProcessor.nextScopeLength(namespace, 6));
+        assertEquals(1, TypeResolverPostProcessor.nextScopeLength(namespace, 3));
+        assertEquals(0, TypeResolverPostProcessor.nextScopeLength(namespace, 1));
+    }
+
+    @Test
+    public void putIfAbsent() {
+        NameTable<String> table = new NameTable<>();
+        assertNull(table.put(".A", "1"));
+        assertEquals("1", table.putIfAbsent(".A", "2"));
+        assertEquals("1", table.put(".A", "3"));
+        assertEquals("3", table.get(".A"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void resize() {
+        NameTable<Integer> table = new NameTable<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            table.put(".pkg.T" + i, i);
+            expected.put(".pkg.T" + i, i);
+        }
+        assertEquals(expected, table);
+        assertEquals(Integer.valueOf(500), table.get(".pkg.", 5, "T500"));
+        assertFalse(table.containsKey(".pkg.T1000"));
+    }
+}
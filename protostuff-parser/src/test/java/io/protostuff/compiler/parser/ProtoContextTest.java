@@ -0,0 +1,95 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.Message;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ProtoContextTest {
+
+    /**
+     * Number of type lookups for an import chain report.
+     * Report is skipped unless this property is set.
+     */
+    private static final String CHAIN_LOOKUPS = "protostuff.chain.lookups";
+
+    private static final int CHAIN_LENGTH = 10;
+    private static final int MESSAGES_PER_FILE = 10;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProtoContextTest.class);
+
+    @Test
+    public void typesAreResolvedThroughImportChain() {
+        ProtoContext context = importChain();
+        for (int level = 0; level < CHAIN_LENGTH; level++) {
+            Message message = context.resolve(Message.class, typeName(level, MESSAGES_PER_FILE - 1));
+            assertNotNull(message);
+            assertEquals("chain/" + level + ".proto", message.getProto().getFilename());
+        }
+    }
+
+    @Test
+    public void importChainReport() {
+        assumeTrue(System.getProperty(CHAIN_LOOKUPS) != null);
+        int lookups = Integer.getInteger(CHAIN_LOOKUPS);
+        String[] names = new String[CHAIN_LENGTH * MESSAGES_PER_FILE];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = typeName(i / MESSAGES_PER_FILE, i % MESSAGES_PER_FILE);
+        }
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            ProtoContext context = importChain();
+            long load = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                assertNotNull(context.resolve(names[i % names.length]));
+            }
+            long resolve = System.nanoTime() - start;
+            LOGGER.info("Import chain: {} levels, load {} ms, {} lookups in {} ms, {} ns per lookup",
+                    CHAIN_LENGTH, TimeUnit.NANOSECONDS.toMillis(load), lookups,
+                    TimeUnit.NANOSECONDS.toMillis(resolve), resolve / lookups);
+        }
+    }
+
+    /**
+     * Returns context of a first file in a chain, where each file publicly
+     * imports the next one.
+     */
+    private static ProtoContext importChain() {
+        Importer importer = Guice.createInjector(new ParserModule()).getInstance(Importer.class);
+        FileReader reader = name -> {
+            int level = Integer.parseInt(name.substring("chain/".length(), name.length() - ".proto".length()));
+            return CharStreams.fromString(chainSource(level), name);
+        };
+        return importer.importFile(reader, "chain/0.proto");
+    }
+
+    private static String chainSource(int level) {
+        StringBuilder result = new StringBuilder();
+        result.append("syntax = \"proto3\";\n")
+                .append("package chain").append(level).append(";\n");
+        if (level + 1 < CHAIN_LENGTH) {
+            result.append("import public \"chain/").append(level + 1).append(".proto\";\n");
+        }
+        for (int m = 0; m < MESSAGES_PER_FILE; m++) {
+            result.append("message M").append(m).append(" {\n");
+            if (level + 1 < CHAIN_LENGTH) {
+                result.append("    ").append(typeName(level + 1, m)).append(" next = 1;\n");
+            }
+            result.append("}\n");
+        }
+        return result.toString();
+    }
+
+    private static String typeName(int level, int message) {
+        return ".chain" + level + ".M" + message;
+    }
+}
@@ -0,0 +1,52 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.protostuff.compiler.ParserModule;
+import io.protostuff.compiler.model.Field;
+import io.protostuff.compiler.model.Message;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ProtoWalkerTest {
+
+    @Test
+    public void eachNodeIsVisitedOnce() throws Exception {
+        Injector injector = Guice.createInjector(new ParserModule());
+        Importer importer = injector.getInstance(Importer.class);
+        ProtoContext context = importer.importFile(new ClasspathFileReader(), "protostuff_unittest/messages_sample.proto");
+        List<Message> messages1 = new ArrayList<>();
+        List<Message> messages2 = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        List<String> order = new ArrayList<>();
+        ProtoWalker.newInstance(context)
+                .onMessage(message -> {
+                    messages1.add(message);
+                    order.add("1:" + message.getName());
+                })
+                .onMessage(message -> {
+                    messages2.add(message);
+                    order.add("2:" + message.getName());
+                })
+                .onField((Field field) -> fields.add(field))
+                .walk();
+        assertEquals(messages1, messages2);
+        assertEquals(messages1.size(), new HashSet<>(messages1).size());
+        assertEquals(fields.size(), new HashSet<>(fields).size());
+        int expectedFields = 0;
+        for (Message message : messages1) {
+            expectedFields += message.getFields().size();
+        }
+        assertEquals(expectedFields, fields.size());
+        // all processors are invoked for a node before walker moves to the next one
+        for (int i = 0; i < messages1.size(); i++) {
+            String name = messages1.get(i).getName();
+            assertEquals("1:" + name, order.get(2 * i));
+            assertEquals("2:" + name, order.get(2 * i + 1));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.protostuff.compiler.parser;
+
+import com.google.inject.Guice;
+import io.protostuff.compiler.ParserModule;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedProtoContextsTest {
+
+    private static final String DESCRIPTOR_PROTO = "google/protobuf/descriptor.proto";
+
+    @Test
+    public void descriptorProtoIsShared() throws Exception {
+        ProtoContext a = newImporter().importFile(new ClasspathFileReader(), DESCRIPTOR_PROTO);
+        ProtoContext b = newImporter().importFile(new ClasspathFileReader(), DESCRIPTOR_PROTO);
+        assertTrue(a.isFrozen());
+        assertSame(a, b);
+        assertThrows(IllegalStateException.class, () -> a.addImport(b));
+    }
+
+    @Test
+    public void modifiedCopyIsNotShared() throws Exception {
+        Path directory = Files.createTempDirectory("protostuff-test-");
+        try {
+            Path file = directory.resolve(DESCRIPTOR_PROTO);
+            Files.createDirectories(file.getParent());
+            String content = "syntax = \"proto2\";\npackage google.protobuf;\nmessage FileOptions {}\n";
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            ProtoContext original = newImporter().importFile(new ClasspathFileReader(), DESCRIPTOR_PROTO);
+            ProtoContext copy = newImporter().importFile(new LocalFileReader(directory), DESCRIPTOR_PROTO);
+            assertNotSame(original, copy);
+            assertEquals(1, copy.getProto().getMessages().size());
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    private Importer newImporter() {
+        return Guice.createInjector(new ParserModule()).getInstance(Importer.class);
+    }
+}
@@ -0,0 +1,83 @@
+package io.protostuff.compiler.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Synthetic proto files for throughput and footprint reports. All files
+ * of a corpus have same content: {@value #MESSAGES_PER_FILE} messages with
+ * {@value #FIELDS_PER_MESSAGE} commented fields each, half of them are
+ * strings and half are references to the next message.
+ */
+final class SyntheticCorpus {
+
+    static final int MESSAGES_PER_FILE = 100;
+    static final int FIELDS_PER_MESSAGE = 10;
+
+    private static final int LABEL_OPTIONAL = 1;
+
+    private final String packageName;
+    private final String source;
+
+    SyntheticCorpus(String packageName) {
+        this.packageName = packageName;
+        this.source = generateSource();
+    }
+
+    /**
+     * Returns reader that returns corpus source for any file name.
+     */
+    FileReader reader() {
+        return name -> CharStreams.fromString(source, name);
+    }
+
+    /**
+     * Returns {@code FileDescriptorProto} of a corpus file, same as protoc
+     * would produce for its source.
+     */
+    WireWriter descriptor(String fileName) {
+        WireWriter file = new WireWriter()
+                .string(1, fileName)
+                .string(2, packageName);
+        WireWriter sourceCodeInfo = new WireWriter();
+        for (int m = 0; m < MESSAGES_PER_FILE; m++) {
+            WireWriter message = new WireWriter().string(1, "M" + m);
+            for (int f = 0; f < FIELDS_PER_MESSAGE; f++) {
+                String name = "field_" + f;
+                WireWriter field = new WireWriter()
+                        .string(1, name)
+                        .varint(3, f + 1)
+                        .varint(4, LABEL_OPTIONAL);
+                if (f % 2 == 0) {
+                    field.varint(5, DescriptorSchema.TYPE_STRING);
+                } else {
+                    field.varint(5, DescriptorSchema.TYPE_MESSAGE)
+                            .string(6, "." + packageName + ".M" + (m + 1) % MESSAGES_PER_FILE);
+                }
+                message.message(2, field.string(10, name));
+                sourceCodeInfo.message(1, new WireWriter()
+                        .packed(1, 4, m, 2, f)
+                        .string(3, " comment " + f + "\n"));
+            }
+            file.message(4, message);
+        }
+        return file.string(12, "proto3").message(9, sourceCodeInfo);
+    }
+
+    private String generateSource() {
+        StringBuilder result = new StringBuilder();
+        result.append("syntax = \"proto3\";\n")
+                .append("package ").append(packageName).append(";\n");
+        for (int m = 0; m < MESSAGES_PER_FILE; m++) {
+            result.append("message M").append(m).append(" {\n");
+            for (int f = 0; f < FIELDS_PER_MESSAGE; f++) {
+                String type = f % 2 == 0 ? "string" : "M" + (m + 1) % MESSAGES_PER_FILE;
+                result.append("    // comment ").append(f).append('\n')
+                        .append("    ").append(type)
+                        .append(" field_").append(f)
+                        .append(" = ").append(f + 1).append(";\n");
+            }
+            result.append("}\n");
+        }
+        return result.toString();
+    }
+}
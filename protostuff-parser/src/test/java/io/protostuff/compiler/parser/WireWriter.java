@@ -0,0 +1,54 @@
+package io.protostuff.compiler.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal protobuf wire format writer, used to create descriptor sets in tests.
+ */
+final class WireWriter {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    WireWriter varint(int number, long value) {
+        writeVarint((long) number << 3 | WireMessage.VARINT);
+        writeVarint(value);
+        return this;
+    }
+
+    WireWriter string(int number, String value) {
+        return bytes(number, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    WireWriter message(int number, WireWriter message) {
+        return bytes(number, message.toByteArray());
+    }
+
+    WireWriter packed(int number, int... values) {
+        WireWriter items = new WireWriter();
+        for (int value : values) {
+            items.writeVarint(value);
+        }
+        return bytes(number, items.toByteArray());
+    }
+
+    WireWriter bytes(int number, byte[] value) {
+        writeVarint((long) number << 3 | WireMessage.LENGTH_DELIMITED);
+        writeVarint(value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void writeVarint(long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+}